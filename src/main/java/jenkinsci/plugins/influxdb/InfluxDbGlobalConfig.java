@@ -4,22 +4,41 @@ import hudson.Extension;
 import hudson.ExtensionList;
 import hudson.init.InitMilestone;
 import hudson.init.Initializer;
+import hudson.util.FormValidation;
+import hudson.util.ListBoxModel;
 import jenkins.model.GlobalConfiguration;
+import jenkinsci.plugins.influxdb.client.InfluxDbClientRegistry;
+import jenkinsci.plugins.influxdb.generators.TestDetailLevel;
+import jenkinsci.plugins.influxdb.generators.TestFilter;
+import jenkinsci.plugins.influxdb.global.GlobalListenerRoutes;
 import jenkinsci.plugins.influxdb.models.Target;
+import jenkinsci.plugins.influxdb.write.CoalescingBatcher;
 import net.sf.json.JSONObject;
+import org.apache.commons.lang3.StringUtils;
+import org.kohsuke.stapler.QueryParameter;
 import org.kohsuke.stapler.StaplerRequest;
 
+import javax.annotation.CheckForNull;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 @Extension
 public class InfluxDbGlobalConfig extends GlobalConfiguration {
 
+    /**
+     * The logger.
+     **/
+    private static final Logger logger = Logger.getLogger(InfluxDbGlobalConfig.class.getName());
+
     private List<Target> targets = new CopyOnWriteArrayList<>();
     private boolean targetsMigrated = false;
+    private TestDetailLevel testDetailLevel = TestDetailLevel.FULL;
+    private int testSamplePercentage = TestFilter.DEFAULT_SAMPLE_PERCENTAGE;
 
     public InfluxDbGlobalConfig() {
         load();
@@ -36,6 +55,59 @@ public class InfluxDbGlobalConfig extends GlobalConfiguration {
     public void setTargets(List<Target> targets) {
         this.targets = targets;
         save();
+        targetsChanged();
+    }
+
+    /**
+     * @return which individual test results are written by default
+     */
+    public TestDetailLevel getTestDetailLevel() {
+        return testDetailLevel == null ? TestDetailLevel.FULL : testDetailLevel;
+    }
+
+    public void setTestDetailLevel(TestDetailLevel testDetailLevel) {
+        this.testDetailLevel = testDetailLevel;
+        save();
+    }
+
+    public int getTestSamplePercentage() {
+        return testSamplePercentage;
+    }
+
+    public void setTestSamplePercentage(int testSamplePercentage) {
+        this.testSamplePercentage = testSamplePercentage;
+        save();
+    }
+
+    /**
+     * Creates the filter for a publication, using the global settings where the publication does
+     * not override them.
+     */
+    public TestFilter newTestFilter(@CheckForNull TestDetailLevel level, @CheckForNull Integer samplePercentage) {
+        return new TestFilter(level != null ? level : getTestDetailLevel(),
+                samplePercentage != null ? samplePercentage : testSamplePercentage);
+    }
+
+    public ListBoxModel doFillTestDetailLevelItems() {
+        return TestDetailLevel.fillItems(false);
+    }
+
+    public FormValidation doCheckTestSamplePercentage(@QueryParameter String value) {
+        return validatePercentage(value);
+    }
+
+    /**
+     * Validates an optional percentage of the tests.
+     */
+    public static FormValidation validatePercentage(String value) {
+        if (StringUtils.isBlank(value)) {
+            return FormValidation.ok();
+        }
+        FormValidation validation = FormValidation.validateNonNegativeInteger(value);
+        if (validation.kind == FormValidation.Kind.OK && Integer.parseInt(value) > 100) {
+            return FormValidation.error("Percentage must be between 0 and 100");
+        }
+        return validation;
     }
 
     @SuppressWarnings("deprecation")
@@ -55,16 +127,38 @@ public class InfluxDbGlobalConfig extends GlobalConfiguration {
         });
         targetsMigrated = true;
         save();
+        targetsChanged();
     }
 
     @Override
     public boolean configure(StaplerRequest req, JSONObject formData) {
         targets = new CopyOnWriteArrayList<>();
         targets.addAll(req.bindJSONToList(Target.class, formData.get("targets")));
+        String level = formData.optString("testDetailLevel");
+        testDetailLevel = TestDetailLevel.FULL;
+        if (StringUtils.isNotEmpty(level)) {
+            try {
+                testDetailLevel = TestDetailLevel.valueOf(level);
+            } catch (IllegalArgumentException e) {
+                logger.log(Level.WARNING, "Unknown test detail level ''{0}'', using {1}", new Object[]{level, TestDetailLevel.FULL});
+            }
+        }
+        testSamplePercentage = formData.optInt("testSamplePercentage", TestFilter.DEFAULT_SAMPLE_PERCENTAGE);
         save();
+        targetsChanged();
         return true;
     }
 
+    /**
+     * Drops everything which was set up for the previous targets.
+     */
+    private void targetsChanged() {
+        // Saving the configuration does not wait for InfluxDB
+        CoalescingBatcher.flushAllAsync();
+        InfluxDbClientRegistry.getInstance().invalidate();
+        GlobalListenerRoutes.invalidate();
+    }
+
     /**
      * Add target to list of targets
      *
@@ -72,6 +166,7 @@ public class InfluxDbGlobalConfig extends GlobalConfiguration {
      */
     public void addTarget(Target target) {
         targets.add(target);
+        targetsChanged();
     }
 
     /**
@@ -81,5 +176,6 @@ public class InfluxDbGlobalConfig extends GlobalConfiguration {
      */
     public void removeTarget(String targetDescription) {
         targets.removeIf(target -> target.getDescription().equals(targetDescription));
+        targetsChanged();
     }
 }
@@ -1,30 +1,51 @@
 package jenkinsci.plugins.influxdb;
 
 import hudson.EnvVars;
-import hudson.ProxyConfiguration;
+import hudson.FilePath;
 import hudson.model.Run;
 import hudson.model.TaskListener;
-import hudson.util.Secret;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
 import jenkins.model.Jenkins;
+import jenkins.util.SystemProperties;
+import jenkinsci.plugins.influxdb.client.FieldTypeCache;
+import jenkinsci.plugins.influxdb.client.FieldTypeLookup;
+import jenkinsci.plugins.influxdb.client.InfluxDbClientRegistry;
+import jenkinsci.plugins.influxdb.client.LineProtocolWriter;
+import jenkinsci.plugins.influxdb.client.ScopedTarget;
 import jenkinsci.plugins.influxdb.generators.*;
 import jenkinsci.plugins.influxdb.models.Target;
 import jenkinsci.plugins.influxdb.renderer.MeasurementRenderer;
 import jenkinsci.plugins.influxdb.renderer.ProjectNameRenderer;
-import okhttp3.Credentials;
-import okhttp3.OkHttpClient;
-import org.apache.commons.lang3.StringUtils;
-import org.influxdb.InfluxDB;
-import org.influxdb.InfluxDB.ConsistencyLevel;
-import org.influxdb.InfluxDBFactory;
-import org.influxdb.dto.BatchPoints;
-import org.influxdb.dto.Point;
-
+import jenkinsci.plugins.influxdb.reports.ReportSeries;
+import jenkinsci.plugins.influxdb.reports.ReportType;
+import jenkinsci.plugins.influxdb.reports.WorkspaceReports;
+import jenkinsci.plugins.influxdb.write.AgentWrite;
+import jenkinsci.plugins.influxdb.write.BatchBisector;
+import jenkinsci.plugins.influxdb.write.ChunkedWrite;
+import jenkinsci.plugins.influxdb.write.CoalescingBatcher;
+import jenkinsci.plugins.influxdb.write.LineProtocolSink;
+import jenkinsci.plugins.influxdb.write.PublicationQueue;
+import jenkinsci.plugins.influxdb.write.SpoolReplayWork;
+import jenkinsci.plugins.influxdb.write.WriteSpool;
+
+import javax.annotation.CheckForNull;
+import java.io.IOException;
 import java.net.MalformedURLException;
-import java.net.URL;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -36,9 +57,100 @@ public class InfluxDbPublicationService {
     private static final Logger logger = Logger.getLogger(InfluxDbPublicationService.class.getName());
 
     /**
-     * Shared HTTP client which can make use of connection and thread pooling.
+     * Maximum number of targets written to at the same time, across all builds.
+     */
+    private static final int TARGET_WORKERS = SystemProperties.getInteger(InfluxDbPublicationService.class.getName() + ".targetWorkers", 4);
+
+    /**
+     * Time a build waits for a target to write a chunk of records. Once exceeded, the remaining
+     * records of the build are spooled for that target.
+     */
+    private static final long TARGET_TIMEOUT_SECONDS = SystemProperties.getInteger(InfluxDbPublicationService.class.getName() + ".targetTimeoutSeconds", 60);
+
+    /**
+     * Maximum number of point generators run at the same time, across all builds.
+     */
+    private static final int GENERATOR_WORKERS = SystemProperties.getInteger(InfluxDbPublicationService.class.getName() + ".generatorWorkers", 4);
+
+    /**
+     * Time a build waits for its point generators.
+     */
+    private static final long GENERATOR_TIMEOUT_SECONDS = SystemProperties.getInteger(InfluxDbPublicationService.class.getName() + ".generatorTimeoutSeconds", 120);
+
+    /**
+     * Number of line protocol records a generator hands over at once.
+     */
+    private static final int SINK_CHUNK_SIZE = 1000;
+
+    /**
+     * Number of chunks the generators of a build hand over before they wait for the build to write them.
+     */
+    private static final int QUEUED_CHUNKS = 4;
+
+    private static final ExecutorService TARGET_WRITERS = createPool(TARGET_WORKERS, "InfluxDB target write");
+
+    /**
+     * Maximum number of requests a build sends to one target at the same time.
+     */
+    private static final int CHUNK_PARALLELISM = SystemProperties.getInteger(InfluxDbPublicationService.class.getName() + ".chunkParallelism", 2);
+
+    /**
+     * Number of rejected points listed in the build log.
+     */
+    private static final int MAX_REPORTED_QUARANTINED = 10;
+
+    private static final ExecutorService CHUNK_WRITERS = createPool(TARGET_WORKERS * CHUNK_PARALLELISM, "InfluxDB chunk write");
+
+    private static final ExecutorService GENERATORS = createPool(GENERATOR_WORKERS, "InfluxDB point generation");
+
+    /**
+     * The write of a build to one target, which receives the records chunk by chunk as the
+     * generators hand them over.
      */
-    private static final OkHttpClient httpClient = new OkHttpClient();
+    private final class TargetWrite {
+
+        private final Target target;
+        private final LineProtocolWriter writer;
+        private final ChunkedWrite.Result result = new ChunkedWrite.Result();
+        private int points;
+        private long writingNanos;
+        /**
+         * Why the remaining records are spooled rather than written, if they are.
+         */
+        private Throwable failure;
+
+        TargetWrite(Target target, LineProtocolWriter writer) {
+            this.target = target;
+            this.writer = writer;
+        }
+
+        /**
+         * @return whether the records are to be written, rather than spooled
+         */
+        synchronized boolean received(int count) {
+            points += count;
+            return failure == null;
+        }
+
+        synchronized void abandon(Throwable cause) {
+            if (failure == null) {
+                failure = cause;
+            }
+        }
+
+        /**
+         * Runs on one of the {@link #TARGET_WRITERS}, so it must not use the build listener.
+         */
+        Void write(List<String> records) throws InterruptedException {
+            long started = System.nanoTime();
+            ChunkedWrite.Result written = writeToInflux(target, writer, records);
+            synchronized (this) {
+                result.add(written);
+                writingNanos += System.nanoTime() - started;
+            }
+            return null;
+        }
+    }
 
     /**
      * Targets to write to.
@@ -151,6 +263,24 @@ public class InfluxDbPublicationService {
 
     private final long timestamp;
 
+    /**
+     * Selects the individual test results which are written.
+     */
+    private TestFilter testFilter = TestFilter.ALL;
+
+    /**
+     * The workspace of the build, whose report files are parsed on the agent.
+     */
+    @CheckForNull
+    private FilePath workspace;
+
+    private Map<ReportType, String> workspaceReports = Collections.emptyMap();
+
+    /**
+     * Whether the agent writes the points of the workspace reports to the targets itself.
+     */
+    private boolean writeFromAgent;
+
     public InfluxDbPublicationService(List<Target> selectedTargets, String customProjectName, String customPrefix, Map<String, Object> customData, Map<String, String> customDataTags, Map<String, Map<String, String>> customDataMapTags, Map<String, Map<String, Object>> customDataMap, long timestamp, String jenkinsEnvParameterField, String jenkinsEnvParameterTag, String measurementName) {
         this.selectedTargets = selectedTargets;
         this.customProjectName = customProjectName;
@@ -165,107 +295,253 @@ public class InfluxDbPublicationService {
         this.measurementName = measurementName;
     }
 
+    public void setTestFilter(TestFilter testFilter) {
+        this.testFilter = testFilter;
+    }
+
+    /**
+     * @param workspace        the workspace of the build, if it has one
+     * @param workspaceReports Ant style patterns of report files in the workspace, by type
+     */
+    public void setWorkspaceReports(@CheckForNull FilePath workspace, Map<ReportType, String> workspaceReports) {
+        this.workspace = workspace;
+        this.workspaceReports = workspaceReports;
+    }
+
+    /**
+     * @param writeFromAgent whether the agent writes the points of the workspace reports to the
+     *                       targets itself, rather than sending them to the controller
+     */
+    public void setWriteFromAgent(boolean writeFromAgent) {
+        this.writeFromAgent = writeFromAgent;
+    }
+
+    /**
+     * Writes the data of the build while it is being collected: the build thread writes every chunk
+     * of records the generators hand over to all targets, while the generators carry on. The points
+     * of different generators may therefore reach a target interleaved.
+     */
     public void perform(Run<?, ?> build, TaskListener listener, EnvVars env) {
+        List<TargetWrite> writes = startWrites(listener);
+        collectPoints(build, listener, env, records -> writeChunk(writes, records));
+        reportWrites(writes, listener);
+        listener.getLogger().println("[InfluxDB Plugin] Completed.");
+    }
+
+    /**
+     * Collects the data of the build right away but leaves writing it to the {@link PublicationQueue},
+     * so the caller never waits for InfluxDB. In the background, the points are merged with those
+     * of other builds by the {@link CoalescingBatcher} of each target.
+     */
+    public void performAsync(Run<?, ?> build, TaskListener listener, EnvVars env) {
+        PublicationQueue queue = PublicationQueue.getInstance();
+        List<Target> targets = selectedTargets;
+        AtomicInteger dropped = new AtomicInteger();
+        // Every chunk is queued as soon as a generator hands it over
+        collectPoints(build, listener, env, records -> {
+            if (!queue.submit(() -> addToBatchers(targets, records))) {
+                dropped.addAndGet(records.size());
+            }
+        });
+        if (dropped.get() == 0) {
+            listener.getLogger().println("[InfluxDB Plugin] Data queued for publication.");
+        } else {
+            listener.getLogger().println(String.format("[InfluxDB Plugin] Publication queue is full. %d point(s) have been dropped.",
+                    dropped.get()));
+        }
+    }
+
+    /**
+     * @param consumer receives the records in chunks on the build thread, those of several generators interleaved
+     */
+    private void collectPoints(Run<?, ?> build, TaskListener listener, EnvVars env, Consumer<List<String>> consumer) {
         // Logging
         listener.getLogger().println("[InfluxDB Plugin] Collecting data...");
 
         // Renderer to use for the metrics
         MeasurementRenderer<Run<?, ?>> measurementRenderer = new ProjectNameRenderer(customPrefix, customProjectName);
 
-        // Points to write
-        List<Point> pointsToWrite = new ArrayList<>();
+        // Field types the targets expect for user supplied data
+        FieldTypeLookup fieldTypes = FieldTypeCache.getInstance().lookup(selectedTargets);
+
+        // Generators to run, in the order their points are written
+        List<GeneratorRunner.Generation> generators = new ArrayList<>();
 
         // Basic metrics
         JenkinsBasePointGenerator jGen = new JenkinsBasePointGenerator(measurementRenderer, customPrefix, build, timestamp, listener, jenkinsEnvParameterField, jenkinsEnvParameterTag, measurementName, env);
-        addPoints(pointsToWrite, jGen, listener);
+        jGen.setFieldTypes(fieldTypes);
+        generators.add(new GeneratorRunner.Generation("Jenkins", null, jGen));
 
         CustomDataPointGenerator cdGen = new CustomDataPointGenerator(measurementRenderer, customPrefix, build, timestamp, customData, customDataTags, measurementName);
-        if (cdGen.hasReport()) {
-            listener.getLogger().println("[InfluxDB Plugin] Custom data found. Writing to InfluxDB...");
-            addPoints(pointsToWrite, cdGen, listener);
-        } else {
-            logger.log(Level.FINE, "Data source empty: Custom Data");
-        }
+        cdGen.setFieldTypes(fieldTypes);
+        generators.add(new GeneratorRunner.Generation("Custom Data", "Custom data", cdGen));
 
         CustomDataMapPointGenerator cdmGen = new CustomDataMapPointGenerator(measurementRenderer, customPrefix, build, timestamp, customDataMap, customDataMapTags);
-        if (cdmGen.hasReport()) {
-            listener.getLogger().println("[InfluxDB Plugin] Custom data map found. Writing to InfluxDB...");
-            addPoints(pointsToWrite, cdmGen, listener);
-        } else {
-            logger.log(Level.FINE, "Data source empty: Custom Data Map");
-        }
+        cdmGen.setFieldTypes(fieldTypes);
+        generators.add(new GeneratorRunner.Generation("Custom Data Map", "Custom data map", cdmGen));
 
         try {
             CoberturaPointGenerator cGen = new CoberturaPointGenerator(measurementRenderer, customPrefix, build, timestamp);
-            if (cGen.hasReport()) {
-                listener.getLogger().println("[InfluxDB Plugin] Cobertura data found. Writing to InfluxDB...");
-                addPoints(pointsToWrite, cGen, listener);
-            }
+            generators.add(new GeneratorRunner.Generation("Cobertura", "Cobertura data", cGen));
         } catch (NoClassDefFoundError ignore) {
             logger.log(Level.FINE, "Plugin skipped: Cobertura");
         }
 
         try {
             RobotFrameworkPointGenerator rfGen = new RobotFrameworkPointGenerator(measurementRenderer, customPrefix, build, timestamp);
-            if (rfGen.hasReport()) {
-                listener.getLogger().println("[InfluxDB Plugin] Robot Framework data found. Writing to InfluxDB...");
-                addPoints(pointsToWrite, rfGen, listener);
-            }
+            rfGen.setTestFilter(testFilter);
+            generators.add(new GeneratorRunner.Generation("Robot Framework", "Robot Framework data", rfGen));
         } catch (NoClassDefFoundError ignore) {
             logger.log(Level.FINE, "Plugin skipped: Robot Framework");
         }
 
         try {
             JacocoPointGenerator jacoGen = new JacocoPointGenerator(measurementRenderer, customPrefix, build, timestamp);
-            if (jacoGen.hasReport()) {
-                listener.getLogger().println("[InfluxDB Plugin] JaCoCo data found. Writing to InfluxDB...");
-                addPoints(pointsToWrite, jacoGen, listener);
-            }
+            generators.add(new GeneratorRunner.Generation("JaCoCo", "JaCoCo data", jacoGen));
         } catch (NoClassDefFoundError ignore) {
             logger.log(Level.FINE, "Plugin skipped: JaCoCo");
         }
 
         try {
             PerformancePointGenerator perfGen = new PerformancePointGenerator(measurementRenderer, customPrefix, build, timestamp);
-            if (perfGen.hasReport()) {
-                listener.getLogger().println("[InfluxDB Plugin] Performance data found. Writing to InfluxDB...");
-                addPoints(pointsToWrite, perfGen, listener);
-            }
+            generators.add(new GeneratorRunner.Generation("Performance", "Performance data", perfGen));
         } catch (NoClassDefFoundError ignore) {
             logger.log(Level.FINE, "Plugin skipped: Performance");
         }
 
         SonarQubePointGenerator sonarGen = new SonarQubePointGenerator(measurementRenderer, customPrefix, build, timestamp, listener);
-        if (sonarGen.hasReport()) {
-            listener.getLogger().println("[InfluxDB Plugin] SonarQube data found. Writing to InfluxDB...");
-            sonarGen.setEnv(env);
-            addPoints(pointsToWrite, sonarGen, listener);
-        } else {
-            logger.log(Level.FINE, "Plugin skipped: SonarQube");
-        }
+        sonarGen.setEnv(env);
+        // Written in the background once SonarQube processed the analysis, which may take a while
+        List<Target> targets = selectedTargets;
+        sonarGen.setDeferredSink(new LineProtocolSink(1, records -> addToBatchers(targets, records)));
+        generators.add(new GeneratorRunner.Generation("SonarQube", "SonarQube data", sonarGen));
 
         ChangeLogPointGenerator changeLogGen = new ChangeLogPointGenerator(measurementRenderer, customPrefix, build, timestamp);
-        if (changeLogGen.hasReport()) {
-            listener.getLogger().println("[InfluxDB Plugin] Change Log data found. Writing to InfluxDB...");
-            addPoints(pointsToWrite, changeLogGen, listener);
-        } else {
-            logger.log(Level.FINE, "Data source empty: Change Log");
-        }
+        generators.add(new GeneratorRunner.Generation("Change Log", "Change Log data", changeLogGen));
 
         try {
             PerfPublisherPointGenerator perfPublisherGen = new PerfPublisherPointGenerator(measurementRenderer, customPrefix, build, timestamp);
-            if (perfPublisherGen.hasReport()) {
-                listener.getLogger().println("[InfluxDB Plugin] Performance Publisher data found. Writing to InfluxDB...");
-                addPoints(pointsToWrite, perfPublisherGen, listener);
-            }
+            perfPublisherGen.setTestFilter(testFilter);
+            generators.add(new GeneratorRunner.Generation("Performance Publisher", "Performance Publisher data", perfPublisherGen));
         } catch (NoClassDefFoundError ignore) {
             logger.log(Level.FINE, "Plugin skipped: Performance Publisher");
         }
 
+        runGenerators(generators, listener, consumer);
+        List<String> reportRecords = collectWorkspaceReports(build, measurementRenderer, listener);
+        if (!reportRecords.isEmpty()) {
+            consumer.accept(reportRecords);
+        }
+    }
+
+    /**
+     * Parses the report files on the agent, which sends back only the points summing them up.
+     */
+    private List<String> collectWorkspaceReports(Run<?, ?> build, MeasurementRenderer<Run<?, ?>> measurementRenderer, TaskListener listener) {
+        if (workspaceReports.isEmpty()) {
+            return Collections.emptyList();
+        }
+        if (workspace == null) {
+            listener.getLogger().println("[InfluxDB Plugin] No workspace to parse report files in. Skipping them.");
+            return Collections.emptyList();
+        }
+        ReportSeries series = new ReportSeries(customPrefix, measurementRenderer.render(build),
+                build.getParent().getRelativeNameFrom(Jenkins.getInstance()), build.getNumber(), timestamp);
+        WorkspaceReports reports = new WorkspaceReports(workspaceReports, series);
+        if (writeFromAgent) {
+            reports.setDirectTargets(scopeTargets(listener));
+        }
+        WorkspaceReports.Result result;
+        try {
+            result = workspace.act(reports);
+        } catch (IOException e) {
+            listener.getLogger().println("[InfluxDB Plugin] Failed to parse report files. Ignoring Exception:" + e);
+            return Collections.emptyList();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Collections.emptyList();
+        }
+        for (String problem : result.getProblems()) {
+            listener.getLogger().println("[InfluxDB Plugin][WARNING] " + problem);
+        }
+        if (result.getFiles() > 0) {
+            listener.getLogger().println(String.format("[InfluxDB Plugin] %d report files parsed in the workspace. Writing to InfluxDB...",
+                    result.getFiles()));
+        }
+        AgentWrite.Summary written = result.getWritten();
+        if (written != null) {
+            for (String failure : written.getFailures()) {
+                listener.getLogger().println("[InfluxDB Plugin][WARNING] " + failure + ". Writing through the controller instead.");
+            }
+            if (written.getFailures().isEmpty()) {
+                listener.getLogger().println(String.format("[InfluxDB Plugin] %d report points (%d bytes, %d sent) written from the agent in %d requests and %d ms.",
+                        written.getPoints(), written.getBytes(), written.getSentBytes(), written.getRequests(), written.getLatencyMillis()));
+            }
+        }
+        return result.getRecords();
+    }
+
+    /**
+     * Copies the targets for the agent to write to, unless one of them cannot be reached from there.
+     */
+    private List<ScopedTarget> scopeTargets(TaskListener listener) {
+        List<ScopedTarget> scoped = new ArrayList<>();
+        for (Target target : selectedTargets) {
+            ScopedTarget copy = ScopedTarget.of(target);
+            if (copy == null) {
+                listener.getLogger().println(String.format("[InfluxDB Plugin] Target '%s' is reached through the Jenkins proxy. "
+                        + "Writing report points through the controller.", target.getDescription()));
+                return Collections.emptyList();
+            }
+            scoped.add(copy);
+        }
+        return scoped;
+    }
+
+    /**
+     * Runs the generators concurrently. Each hands its points over as line protocol records, in chunks
+     * of {@link #SINK_CHUNK_SIZE}, which the build thread passes on to the consumer, so that a
+     * generator holds at most one chunk and never waits for InfluxDB. Generators still generating
+     * when the deadline passes are cancelled; the chunks they handed over before are kept.
+     */
+    private void runGenerators(List<GeneratorRunner.Generation> generators, TaskListener listener, Consumer<List<String>> consumer) {
+        new GeneratorRunner(GENERATORS, TimeUnit.SECONDS.toNanos(GENERATOR_TIMEOUT_SECONDS), SINK_CHUNK_SIZE, QUEUED_CHUNKS)
+                .run(generators, consumer);
+
+        for (GeneratorRunner.Generation run : generators) {
+            if (run.isTimedOut()) {
+                listener.getLogger().println(String.format("[InfluxDB Plugin] %s data was not collected within %d seconds. Skipping the rest of it.",
+                        run.getName(), GENERATOR_TIMEOUT_SECONDS));
+                continue;
+            }
+            Throwable failure = run.getFailure();
+            if (failure instanceof NoClassDefFoundError) {
+                logger.log(Level.FINE, "Plugin skipped: {0}", run.getName());
+                continue;
+            } else if (failure != null) {
+                listener.getLogger().println("[InfluxDB Plugin] Failed to collect data. Ignoring Exception:" + failure);
+                continue;
+            }
+
+            if (run.getGenerated() == null) {
+                logger.log(Level.FINE, "Data source empty: {0}", run.getName());
+                continue;
+            }
+            if (run.getFoundMessage() != null) {
+                listener.getLogger().println("[InfluxDB Plugin] " + run.getFoundMessage() + " found. Writing to InfluxDB...");
+            }
+        }
+    }
+
+    /**
+     * Prepares the write of the build to every target with a valid URL.
+     */
+    private List<TargetWrite> startWrites(TaskListener listener) {
+        List<TargetWrite> writes = new ArrayList<>();
         for (Target target : selectedTargets) {
-            URL url;
+            LineProtocolWriter writer;
             try {
-                url = new URL(target.getUrl());
+                writer = InfluxDbClientRegistry.getInstance().getWriter(target);
             } catch (MalformedURLException e) {
                 String logMessage = String.format("[InfluxDB Plugin] Skipping target '%s' due to invalid URL '%s'",
                         target.getDescription(),
@@ -282,63 +558,155 @@ public class InfluxDbPublicationService {
             logger.log(Level.FINE, logMessage);
             listener.getLogger().println(logMessage);
 
-            OkHttpClient.Builder httpClient = createHttpClient(url, target.isUsingJenkinsProxy());
-            InfluxDB influxDB = StringUtils.isEmpty(target.getUsername()) ?
-                    InfluxDBFactory.connect(target.getUrl(), httpClient) :
-                    InfluxDBFactory.connect(target.getUrl(), target.getUsername(), target.getPassword().getPlainText(), httpClient);
-            writeToInflux(target, influxDB, pointsToWrite);
+            writes.add(new TargetWrite(target, writer));
+        }
+        return writes;
+    }
 
+    /**
+     * Writes a chunk of records to all targets concurrently, so that a slow target does not delay
+     * the others, and waits for them. A target which does not complete the chunk in time gets the
+     * rest of the records of the build spooled instead.
+     */
+    private void writeChunk(List<TargetWrite> writes, List<String> records) {
+        Map<TargetWrite, Future<?>> pending = new LinkedHashMap<>();
+        for (TargetWrite write : writes) {
+            if (write.received(records.size())) {
+                pending.put(write, TARGET_WRITERS.submit(() -> write.write(records)));
+            } else {
+                spool(write.target, records);
+            }
         }
 
-        listener.getLogger().println("[InfluxDB Plugin] Completed.");
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TARGET_TIMEOUT_SECONDS);
+        for (Map.Entry<TargetWrite, Future<?>> write : pending.entrySet()) {
+            try {
+                write.getValue().get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                // The interrupted write spools the points not written yet
+                write.getValue().cancel(true);
+                write.getKey().abandon(new TimeoutException("No response within " + TARGET_TIMEOUT_SECONDS + " seconds"));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                for (Future<?> future : pending.values()) {
+                    future.cancel(true);
+                }
+                return;
+            } catch (ExecutionException e) {
+                write.getKey().abandon(e.getCause());
+            }
+        }
     }
 
-    private void addPoints(List<Point> pointsToWrite, PointGenerator generator, TaskListener listener) {
-        try {
-            pointsToWrite.addAll(Arrays.asList(generator.generate()));
-        } catch (Exception e) {
-            listener.getLogger().println("[InfluxDB Plugin] Failed to collect data. Ignoring Exception:" + e);
+    /**
+     * Reports the outcome of every target once the data of the build has been written.
+     */
+    private void reportWrites(List<TargetWrite> writes, TaskListener listener) {
+        InfluxReportException exposed = null;
+        for (TargetWrite write : writes) {
+            Target target = write.target;
+            Throwable failure;
+            synchronized (write) {
+                ChunkedWrite.Result result = write.result;
+                listener.getLogger().println(String.format("[InfluxDB Plugin] Target '%s': wrote %d of %d point(s) in %d of %d request(s) in %d ms (%s).",
+                        target.getDescription(), result.getWrittenPoints(), write.points,
+                        result.getChunks() - result.getFailedChunks(), result.getChunks(),
+                        TimeUnit.NANOSECONDS.toMillis(write.writingNanos), describe(result)));
+                reportQuarantined(target, result.getQuarantined(), listener);
+                failure = write.failure != null ? write.failure : result.getFailure();
+            }
+            if (failure == null) {
+                continue;
+            }
+            listener.getLogger().println(String.format("[InfluxDB Plugin] Target '%s': failed: %s",
+                    target.getDescription(), failure));
+            if (target.isExposeExceptions()) {
+                if (exposed == null) {
+                    exposed = new InfluxReportException(failure);
+                } else {
+                    exposed.addSuppressed(failure);
+                }
+            } else {
+                //Exceptions not exposed by configuration. Just log and ignore.
+                logger.log(Level.WARNING, "Could not report to InfluxDB. Ignoring Exception.", failure);
+            }
+        }
+        if (exposed != null) {
+            throw exposed;
         }
     }
 
-    private OkHttpClient.Builder createHttpClient(URL url, boolean useProxy) {
-        OkHttpClient.Builder builder = httpClient.newBuilder();
-        ProxyConfiguration proxyConfig = Jenkins.getInstance().proxy;
-        if (useProxy && proxyConfig != null) {
-            builder.proxy(proxyConfig.createProxy(url.getHost()));
-            if (proxyConfig.getUserName() != null) {
-                builder.proxyAuthenticator((route, response) -> {
-                    if (response.request().header("Proxy-Authorization") != null) {
-                        return null; // Give up, we've already failed to authenticate.
-                    }
-
-                    String credential = Credentials.basic(proxyConfig.getUserName(), proxyConfig.getPassword());
-                    return response.request().newBuilder().header("Proxy-Authorization", credential).build();
-                });
+    /**
+     * Hands the records over to the {@link CoalescingBatcher} of every target. Runs in the
+     * background, so it must not use the build listener.
+     */
+    private static void addToBatchers(List<Target> targets, List<String> records) {
+        for (Target target : targets) {
+            try {
+                InfluxDbClientRegistry.getInstance().getWriter(target);
+            } catch (MalformedURLException e) {
+                logger.log(Level.WARNING, "Skipping target ''{0}'' due to invalid URL ''{1}''",
+                        new Object[]{target.getDescription(), target.getUrl()});
+                continue;
             }
+            CoalescingBatcher.forTarget(target).add(records);
         }
-        return builder;
     }
 
-    private void writeToInflux(Target target, InfluxDB influxDB, List<Point> pointsToWrite) {
-        /*
-         * build batchpoints for a single write.
-         */
+    private ChunkedWrite.Result writeToInflux(Target target, LineProtocolWriter writer, List<String> records) throws InterruptedException {
+        return new ChunkedWrite(target.getDescription(),
+                chunk -> writer.write(target.getDatabase(), target.getRetentionPolicy(), chunk),
+                chunk -> spool(target, chunk),
+                CHUNK_WRITERS, CHUNK_PARALLELISM,
+                target.getMaxPointsPerRequest(), 1024L * target.getMaxKilobytesPerRequest())
+                .write(records);
+    }
+
+    private static void reportQuarantined(Target target, List<BatchBisector.QuarantinedPoint> quarantined, TaskListener listener) {
+        if (quarantined.isEmpty()) {
+            return;
+        }
+        listener.getLogger().println(String.format("[InfluxDB Plugin] Target '%s': rejected %d point(s) as invalid, they will not be retried.",
+                target.getDescription(), quarantined.size()));
+        for (int i = 0; i < Math.min(quarantined.size(), MAX_REPORTED_QUARANTINED); i++) {
+            BatchBisector.QuarantinedPoint point = quarantined.get(i);
+            listener.getLogger().println(String.format("[InfluxDB Plugin]   %s%n[InfluxDB Plugin]     %s", point.getRecord(), point.getReason()));
+        }
+        if (quarantined.size() > MAX_REPORTED_QUARANTINED) {
+            listener.getLogger().println(String.format("[InfluxDB Plugin]   ... and %d more, see the Jenkins log.",
+                    quarantined.size() - MAX_REPORTED_QUARANTINED));
+        }
+    }
+
+    private static String describe(ChunkedWrite.Result result) {
+        if (result.getSentBytes() != result.getBytes()) {
+            return String.format("%d bytes, %d bytes compressed", result.getBytes(), result.getSentBytes());
+        }
+        return String.format("%d bytes", result.getBytes());
+    }
+
+    /**
+     * Keeps the points of a failed write on disk, from where {@link SpoolReplayWork} writes them
+     * once the target is reachable again.
+     */
+    private void spool(Target target, List<String> records) {
         try {
-            BatchPoints batchPoints = BatchPoints
-                    .database(target.getDatabase())
-                    .points(pointsToWrite)
-                    .retentionPolicy(target.getRetentionPolicy())
-                    .consistency(ConsistencyLevel.ANY)
-                    .build();
-            influxDB.write(batchPoints);
-        } catch (Exception e) {
-            if (target.isExposeExceptions()) {
-                throw new InfluxReportException(e);
-            } else {
-                //Exceptions not exposed by configuration. Just log and ignore.
-                logger.log(Level.WARNING, "Could not report to InfluxDB. Ignoring Exception.", e);
+            if (WriteSpool.forTarget(target).append(records)) {
+                logger.log(Level.INFO, "Spooled {0} point(s) for target ''{1}'' to be written later",
+                        new Object[]{records.size(), target.getDescription()});
             }
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Could not spool points for target '" + target.getDescription() + "'", e);
         }
     }
+
+    private static ExecutorService createPool(int workers, String name) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(workers, workers, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(1000),
+                new NamingThreadFactory(new DaemonThreadFactory(), name),
+                // Rather than failing, a saturated pool makes the build do the work on its own
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
 }
@@ -4,6 +4,7 @@ import hudson.EnvVars;
 import hudson.Extension;
 import hudson.FilePath;
 import hudson.Launcher;
+import hudson.Util;
 import hudson.model.AbstractProject;
 import hudson.model.ModelObject;
 import hudson.model.Run;
@@ -15,13 +16,17 @@ import hudson.tasks.Publisher;
 import hudson.util.ListBoxModel;
 import jenkins.model.Jenkins;
 import jenkins.tasks.SimpleBuildStep;
+import jenkinsci.plugins.influxdb.generators.TestDetailLevel;
+import jenkinsci.plugins.influxdb.generators.TestFilter;
 import jenkinsci.plugins.influxdb.models.Target;
+import jenkinsci.plugins.influxdb.reports.ReportType;
 import org.kohsuke.stapler.DataBoundConstructor;
 import org.kohsuke.stapler.DataBoundSetter;
 
 import javax.annotation.Nonnull;
 import java.io.IOException;
 import java.util.Collections;
+import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -41,6 +46,10 @@ public class InfluxDbPublisher extends Notifier implements SimpleBuildStep {
     private String jenkinsEnvParameterField;
     private String jenkinsEnvParameterTag;
     private String measurementName;
+    private String testDetailLevel;
+    private Integer testSamplePercentage;
+    private Map<String, String> workspaceReports;
+    private boolean writeFromAgent;
     private EnvVars env;
 
     @DataBoundConstructor
@@ -145,6 +154,51 @@ public class InfluxDbPublisher extends Notifier implements SimpleBuildStep {
         this.measurementName = measurementName;
     }
 
+    public String getTestDetailLevel() {
+        return testDetailLevel;
+    }
+
+    /**
+     * @param testDetailLevel name of a {@link TestDetailLevel}, or empty to use the global setting
+     */
+    @DataBoundSetter
+    public void setTestDetailLevel(String testDetailLevel) {
+        this.testDetailLevel = Util.fixEmptyAndTrim(testDetailLevel);
+    }
+
+    public Integer getTestSamplePercentage() {
+        return testSamplePercentage;
+    }
+
+    @DataBoundSetter
+    public void setTestSamplePercentage(Integer testSamplePercentage) {
+        this.testSamplePercentage = testSamplePercentage;
+    }
+
+    public Map<String, String> getWorkspaceReports() {
+        return workspaceReports;
+    }
+
+    /**
+     * @param workspaceReports Ant style patterns of report files in the workspace, by report type
+     */
+    @DataBoundSetter
+    public void setWorkspaceReports(Map<String, String> workspaceReports) {
+        this.workspaceReports = workspaceReports;
+    }
+
+    public boolean isWriteFromAgent() {
+        return writeFromAgent;
+    }
+
+    /**
+     * @param writeFromAgent whether the agent writes the points of {@code workspaceReports} to the target itself
+     */
+    @DataBoundSetter
+    public void setWriteFromAgent(boolean writeFromAgent) {
+        this.writeFromAgent = writeFromAgent;
+    }
+
     private String getMeasurementNameIfNotBlankOrDefault() {
         return measurementName != null ? measurementName : DEFAULT_MEASUREMENT_NAME;
     }
@@ -217,10 +271,43 @@ public class InfluxDbPublisher extends Notifier implements SimpleBuildStep {
                 jenkinsEnvParameterTag,
                 measurementName);
 
+        publicationService.setTestFilter(resolveTestFilter(listener));
+        publicationService.setWorkspaceReports(workspace, resolveWorkspaceReports(listener));
+        publicationService.setWriteFromAgent(writeFromAgent);
+
         // Publishes the metrics
         publicationService.perform(build, listener, env);
     }
 
+    private TestFilter resolveTestFilter(TaskListener listener) {
+        TestDetailLevel level = null;
+        if (testDetailLevel != null) {
+            try {
+                level = TestDetailLevel.valueOf(testDetailLevel);
+            } catch (IllegalArgumentException e) {
+                listener.getLogger().println("[InfluxDB Plugin][WARNING] Unknown test detail level '" + testDetailLevel + "', using the global setting.");
+            }
+        }
+        return InfluxDbGlobalConfig.getInstance().newTestFilter(level, testSamplePercentage);
+    }
+
+    private Map<ReportType, String> resolveWorkspaceReports(TaskListener listener) {
+        Map<ReportType, String> includes = new EnumMap<>(ReportType.class);
+        if (workspaceReports == null) {
+            return includes;
+        }
+        for (Map.Entry<String, String> report : workspaceReports.entrySet()) {
+            ReportType type = ReportType.forName(report.getKey());
+            String include = Util.fixEmptyAndTrim(env.expand(report.getValue()));
+            if (type == null) {
+                listener.getLogger().println("[InfluxDB Plugin][WARNING] Unknown report type '" + report.getKey() + "', skipping its files.");
+            } else if (include != null) {
+                includes.put(type, include);
+            }
+        }
+        return includes;
+    }
+
     private long resolveTimestampForPointGenerationInNanoseconds(Run<?, ?> build) {
         long timestamp = getTarget().isJobScheduledTimeAsPointsTimestamp() ? build.getTimeInMillis() : System.currentTimeMillis();
         return timestamp * 1000000;
@@ -262,6 +349,10 @@ public class InfluxDbPublisher extends Notifier implements SimpleBuildStep {
             return true;
         }
 
+        public ListBoxModel doFillTestDetailLevelItems() {
+            return TestDetailLevel.fillItems(true);
+        }
+
         public ListBoxModel doFillSelectedTargetItems() {
             ListBoxModel model = new ListBoxModel();
             for (Target target : getTargets()) {
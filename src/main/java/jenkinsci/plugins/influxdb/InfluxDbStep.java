@@ -4,10 +4,12 @@ import com.google.common.collect.ImmutableSet;
 import hudson.Extension;
 import hudson.FilePath;
 import hudson.Launcher;
+import hudson.Util;
 import hudson.model.Run;
 import hudson.model.TaskListener;
 import hudson.util.ListBoxModel;
 import jenkins.model.Jenkins;
+import jenkinsci.plugins.influxdb.generators.TestDetailLevel;
 import jenkinsci.plugins.influxdb.models.Target;
 import org.jenkinsci.plugins.workflow.steps.Step;
 import org.jenkinsci.plugins.workflow.steps.StepContext;
@@ -35,6 +37,10 @@ public class InfluxDbStep extends Step {
     private String jenkinsEnvParameterField;
     private String jenkinsEnvParameterTag;
     private String measurementName;
+    private String testDetailLevel;
+    private Integer testSamplePercentage;
+    private Map<String, String> workspaceReports;
+    private boolean writeFromAgent;
 
     @Deprecated
     private transient boolean replaceDashWithUnderscore;
@@ -141,6 +147,51 @@ public class InfluxDbStep extends Step {
         this.measurementName = measurementName;
     }
 
+    public String getTestDetailLevel() {
+        return testDetailLevel;
+    }
+
+    /**
+     * @param testDetailLevel name of a {@link TestDetailLevel}, or empty to use the global setting
+     */
+    @DataBoundSetter
+    public void setTestDetailLevel(String testDetailLevel) {
+        this.testDetailLevel = Util.fixEmptyAndTrim(testDetailLevel);
+    }
+
+    public Integer getTestSamplePercentage() {
+        return testSamplePercentage;
+    }
+
+    @DataBoundSetter
+    public void setTestSamplePercentage(Integer testSamplePercentage) {
+        this.testSamplePercentage = testSamplePercentage;
+    }
+
+    public Map<String, String> getWorkspaceReports() {
+        return workspaceReports;
+    }
+
+    /**
+     * @param workspaceReports Ant style patterns of report files in the workspace, by report type
+     */
+    @DataBoundSetter
+    public void setWorkspaceReports(Map<String, String> workspaceReports) {
+        this.workspaceReports = workspaceReports;
+    }
+
+    public boolean isWriteFromAgent() {
+        return writeFromAgent;
+    }
+
+    /**
+     * @param writeFromAgent whether the agent writes the points of {@code workspaceReports} to the target itself
+     */
+    @DataBoundSetter
+    public void setWriteFromAgent(boolean writeFromAgent) {
+        this.writeFromAgent = writeFromAgent;
+    }
+
     public boolean getReplaceDashWithUnderscore() {
         return replaceDashWithUnderscore;
     }
@@ -205,6 +256,10 @@ public class InfluxDbStep extends Step {
             return ImmutableSet.of(Run.class, FilePath.class, Launcher.class, TaskListener.class);
         }
 
+        public ListBoxModel doFillTestDetailLevelItems() {
+            return TestDetailLevel.fillItems(true);
+        }
+
         public ListBoxModel doFillSelectedTargetItems() {
             ListBoxModel model = new ListBoxModel();
             for (Target target : getTargets()) {
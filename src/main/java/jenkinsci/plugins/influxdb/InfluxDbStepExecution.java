@@ -32,6 +32,10 @@ public class InfluxDbStepExecution extends SynchronousNonBlockingStepExecution<V
         publisher.setJenkinsEnvParameterField(step.getJenkinsEnvParameterField());
         publisher.setJenkinsEnvParameterTag(step.getJenkinsEnvParameterTag());
         publisher.setMeasurementName(step.getMeasurementName());
+        publisher.setTestDetailLevel(step.getTestDetailLevel());
+        publisher.setTestSamplePercentage(step.getTestSamplePercentage());
+        publisher.setWorkspaceReports(step.getWorkspaceReports());
+        publisher.setWriteFromAgent(step.isWriteFromAgent());
         publisher.setEnv(getContext().get(EnvVars.class));
 
         publisher.perform(getContext().get(Run.class), workspace, getContext().get(Launcher.class), getContext().get(TaskListener.class));
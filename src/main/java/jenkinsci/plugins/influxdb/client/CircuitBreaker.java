@@ -0,0 +1,134 @@
+package jenkinsci.plugins.influxdb.client;
+
+import jenkins.util.SystemProperties;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Stops sending writes to an InfluxDB server which keeps failing, so that builds spool their data
+ * right away instead of each waiting for connection timeouts.
+ * <p>
+ * After a number of consecutive failures the breaker opens and rejects all writes. Once the open
+ * time has passed, it lets a single probe write through: its success closes the breaker, its
+ * failure opens it again.
+ * <p>
+ * The breakers are tuned with system properties:
+ * <ul>
+ * <li>{@code jenkinsci.plugins.influxdb.client.CircuitBreaker.failureThreshold} - consecutive failures which open the breaker (default 5)</li>
+ * <li>{@code jenkinsci.plugins.influxdb.client.CircuitBreaker.openSeconds} - time before a probe write is let through (default 30)</li>
+ * </ul>
+ */
+public class CircuitBreaker {
+
+    /**
+     * The logger.
+     **/
+    private static final Logger logger = Logger.getLogger(CircuitBreaker.class.getName());
+
+    private static final int FAILURE_THRESHOLD = SystemProperties.getInteger(CircuitBreaker.class.getName() + ".failureThreshold", 5);
+
+    private static final long OPEN_MILLIS = TimeUnit.SECONDS.toMillis(
+            SystemProperties.getInteger(CircuitBreaker.class.getName() + ".openSeconds", 30));
+
+    private static final ConcurrentMap<String, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+
+    enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final String name;
+    private final int failureThreshold;
+    private final long openMillis;
+    private final LongSupplier clock;
+
+    private State state = State.CLOSED;
+    private int failures;
+    private long openedAt;
+
+    CircuitBreaker(String name, int failureThreshold, long openMillis, LongSupplier clock) {
+        this.name = name;
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.openMillis = openMillis;
+        this.clock = clock;
+    }
+
+    /**
+     * Returns the breaker of an InfluxDB server. Breakers outlive reconfigurations of the targets.
+     */
+    static CircuitBreaker forUrl(String url) {
+        return breakers.computeIfAbsent(url, key -> new CircuitBreaker(key, FAILURE_THRESHOLD, OPEN_MILLIS, System::currentTimeMillis));
+    }
+
+    /**
+     * Asks for permission to send a write.
+     *
+     * @throws OpenException if the breaker is open, or half open with a probe under way
+     */
+    synchronized void acquire() throws OpenException {
+        switch (state) {
+            case CLOSED:
+                return;
+            case OPEN:
+                if (clock.getAsLong() - openedAt >= openMillis) {
+                    logger.log(Level.FINE, "Circuit breaker for {0} is half open, sending a probe write", name);
+                    state = State.HALF_OPEN;
+                    return;
+                }
+                break;
+            case HALF_OPEN:
+            default:
+                break;
+        }
+        throw new OpenException(name);
+    }
+
+    synchronized void onSuccess() {
+        if (state != State.CLOSED) {
+            logger.log(Level.INFO, "InfluxDB at {0} is reachable again", name);
+        }
+        state = State.CLOSED;
+        failures = 0;
+    }
+
+    synchronized void onFailure() {
+        failures++;
+        if (state == State.HALF_OPEN || (state == State.CLOSED && failures >= failureThreshold)) {
+            if (state == State.CLOSED) {
+                logger.log(Level.WARNING, "InfluxDB at {0} failed {1} time(s) in a row. Spooling writes for {2} ms",
+                        new Object[]{name, failures, openMillis});
+            }
+            state = State.OPEN;
+            openedAt = clock.getAsLong();
+        }
+    }
+
+    /**
+     * Gives up a write which neither succeeded nor failed, because the caller was interrupted.
+     * An abandoned probe lets the next write probe the server again.
+     */
+    synchronized void onAbandoned() {
+        if (state == State.HALF_OPEN) {
+            state = State.OPEN;
+        }
+    }
+
+    synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * Thrown instead of sending a write while the breaker is open.
+     */
+    public static class OpenException extends IOException {
+
+        public OpenException(String name) {
+            super("Circuit breaker for " + name + " is open");
+        }
+    }
+}
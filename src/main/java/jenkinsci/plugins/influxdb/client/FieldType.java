@@ -0,0 +1,142 @@
+package jenkinsci.plugins.influxdb.client;
+
+import javax.annotation.CheckForNull;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Locale;
+
+/**
+ * The type of a field as InfluxDB stores it. A field keeps the type of its first value within a
+ * shard, values of any other type are rejected.
+ */
+public enum FieldType {
+
+    FLOAT,
+    INTEGER,
+    STRING,
+    BOOLEAN;
+
+    private static final BigInteger MIN_LONG = BigInteger.valueOf(Long.MIN_VALUE);
+    private static final BigInteger MAX_LONG = BigInteger.valueOf(Long.MAX_VALUE);
+
+    /**
+     * @param name type name as returned by {@code SHOW FIELD KEYS}
+     * @return the type, or {@code null} if unknown
+     */
+    @CheckForNull
+    public static FieldType forName(String name) {
+        switch (name) {
+            case "float":
+                return FLOAT;
+            case "integer":
+            case "unsigned":
+                return INTEGER;
+            case "string":
+                return STRING;
+            case "boolean":
+                return BOOLEAN;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * @return the type a value is written as by {@link org.influxdb.dto.Point}, after {@link #normalize(Object)}
+     */
+    public static FieldType of(Object value) {
+        if (value instanceof Boolean) {
+            return BOOLEAN;
+        }
+        if (value instanceof Number) {
+            return isFloatingPoint((Number) value) ? FLOAT : INTEGER;
+        }
+        return STRING;
+    }
+
+    /**
+     * Converts a value to one {@link org.influxdb.dto.Point} writes as intended. Values of other
+     * types than numbers, booleans and strings, for example Groovy's {@code GString}, would be
+     * written verbatim rather than quoted and fail to parse.
+     */
+    public static Object normalize(Object value) {
+        if (value instanceof String || value instanceof Boolean) {
+            return value;
+        }
+        if (value instanceof BigInteger) {
+            BigInteger integer = (BigInteger) value;
+            return integer.compareTo(MIN_LONG) >= 0 && integer.compareTo(MAX_LONG) <= 0
+                    ? (Object) integer.longValue() : (Object) integer.doubleValue();
+        }
+        if (value instanceof Number) {
+            return value;
+        }
+        return String.valueOf(value);
+    }
+
+    /**
+     * Converts a value to this type.
+     *
+     * @return the converted value, or {@code null} if the value cannot be represented in this type
+     */
+    @CheckForNull
+    public Object coerce(Object value) {
+        Object normalized = normalize(value);
+        switch (this) {
+            case FLOAT:
+                if (normalized instanceof Number) {
+                    return ((Number) normalized).doubleValue();
+                }
+                if (normalized instanceof String) {
+                    try {
+                        return Double.parseDouble(((String) normalized).trim());
+                    } catch (NumberFormatException e) {
+                        return null;
+                    }
+                }
+                return null;
+            case INTEGER:
+                if (normalized instanceof Number) {
+                    return toLong((Number) normalized);
+                }
+                if (normalized instanceof String) {
+                    try {
+                        return toLong(new BigDecimal(((String) normalized).trim()));
+                    } catch (NumberFormatException e) {
+                        return null;
+                    }
+                }
+                return null;
+            case BOOLEAN:
+                if (normalized instanceof Boolean) {
+                    return normalized;
+                }
+                if (normalized instanceof String) {
+                    String s = ((String) normalized).trim().toLowerCase(Locale.ENGLISH);
+                    return "true".equals(s) ? Boolean.TRUE : "false".equals(s) ? Boolean.FALSE : null;
+                }
+                return null;
+            default:
+                return normalized instanceof String ? normalized : String.valueOf(normalized);
+        }
+    }
+
+    private static boolean isFloatingPoint(Number value) {
+        return value instanceof Double || value instanceof Float || value instanceof BigDecimal;
+    }
+
+    /**
+     * @return the value as a long, or {@code null} if it has a fraction or is out of range
+     */
+    @CheckForNull
+    private static Long toLong(Number value) {
+        if (!isFloatingPoint(value)) {
+            return value.longValue();
+        }
+        try {
+            BigDecimal decimal = value instanceof BigDecimal ? (BigDecimal) value : new BigDecimal(value.doubleValue());
+            return decimal.longValueExact();
+        } catch (ArithmeticException | NumberFormatException e) {
+            return null;
+        }
+    }
+}
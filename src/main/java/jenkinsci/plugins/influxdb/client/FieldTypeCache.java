@@ -0,0 +1,274 @@
+package jenkinsci.plugins.influxdb.client;
+
+import jenkins.util.SystemProperties;
+import jenkinsci.plugins.influxdb.models.Target;
+import org.influxdb.dto.Query;
+import org.influxdb.dto.QueryResult;
+
+import javax.annotation.CheckForNull;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Remembers the field types of every database and measurement written to, so that values of
+ * user supplied data can be converted to the type InfluxDB expects before they are sent. Without
+ * it, a field which was once written as a string and is now an integer makes InfluxDB reject the
+ * whole request.
+ * <p>
+ * Types are learned from the records InfluxDB accepted. Only measurements somebody asked for
+ * through {@link #lookup(List)} are tracked, which keeps the cost of learning off the records of
+ * the built-in reports. If enabled, a {@code SHOW FIELD KEYS} query seeds the types of a database
+ * the first time it is looked up.
+ */
+public class FieldTypeCache {
+
+    /**
+     * The logger.
+     **/
+    private static final Logger logger = Logger.getLogger(FieldTypeCache.class.getName());
+
+    private static final boolean SEED = SystemProperties.getBoolean(FieldTypeCache.class.getName() + ".seed");
+
+    private static final FieldTypeCache INSTANCE = new FieldTypeCache();
+
+    private final ConcurrentMap<DatabaseKey, Schema> schemas = new ConcurrentHashMap<>();
+
+    FieldTypeCache() {
+        //nop
+    }
+
+    public static FieldTypeCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Returns the types expected by the given targets. If targets disagree, the first one wins.
+     */
+    public FieldTypeLookup lookup(List<Target> targets) {
+        Schema[] targetSchemas = new Schema[targets.size()];
+        for (int i = 0; i < targetSchemas.length; i++) {
+            Target target = targets.get(i);
+            targetSchemas[i] = schema(target.getUrl(), target.getDatabase());
+            if (SEED) {
+                targetSchemas[i].seed(target);
+            }
+        }
+        return (measurement, field) -> {
+            FieldType type = null;
+            for (Schema schema : targetSchemas) {
+                Map<String, FieldType> fields = schema.track(measurement);
+                if (type == null) {
+                    type = fields.get(field);
+                }
+            }
+            return type;
+        };
+    }
+
+    /**
+     * Learns the field types of records InfluxDB accepted.
+     */
+    public void learn(String url, String database, List<String> records) {
+        Schema schema = schemas.get(new DatabaseKey(url, database));
+        if (schema == null || schema.measurements.isEmpty()) {
+            return;
+        }
+        for (String record : records) {
+            int end = measurementEnd(record);
+            Map<String, FieldType> fields = schema.measurements.get(unescape(record, 0, end));
+            if (fields != null) {
+                parseFields(record, end, fields::put);
+            }
+        }
+    }
+
+    void clear() {
+        schemas.clear();
+    }
+
+    private Schema schema(String url, String database) {
+        return schemas.computeIfAbsent(new DatabaseKey(url, database), key -> new Schema());
+    }
+
+    @CheckForNull
+    FieldType get(String url, String database, String measurement, String field) {
+        Schema schema = schemas.get(new DatabaseKey(url, database));
+        Map<String, FieldType> fields = schema == null ? null : schema.measurements.get(measurement);
+        return fields == null ? null : fields.get(field);
+    }
+
+    /**
+     * @return index of the first unescaped comma or space, which ends the measurement of a record
+     */
+    static int measurementEnd(String record) {
+        for (int i = 0; i < record.length(); i++) {
+            char c = record.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (c == ',' || c == ' ') {
+                return i;
+            }
+        }
+        return record.length();
+    }
+
+    /**
+     * Reports the name and type of every field of a record.
+     *
+     * @param from index of the end of the measurement
+     */
+    static void parseFields(String record, int from, BiConsumer<String, FieldType> consumer) {
+        int i = from;
+        // Skip the tags
+        for (; i < record.length() && record.charAt(i) != ' '; i++) {
+            if (record.charAt(i) == '\\') {
+                i++;
+            }
+        }
+        i++;
+        while (i < record.length()) {
+            int keyStart = i;
+            for (; i < record.length() && record.charAt(i) != '='; i++) {
+                if (record.charAt(i) == '\\') {
+                    i++;
+                }
+            }
+            if (i >= record.length()) {
+                return;
+            }
+            String key = unescape(record, keyStart, i);
+            int valueStart = ++i;
+            FieldType type;
+            if (i < record.length() && record.charAt(i) == '"') {
+                for (i++; i < record.length() && record.charAt(i) != '"'; i++) {
+                    if (record.charAt(i) == '\\') {
+                        i++;
+                    }
+                }
+                i++;
+                type = FieldType.STRING;
+            } else {
+                for (; i < record.length() && record.charAt(i) != ',' && record.charAt(i) != ' '; i++) {
+                    // Unquoted values contain no separators
+                }
+                type = typeOfLiteral(record, valueStart, i);
+            }
+            if (type != null) {
+                consumer.accept(key, type);
+            }
+            if (i >= record.length() || record.charAt(i) != ',') {
+                return;
+            }
+            i++;
+        }
+    }
+
+    @CheckForNull
+    private static FieldType typeOfLiteral(String record, int from, int to) {
+        if (to <= from) {
+            return null;
+        }
+        char first = record.charAt(from);
+        if (first == 't' || first == 'T' || first == 'f' || first == 'F') {
+            return FieldType.BOOLEAN;
+        }
+        char last = record.charAt(to - 1);
+        return last == 'i' || last == 'u' ? FieldType.INTEGER : FieldType.FLOAT;
+    }
+
+    private static String unescape(String record, int from, int to) {
+        int escape = from;
+        while (escape < to && record.charAt(escape) != '\\') {
+            escape++;
+        }
+        if (escape == to) {
+            return record.substring(from, to);
+        }
+        StringBuilder sb = new StringBuilder(to - from);
+        for (int i = from; i < to; i++) {
+            char c = record.charAt(i);
+            if (c == '\\' && i + 1 < to) {
+                c = record.charAt(++i);
+            }
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Field types of the measurements of one database.
+     */
+    private static final class Schema {
+
+        private final ConcurrentMap<String, Map<String, FieldType>> measurements = new ConcurrentHashMap<>();
+        private final AtomicBoolean seeded = new AtomicBoolean();
+
+        private Map<String, FieldType> track(String measurement) {
+            return measurements.computeIfAbsent(measurement, m -> new ConcurrentHashMap<>());
+        }
+
+        private void seed(Target target) {
+            if (!seeded.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                QueryResult result = InfluxDbClientRegistry.getInstance().getClient(target)
+                        .query(new Query("SHOW FIELD KEYS", target.getDatabase()));
+                if (result.getResults() == null) {
+                    return;
+                }
+                for (QueryResult.Result r : result.getResults()) {
+                    if (r.getSeries() == null) {
+                        continue;
+                    }
+                    for (QueryResult.Series series : r.getSeries()) {
+                        Map<String, FieldType> fields = track(series.getName());
+                        for (List<Object> row : series.getValues()) {
+                            FieldType type = FieldType.forName(String.valueOf(row.get(1)));
+                            if (type != null) {
+                                fields.putIfAbsent(String.valueOf(row.get(0)), type);
+                            }
+                        }
+                    }
+                }
+            } catch (Exception e) {
+                logger.log(Level.FINE, "Could not query the field types of target " + target.getDescription(), e);
+            }
+        }
+    }
+
+    private static final class DatabaseKey {
+
+        private final String url;
+        private final String database;
+
+        private DatabaseKey(String url, String database) {
+            this.url = url;
+            this.database = database;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            DatabaseKey that = (DatabaseKey) o;
+            return Objects.equals(url, that.url) && Objects.equals(database, that.database);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(url, database);
+        }
+    }
+}
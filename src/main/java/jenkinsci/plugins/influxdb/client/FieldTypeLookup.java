@@ -0,0 +1,21 @@
+package jenkinsci.plugins.influxdb.client;
+
+import javax.annotation.CheckForNull;
+
+/**
+ * Tells which type the targets of a publication expect for a field.
+ */
+@FunctionalInterface
+public interface FieldTypeLookup {
+
+    /**
+     * Knows no types, values are only normalized.
+     */
+    FieldTypeLookup NONE = (measurement, field) -> null;
+
+    /**
+     * @return the expected type, or {@code null} if not known
+     */
+    @CheckForNull
+    FieldType typeOf(String measurement, String field);
+}
@@ -0,0 +1,177 @@
+package jenkinsci.plugins.influxdb.client;
+
+import hudson.ProxyConfiguration;
+import hudson.util.Secret;
+import jenkins.model.Jenkins;
+import jenkinsci.plugins.influxdb.models.Target;
+import okhttp3.Credentials;
+import okhttp3.OkHttpClient;
+import org.apache.commons.lang3.StringUtils;
+import org.influxdb.InfluxDB;
+import org.influxdb.InfluxDBFactory;
+
+import javax.annotation.Nonnull;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Hands out long-lived {@link InfluxDB} handles, one per distinct target connection configuration.
+ * <p>
+ * Connecting once per build means new OkHttp dispatchers, connection pools and TLS handshakes for
+ * every publication. Handles are therefore cached by the effective configuration of a target
+ * (URL, credentials, proxy usage and retention policy) and reused until the targets change.
+ */
+public class InfluxDbClientRegistry {
+
+    /**
+     * The logger.
+     **/
+    private static final Logger logger = Logger.getLogger(InfluxDbClientRegistry.class.getName());
+
+    private static final InfluxDbClientRegistry INSTANCE = new InfluxDbClientRegistry();
+
+    /**
+     * Shared HTTP client. All handles are derived from it and thereby share its connection pool,
+     * so keep-alive connections survive from one build to the next.
+     */
+    private static final OkHttpClient httpClient = new OkHttpClient();
+
+    private final ConcurrentMap<ClientKey, InfluxDB> clients = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<ClientKey, LineProtocolWriter> writers = new ConcurrentHashMap<>();
+
+    InfluxDbClientRegistry() {
+        //nop
+    }
+
+    public static InfluxDbClientRegistry getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Returns the handle for the given target, connecting on first use.
+     *
+     * @param target target to connect to
+     * @return a handle which may be shared with other publications
+     * @throws MalformedURLException if the URL of the target is invalid
+     */
+    @Nonnull
+    public InfluxDB getClient(@Nonnull Target target) throws MalformedURLException {
+        URL url = new URL(target.getUrl());
+        return clients.computeIfAbsent(new ClientKey(target), key -> connect(target, url));
+    }
+
+    /**
+     * Returns the writer for the given target, which streams line protocol records to its
+     * {@code /write} endpoint.
+     *
+     * @param target target to write to
+     * @return a writer which may be shared with other publications
+     * @throws MalformedURLException if the URL of the target is invalid
+     */
+    @Nonnull
+    public LineProtocolWriter getWriter(@Nonnull Target target) throws MalformedURLException {
+        URL url = new URL(target.getUrl());
+        return writers.computeIfAbsent(new ClientKey(target), key -> new LineProtocolWriter(
+                createHttpClient(url, target.isUsingJenkinsProxy()).build(),
+                target.getUrl(), target.getUsername(), Secret.toString(target.getPassword()),
+                target.getCompressionLevel(), target.getCompressionThreshold()));
+    }
+
+    /**
+     * Forgets all cached handles, for example after the targets have been reconfigured.
+     * <p>
+     * Handles are dropped rather than closed because a running publication may still use them.
+     * Idle connections and dispatcher threads of the shared HTTP client expire on their own.
+     */
+    public void invalidate() {
+        if (!clients.isEmpty() || !writers.isEmpty()) {
+            logger.log(Level.FINE, "Invalidating {0} cached InfluxDB client(s)", clients.size() + writers.size());
+        }
+        clients.clear();
+        writers.clear();
+    }
+
+    int size() {
+        return clients.size() + writers.size();
+    }
+
+    private InfluxDB connect(Target target, URL url) {
+        logger.log(Level.FINE, "Connecting to InfluxDB at {0}", target.getUrl());
+        OkHttpClient.Builder builder = createHttpClient(url, target.isUsingJenkinsProxy());
+        return StringUtils.isEmpty(target.getUsername()) ?
+                InfluxDBFactory.connect(target.getUrl(), builder) :
+                InfluxDBFactory.connect(target.getUrl(), target.getUsername(), Secret.toString(target.getPassword()), builder);
+    }
+
+    private OkHttpClient.Builder createHttpClient(URL url, boolean useProxy) {
+        OkHttpClient.Builder builder = httpClient.newBuilder();
+        ProxyConfiguration proxyConfig = useProxy ? Jenkins.getInstance().proxy : null;
+        if (proxyConfig != null) {
+            builder.proxy(proxyConfig.createProxy(url.getHost()));
+            if (proxyConfig.getUserName() != null) {
+                builder.proxyAuthenticator((route, response) -> {
+                    if (response.request().header("Proxy-Authorization") != null) {
+                        return null; // Give up, we've already failed to authenticate.
+                    }
+
+                    String credential = Credentials.basic(proxyConfig.getUserName(), proxyConfig.getPassword());
+                    return response.request().newBuilder().header("Proxy-Authorization", credential).build();
+                });
+            }
+        }
+        return builder;
+    }
+
+    /**
+     * The parts of a target which determine how the connection is established and requests are sent.
+     */
+    private static final class ClientKey {
+
+        private final String url;
+        private final String username;
+        private final Secret password;
+        private final boolean usingJenkinsProxy;
+        private final String retentionPolicy;
+        private final int compressionLevel;
+        private final long compressionThreshold;
+
+        private ClientKey(Target target) {
+            this.url = target.getUrl();
+            this.username = target.getUsername();
+            this.password = target.getPassword();
+            this.usingJenkinsProxy = target.isUsingJenkinsProxy();
+            this.retentionPolicy = target.getRetentionPolicy();
+            this.compressionLevel = target.getCompressionLevel();
+            this.compressionThreshold = target.getCompressionThreshold();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            ClientKey that = (ClientKey) o;
+            return usingJenkinsProxy == that.usingJenkinsProxy
+                    && compressionLevel == that.compressionLevel
+                    && compressionThreshold == that.compressionThreshold
+                    && Objects.equals(url, that.url)
+                    && Objects.equals(username, that.username)
+                    && Objects.equals(password, that.password)
+                    && Objects.equals(retentionPolicy, that.retentionPolicy);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(url, username, password, usingJenkinsProxy, retentionPolicy, compressionLevel, compressionThreshold);
+        }
+    }
+}
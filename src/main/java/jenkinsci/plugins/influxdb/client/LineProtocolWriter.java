@@ -0,0 +1,303 @@
+package jenkinsci.plugins.influxdb.client;
+
+import okhttp3.Credentials;
+import okhttp3.HttpUrl;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.Okio;
+
+import javax.annotation.CheckForNull;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.SocketTimeoutException;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes line protocol records to the {@code /write} endpoint of InfluxDB.
+ * <p>
+ * Unlike {@link org.influxdb.InfluxDB#write(String, String, org.influxdb.InfluxDB.ConsistencyLevel, List)},
+ * the records are not joined into one large string first but streamed into the request body.
+ * Requests of at least the compression threshold are sent gzip compressed, if the target enables
+ * compression.
+ */
+public class LineProtocolWriter {
+
+    /**
+     * The logger.
+     **/
+    private static final Logger logger = Logger.getLogger(LineProtocolWriter.class.getName());
+
+    private static final MediaType TEXT = MediaType.parse("text/plain; charset=utf-8");
+
+    private final OkHttpClient httpClient;
+    private final String url;
+    private final HttpUrl writeUrl;
+    private final String authorization;
+    private final int compressionLevel;
+    private final long compressionThreshold;
+    private final RetryPolicy retryPolicy;
+    private final CircuitBreaker circuitBreaker;
+
+    /**
+     * @param compressionLevel     gzip level from 1 to 9, or {@code 0} to send requests uncompressed
+     * @param compressionThreshold size in bytes below which requests are sent uncompressed
+     */
+    LineProtocolWriter(OkHttpClient httpClient, String url, @CheckForNull String username, @CheckForNull String password,
+                       int compressionLevel, long compressionThreshold) {
+        this(httpClient, url, username, password, compressionLevel, compressionThreshold,
+                RetryPolicy.DEFAULT, CircuitBreaker.forUrl(url));
+    }
+
+    LineProtocolWriter(OkHttpClient httpClient, String url, @CheckForNull String username, @CheckForNull String password,
+                       int compressionLevel, long compressionThreshold, RetryPolicy retryPolicy, CircuitBreaker circuitBreaker) {
+        HttpUrl baseUrl = HttpUrl.parse(url);
+        if (baseUrl == null) {
+            throw new IllegalArgumentException("Invalid InfluxDB URL: " + url);
+        }
+        this.httpClient = httpClient;
+        this.url = url;
+        this.writeUrl = baseUrl.newBuilder().addPathSegment("write").build();
+        this.authorization = username == null || username.isEmpty() ? null
+                : Credentials.basic(username, password == null ? "" : password);
+        this.compressionLevel = Math.max(Deflater.NO_COMPRESSION, Math.min(Deflater.BEST_COMPRESSION, compressionLevel));
+        this.compressionThreshold = compressionThreshold;
+        this.retryPolicy = retryPolicy;
+        this.circuitBreaker = circuitBreaker;
+    }
+
+    /**
+     * Writes records in a single request. Failures which may be temporary are retried according
+     * to the {@link RetryPolicy}. While the {@link CircuitBreaker} of the server is open, the write
+     * fails right away. The field types of accepted records are passed on to the {@link FieldTypeCache}.
+     *
+     * @return the size of the request
+     * @throws WriteException              if InfluxDB rejects the write
+     * @throws CircuitBreaker.OpenException if the server failed too often recently
+     * @throws IOException                 if InfluxDB cannot be reached
+     */
+    public WriteStats write(String database, @CheckForNull String retentionPolicy, List<String> records) throws IOException {
+        for (int attempt = 1; ; attempt++) {
+            circuitBreaker.acquire();
+            try {
+                WriteStats stats = send(database, retentionPolicy, records);
+                circuitBreaker.onSuccess();
+                FieldTypeCache.getInstance().learn(url, database, records);
+                return stats;
+            } catch (IOException e) {
+                if (isInterruption(e)) {
+                    // Stopped by the caller, which tells nothing about the server
+                    circuitBreaker.onAbandoned();
+                    throw e;
+                }
+                if (!retryPolicy.isRetryable(e)) {
+                    // The server answered, so it is up even though it rejected the data
+                    circuitBreaker.onSuccess();
+                    throw e;
+                }
+                circuitBreaker.onFailure();
+                if (attempt >= retryPolicy.getMaxAttempts()) {
+                    throw e;
+                }
+                long delay = retryPolicy.delayMillis(attempt);
+                logger.log(Level.FINE, "Write to " + writeUrl + " failed, retrying in " + delay + " ms", e);
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException ie) {
+                    // Thrown outside of the attempt, so the breaker only counts the failure above
+                    Thread.currentThread().interrupt();
+                    InterruptedIOException interrupted = new InterruptedIOException("Interrupted while waiting to retry");
+                    interrupted.addSuppressed(e);
+                    throw interrupted;
+                }
+            } catch (RuntimeException e) {
+                circuitBreaker.onFailure();
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Whether the write failed because the calling thread was interrupted. Timeouts are
+     * {@link InterruptedIOException}s as well, but they do count as failures of the server.
+     */
+    private static boolean isInterruption(IOException e) {
+        return e instanceof InterruptedIOException && !(e instanceof SocketTimeoutException)
+                && Thread.currentThread().isInterrupted();
+    }
+
+    private WriteStats send(String database, @CheckForNull String retentionPolicy, List<String> records) throws IOException {
+        HttpUrl.Builder url = writeUrl.newBuilder()
+                .addQueryParameter("db", database)
+                .addQueryParameter("precision", "n")
+                .addQueryParameter("consistency", "any");
+        if (retentionPolicy != null && !retentionPolicy.isEmpty()) {
+            url.addQueryParameter("rp", retentionPolicy);
+        }
+        Request.Builder request = new Request.Builder().url(url.build());
+        if (authorization != null) {
+            request.header("Authorization", authorization);
+        }
+
+        RecordsBody body = new RecordsBody(records);
+        long bytes = body.contentLength();
+        long compressedBytes = -1;
+        if (compressionLevel > 0 && bytes >= compressionThreshold) {
+            Buffer compressed = compress(body);
+            compressedBytes = compressed.size();
+            request.header("Content-Encoding", "gzip")
+                    .post(RequestBody.create(TEXT, compressed.readByteString()));
+        } else {
+            request.post(body);
+        }
+
+        try (Response response = httpClient.newCall(request.build()).execute()) {
+            if (!response.isSuccessful()) {
+                ResponseBody responseBody = response.body();
+                throw new WriteException(response.code(), responseBody == null ? "" : responseBody.string());
+            }
+        }
+        return new WriteStats(bytes, compressedBytes);
+    }
+
+    private Buffer compress(RecordsBody body) throws IOException {
+        Buffer compressed = new Buffer();
+        try (BufferedSink sink = Okio.buffer(Okio.sink(new LeveledGzipOutputStream(compressed.outputStream(), compressionLevel)))) {
+            body.writeTo(sink);
+        }
+        return compressed;
+    }
+
+    /**
+     * Size of a write request.
+     */
+    public static final class WriteStats {
+
+        private final long bytes;
+        private final long compressedBytes;
+
+        /**
+         * @param compressedBytes size of the compressed request body, or {@code -1} if not compressed
+         */
+        public WriteStats(long bytes, long compressedBytes) {
+            this.bytes = bytes;
+            this.compressedBytes = compressedBytes;
+        }
+
+        /**
+         * @return size of the line protocol written
+         */
+        public long getBytes() {
+            return bytes;
+        }
+
+        /**
+         * @return size of the request body sent, which differs from {@link #getBytes()} if compressed
+         */
+        public long getSentBytes() {
+            return isCompressed() ? compressedBytes : bytes;
+        }
+
+        public boolean isCompressed() {
+            return compressedBytes >= 0;
+        }
+    }
+
+    private static final class LeveledGzipOutputStream extends GZIPOutputStream {
+
+        LeveledGzipOutputStream(OutputStream out, int level) throws IOException {
+            super(out);
+            def.setLevel(level);
+        }
+    }
+
+    /**
+     * Streams records into the request, separated by newlines.
+     */
+    static final class RecordsBody extends RequestBody {
+
+        private final List<String> records;
+
+        RecordsBody(List<String> records) {
+            this.records = records;
+        }
+
+        @Override
+        public MediaType contentType() {
+            return TEXT;
+        }
+
+        @Override
+        public long contentLength() {
+            long length = Math.max(0, records.size() - 1);
+            for (String record : records) {
+                length += utf8Length(record);
+            }
+            return length;
+        }
+
+        @Override
+        public void writeTo(BufferedSink sink) throws IOException {
+            for (int i = 0; i < records.size(); i++) {
+                if (i > 0) {
+                    sink.writeByte('\n');
+                }
+                sink.writeUtf8(records.get(i));
+            }
+        }
+    }
+
+    /**
+     * @return number of bytes of the value encoded as UTF-8, as written into requests
+     */
+    public static long utf8Length(String value) {
+        long length = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                // Unpaired surrogates are written as '?'
+                length++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Thrown when InfluxDB answers a write with an error status.
+     */
+    public static class WriteException extends IOException {
+
+        private final int status;
+
+        public WriteException(int status, String body) {
+            super("InfluxDB responded with HTTP " + status + ": " + body);
+            this.status = status;
+        }
+
+        /**
+         * @return the HTTP status of the response
+         */
+        public int getStatus() {
+            return status;
+        }
+    }
+}
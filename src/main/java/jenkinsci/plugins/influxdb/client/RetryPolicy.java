@@ -0,0 +1,69 @@
+package jenkinsci.plugins.influxdb.client;
+
+import jenkins.util.SystemProperties;
+
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Decides which failed writes are retried and how long to wait before the next attempt.
+ * <p>
+ * Connection failures, timeouts and the server errors InfluxDB answers while overloaded or
+ * restarting are retried, with exponentially growing delays. Delays are chosen at random up to
+ * that bound ("full jitter") so that many builds failing at once do not retry in lockstep.
+ * Rejected data (HTTP 4xx) is never retried.
+ * <p>
+ * Retries are tuned with system properties:
+ * <ul>
+ * <li>{@code jenkinsci.plugins.influxdb.client.RetryPolicy.maxAttempts} - attempts per write, including the first one (default 3)</li>
+ * <li>{@code jenkinsci.plugins.influxdb.client.RetryPolicy.initialDelayMillis} - bound of the delay before the first retry (default 200)</li>
+ * <li>{@code jenkinsci.plugins.influxdb.client.RetryPolicy.maxDelayMillis} - bound of any delay (default 5000)</li>
+ * </ul>
+ */
+public class RetryPolicy {
+
+    static final RetryPolicy DEFAULT = new RetryPolicy(
+            SystemProperties.getInteger(RetryPolicy.class.getName() + ".maxAttempts", 3),
+            SystemProperties.getInteger(RetryPolicy.class.getName() + ".initialDelayMillis", 200),
+            SystemProperties.getInteger(RetryPolicy.class.getName() + ".maxDelayMillis", 5000));
+
+    private final int maxAttempts;
+    private final long initialDelayMillis;
+    private final long maxDelayMillis;
+
+    RetryPolicy(int maxAttempts, long initialDelayMillis, long maxDelayMillis) {
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.initialDelayMillis = Math.max(0, initialDelayMillis);
+        this.maxDelayMillis = Math.max(this.initialDelayMillis, maxDelayMillis);
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * @return whether a write which failed with the given exception may succeed when sent again
+     */
+    public boolean isRetryable(IOException e) {
+        if (e instanceof CircuitBreaker.OpenException) {
+            return false;
+        }
+        if (e instanceof LineProtocolWriter.WriteException) {
+            int status = ((LineProtocolWriter.WriteException) e).getStatus();
+            return status == 429 || status >= 500;
+        }
+        return true;
+    }
+
+    /**
+     * @param attempt number of the attempt which failed, starting with 1
+     * @return milliseconds to wait before the next attempt
+     */
+    public long delayMillis(int attempt) {
+        long bound = initialDelayMillis << Math.min(attempt - 1, 30);
+        if (bound <= 0 || bound > maxDelayMillis) {
+            bound = maxDelayMillis;
+        }
+        return bound == 0 ? 0 : ThreadLocalRandom.current().nextLong(bound + 1);
+    }
+}
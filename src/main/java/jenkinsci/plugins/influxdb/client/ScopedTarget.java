@@ -0,0 +1,116 @@
+package jenkinsci.plugins.influxdb.client;
+
+import hudson.util.Secret;
+import jenkins.util.SystemProperties;
+import jenkinsci.plugins.influxdb.models.Target;
+import okhttp3.OkHttpClient;
+
+import javax.annotation.CheckForNull;
+import java.io.Serializable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The parts of a {@link Target} needed to write to it, handed to an agent which writes its points
+ * itself.
+ * <p>
+ * A {@link Secret} can only be decrypted on the controller, so the password travels in plain text
+ * over the remoting channel, and anyone in control of the agent can read it. Writing from the agent
+ * is therefore opt-in. The copy expires a short while after the controller made it, checked before
+ * every request, and it is never kept on the agent: every write creates its own {@link LineProtocolWriter}.
+ */
+public class ScopedTarget implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final long VALID_FOR_MILLIS = TimeUnit.SECONDS.toMillis(
+            SystemProperties.getInteger(ScopedTarget.class.getName() + ".validForSeconds", 300));
+
+    private final String description;
+    private final String url;
+    private final String username;
+    private final String password;
+    private final String database;
+    private final String retentionPolicy;
+    private final int compressionLevel;
+    private final long compressionThreshold;
+    private final int maxPointsPerRequest;
+    private final int maxKilobytesPerRequest;
+    private final long validForMillis;
+    /**
+     * Stamped by the controller, in its {@link System#currentTimeMillis()}.
+     */
+    private final long expiresAtMillis;
+
+    private ScopedTarget(Target target, long validForMillis) {
+        this.description = target.getDescription();
+        this.url = target.getUrl();
+        this.username = target.getUsername();
+        this.password = Secret.toString(target.getPassword());
+        this.database = target.getDatabase();
+        this.retentionPolicy = target.getRetentionPolicy();
+        this.compressionLevel = target.getCompressionLevel();
+        this.compressionThreshold = target.getCompressionThreshold();
+        this.maxPointsPerRequest = target.getMaxPointsPerRequest();
+        this.maxKilobytesPerRequest = target.getMaxKilobytesPerRequest();
+        this.validForMillis = validForMillis;
+        this.expiresAtMillis = System.currentTimeMillis() + validForMillis;
+    }
+
+    /**
+     * @return a copy of the target, or {@code null} if it is reached through the Jenkins proxy,
+     * whose configuration is not available on agents
+     */
+    @CheckForNull
+    public static ScopedTarget of(Target target) {
+        return of(target, VALID_FOR_MILLIS);
+    }
+
+    @CheckForNull
+    static ScopedTarget of(Target target, long validForMillis) {
+        return target.isUsingJenkinsProxy() ? null : new ScopedTarget(target, validForMillis);
+    }
+
+    /**
+     * The copy expires at the time the controller stamped on it. As the clock of the agent may be
+     * behind, it also expires once it was held on the agent for as long as it is valid.
+     *
+     * @param receivedNanos {@link System#nanoTime()} when the agent received the copy
+     * @return whether the copy may no longer be used
+     */
+    public boolean isExpired(long receivedNanos) {
+        return System.currentTimeMillis() >= expiresAtMillis
+                || System.nanoTime() - receivedNanos > TimeUnit.MILLISECONDS.toNanos(validForMillis);
+    }
+
+    /**
+     * @param httpClient HTTP client of the agent
+     */
+    public LineProtocolWriter newWriter(OkHttpClient httpClient) {
+        return new LineProtocolWriter(httpClient, url, username, password, compressionLevel, compressionThreshold);
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public String getDatabase() {
+        return database;
+    }
+
+    public String getRetentionPolicy() {
+        return retentionPolicy;
+    }
+
+    public int getMaxPointsPerRequest() {
+        return maxPointsPerRequest;
+    }
+
+    public long getMaxBytesPerRequest() {
+        return 1024L * maxKilobytesPerRequest;
+    }
+
+    @Override
+    public String toString() {
+        return description + " (" + url + ", " + database + ")";
+    }
+}
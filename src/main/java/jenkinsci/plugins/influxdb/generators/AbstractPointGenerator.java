@@ -2,14 +2,27 @@ package jenkinsci.plugins.influxdb.generators;
 
 import hudson.model.Run;
 import jenkins.model.Jenkins;
+import jenkinsci.plugins.influxdb.client.FieldType;
+import jenkinsci.plugins.influxdb.client.FieldTypeLookup;
 import jenkinsci.plugins.influxdb.renderer.MeasurementRenderer;
+import jenkinsci.plugins.influxdb.write.LineProtocolEncoder;
 import org.influxdb.dto.Point;
 
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 public abstract class AbstractPointGenerator implements PointGenerator {
 
+    /**
+     * The logger.
+     **/
+    private static final Logger logger = Logger.getLogger(AbstractPointGenerator.class.getName());
+
     public static final String PROJECT_NAME = "project_name";
     public static final String PROJECT_PATH = "project_path";
     public static final String BUILD_NUMBER = "build_number";
@@ -19,15 +32,54 @@ public abstract class AbstractPointGenerator implements PointGenerator {
 
     private final MeasurementRenderer projectNameRenderer;
 
+    private FieldTypeLookup fieldTypes = FieldTypeLookup.NONE;
+
+    /**
+     * The project name and path of the last build points were built for. Reports with thousands
+     * of points would otherwise render the same name and path for every single one.
+     */
+    private SeriesTags seriesTags;
+
     public AbstractPointGenerator(MeasurementRenderer projectNameRenderer, long timestamp) {
         this.projectNameRenderer = Objects.requireNonNull(projectNameRenderer);
         this.timestamp = timestamp;
     }
 
+    /**
+     * @param fieldTypes the field types the targets expect for user supplied data
+     */
+    public void setFieldTypes(FieldTypeLookup fieldTypes) {
+        this.fieldTypes = Objects.requireNonNull(fieldTypes);
+    }
+
+    /**
+     * Converts user supplied field values to the types the targets expect. Values which cannot be
+     * converted are left out, as InfluxDB would reject the whole request otherwise.
+     */
+    protected Map<String, Object> coerceFields(String measurement, Map<String, ?> fields) {
+        Map<String, Object> coerced = new LinkedHashMap<>();
+        for (Map.Entry<String, ?> field : fields.entrySet()) {
+            Object value = field.getValue();
+            if (value == null) {
+                continue;
+            }
+            FieldType type = fieldTypes.typeOf(measurement, field.getKey());
+            Object converted = type == null ? FieldType.normalize(value) : type.coerce(value);
+            if (converted == null) {
+                logger.log(Level.WARNING, "Dropping field ''{0}'' of measurement ''{1}'': ''{2}'' is not a valid {3}",
+                        new Object[]{field.getKey(), measurement, value, type.name().toLowerCase(Locale.ENGLISH)});
+                continue;
+            }
+            coerced.put(field.getKey(), converted);
+        }
+        return coerced;
+    }
+
     @Override
     public Point.Builder buildPoint(String name, String customPrefix, Run<?, ?> build, long timestamp) {
-        String projectName = projectNameRenderer.render(build);
-        String projectPath = build.getParent().getRelativeNameFrom(Jenkins.getInstance());
+        SeriesTags series = seriesTags(build);
+        String projectName = series.projectName;
+        String projectPath = series.projectPath;
 
         Point.Builder builder = Point
                 .measurement(name)
@@ -49,4 +101,45 @@ public abstract class AbstractPointGenerator implements PointGenerator {
     public Point.Builder buildPoint(String name, String customPrefix, Run<?, ?> build) {
         return buildPoint(name, customPrefix, build, timestamp);
     }
+
+    /**
+     * Starts a basic build point in an encoder, with the same data as {@link #buildPoint(String, String, Run, long)}.
+     * Generators of large reports encode all their points with one encoder instead of building a
+     * {@link Point} for each.
+     */
+    protected LineProtocolEncoder startPoint(LineProtocolEncoder encoder, String name, String customPrefix, Run<?, ?> build, long timestamp) {
+        SeriesTags series = seriesTags(build);
+        return encoder
+                .measurement(name)
+                .field(PROJECT_NAME, series.projectName)
+                .field(PROJECT_PATH, series.projectPath)
+                .field(BUILD_NUMBER, build.getNumber())
+                .tag(CUSTOM_PREFIX, customPrefix)
+                .tag(PROJECT_NAME, series.projectName)
+                .tag(PROJECT_PATH, series.projectPath)
+                .time(timestamp);
+    }
+
+    private SeriesTags seriesTags(Run<?, ?> build) {
+        SeriesTags series = seriesTags;
+        if (series == null || series.build != build) {
+            series = new SeriesTags(build, projectNameRenderer.render(build),
+                    build.getParent().getRelativeNameFrom(Jenkins.getInstance()));
+            seriesTags = series;
+        }
+        return series;
+    }
+
+    private static final class SeriesTags {
+
+        private final Run<?, ?> build;
+        private final String projectName;
+        private final String projectPath;
+
+        private SeriesTags(Run<?, ?> build, String projectName, String projectPath) {
+            this.build = build;
+            this.projectName = projectName;
+            this.projectPath = projectPath;
+        }
+    }
 }
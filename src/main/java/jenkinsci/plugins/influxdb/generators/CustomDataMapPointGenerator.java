@@ -31,7 +31,7 @@ public class CustomDataMapPointGenerator extends AbstractPointGenerator {
         List<Point> points = new ArrayList<>();
 
         for (Map.Entry<String, Map<String, Object>> entry : customDataMap.entrySet()) {
-            Point.Builder pointBuilder = buildPoint(entry.getKey(), customPrefix, build).fields(entry.getValue());
+            Point.Builder pointBuilder = buildPoint(entry.getKey(), customPrefix, build).fields(coerceFields(entry.getKey(), entry.getValue()));
 
             if (customDataMapTags != null) {
                 Map<String, String> customTags = customDataMapTags.get(entry.getKey());
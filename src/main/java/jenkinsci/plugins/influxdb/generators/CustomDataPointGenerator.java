@@ -41,7 +41,7 @@ public class CustomDataPointGenerator extends AbstractPointGenerator {
 
         Point.Builder pointBuilder = buildPoint(measurementName, customPrefix, build)
                 .addField(BUILD_TIME, build.getDuration() == 0 ? dt : build.getDuration())
-                .fields(customData);
+                .fields(coerceFields(measurementName, customData));
 
         if (customDataTags != null) {
             if (customDataTags.size() > 0) {
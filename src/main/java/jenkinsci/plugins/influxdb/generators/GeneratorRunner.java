@@ -0,0 +1,233 @@
+package jenkinsci.plugins.influxdb.generators;
+
+import jenkinsci.plugins.influxdb.write.LineProtocolSink;
+
+import javax.annotation.CheckForNull;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Runs the point generators of a build on a shared pool. The generators hand their records over
+ * in chunks through a bounded queue to the calling build thread, which passes them on, so that
+ * writing to InfluxDB neither runs on a generator nor counts against its time.
+ */
+public class GeneratorRunner {
+
+    /**
+     * How often the build thread checks its generators while no chunk arrives.
+     */
+    private static final long POLL_MILLIS = 100;
+
+    /**
+     * A point generator of a build and the outcome of running it.
+     */
+    public static final class Generation {
+
+        private final String name;
+        private final String foundMessage;
+        private final PointGenerator generator;
+
+        private Future<Integer> result;
+        private volatile boolean cancelled;
+        private boolean started;
+        private long startedNanos;
+        private long handOverNanos;
+        private boolean handingOver;
+        private long handingOverSince;
+
+        private Integer generated;
+        private Throwable failure;
+        private boolean timedOut;
+
+        /**
+         * @param foundMessage what is logged when the generator has a report, or {@code null} if the generator
+         *                     always contributes points
+         */
+        public Generation(String name, @CheckForNull String foundMessage, PointGenerator generator) {
+            this.name = name;
+            this.foundMessage = foundMessage;
+            this.generator = generator;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        @CheckForNull
+        public String getFoundMessage() {
+            return foundMessage;
+        }
+
+        /**
+         * @return number of points generated, or {@code null} if the generator had no report or did not complete
+         */
+        @CheckForNull
+        public Integer getGenerated() {
+            return generated;
+        }
+
+        @CheckForNull
+        public Throwable getFailure() {
+            return failure;
+        }
+
+        /**
+         * @return whether the generator was cancelled as it ran out of time
+         */
+        public boolean isTimedOut() {
+            return timedOut;
+        }
+
+        synchronized void started() {
+            started = true;
+            startedNanos = System.nanoTime();
+        }
+
+        synchronized void handingOver(boolean handingOver) {
+            long now = System.nanoTime();
+            if (handingOver) {
+                handingOverSince = now;
+            } else if (this.handingOver) {
+                handOverNanos += now - handingOverSince;
+            }
+            this.handingOver = handingOver;
+        }
+
+        /**
+         * @return time spent generating, leaving out the time spent waiting for chunks to be taken over
+         *         and for a thread of the pool
+         */
+        synchronized long generatingNanos(long now) {
+            if (!started) {
+                return 0;
+            }
+            long waiting = handOverNanos + (handingOver ? now - handingOverSince : 0);
+            return now - startedNanos - waiting;
+        }
+
+        void cancel() {
+            cancelled = true;
+            result.cancel(true);
+        }
+    }
+
+    private final ExecutorService executor;
+    private final long timeoutNanos;
+    private final int chunkSize;
+    private final int queuedChunks;
+
+    /**
+     * @param executor     the pool the generators run on
+     * @param timeoutNanos time a generator may spend generating once it runs, before it is cancelled
+     * @param chunkSize    number of records handed over at once
+     * @param queuedChunks number of chunks the generators may hand over before they wait for the build thread
+     */
+    public GeneratorRunner(ExecutorService executor, long timeoutNanos, int chunkSize, int queuedChunks) {
+        this.executor = executor;
+        this.timeoutNanos = timeoutNanos;
+        this.chunkSize = chunkSize;
+        this.queuedChunks = Math.max(1, queuedChunks);
+    }
+
+    /**
+     * Runs the generators and passes the chunks they hand over to the consumer, on the calling
+     * thread, until every generator has completed, failed or run out of time. The chunks a
+     * cancelled generator handed over before are kept.
+     */
+    public void run(List<Generation> generations, Consumer<List<String>> consumer) {
+        Thread caller = Thread.currentThread();
+        BlockingQueue<List<String>> chunks = new ArrayBlockingQueue<>(queuedChunks);
+        for (Generation generation : generations) {
+            generation.result = executor.submit(() -> generate(generation, chunks, caller, consumer));
+        }
+
+        List<Generation> running = new ArrayList<>(generations);
+        try {
+            while (!running.isEmpty()) {
+                List<String> chunk = chunks.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (chunk != null) {
+                    consumer.accept(chunk);
+                }
+                long now = System.nanoTime();
+                for (int i = running.size() - 1; i >= 0; i--) {
+                    if (isFinished(running.get(i), now)) {
+                        running.remove(i);
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            for (Generation generation : running) {
+                generation.cancel();
+            }
+            return;
+        }
+
+        // Chunks of the generators which completed last
+        for (List<String> chunk = chunks.poll(); chunk != null; chunk = chunks.poll()) {
+            consumer.accept(chunk);
+        }
+    }
+
+    private boolean isFinished(Generation generation, long now) throws InterruptedException {
+        if (generation.result.isDone()) {
+            try {
+                generation.generated = generation.result.get();
+            } catch (ExecutionException e) {
+                generation.failure = e.getCause();
+            } catch (CancellationException e) {
+                generation.timedOut = true;
+            }
+            return true;
+        }
+        if (generation.generatingNanos(now) > timeoutNanos) {
+            generation.cancel();
+            generation.timedOut = true;
+            return true;
+        }
+        return false;
+    }
+
+    private Integer generate(Generation generation, BlockingQueue<List<String>> chunks, Thread caller, Consumer<List<String>> consumer) {
+        // Generators of other builds may hold the pool, so the clock starts only now
+        generation.started();
+        // The base metrics are written whether or not there is a report
+        if (generation.foundMessage != null && !generation.generator.hasReport()) {
+            return null;
+        }
+        LineProtocolSink sink = new LineProtocolSink(chunkSize, records -> handOver(generation, records, chunks, caller, consumer));
+        generation.generator.generate(sink);
+        sink.flush();
+        return sink.getCount();
+    }
+
+    private static void handOver(Generation generation, List<String> records, BlockingQueue<List<String>> chunks,
+                                 Thread caller, Consumer<List<String>> consumer) {
+        generation.handingOver(true);
+        try {
+            if (Thread.currentThread() == caller) {
+                // A saturated pool runs the generator on the build thread, which nobody else drains the queue for
+                consumer.accept(records);
+                return;
+            }
+            while (!chunks.offer(records, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                if (generation.cancelled) {
+                    throw new CancellationException(generation.name + " data was cancelled");
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException(generation.name + " data was cancelled");
+        } finally {
+            generation.handingOver(false);
+        }
+    }
+}
@@ -117,8 +117,8 @@ public class JenkinsBasePointGenerator extends AbstractPointGenerator {
 
         if (StringUtils.isNotBlank(jenkinsEnvParameterField)) {
             Properties fieldProperties = parsePropertiesString(jenkinsEnvParameterField);
-            Map fieldMap = resolveEnvParameterAndTransformToMap(fieldProperties);
-            point.fields(fieldMap);
+            Map<String, String> fieldMap = resolveEnvParameterAndTransformToMap(fieldProperties);
+            point.fields(coerceFields(measurementName, fieldMap));
         }
 
         if (StringUtils.isNotBlank(jenkinsEnvParameterTag)) {
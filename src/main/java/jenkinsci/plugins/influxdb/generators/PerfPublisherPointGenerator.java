@@ -6,9 +6,12 @@ import hudson.plugins.PerfPublisher.Report.Metric;
 import hudson.plugins.PerfPublisher.Report.ReportContainer;
 import hudson.plugins.PerfPublisher.Report.Test;
 import jenkinsci.plugins.influxdb.renderer.MeasurementRenderer;
+import jenkinsci.plugins.influxdb.write.LineProtocolEncoder;
 import org.influxdb.dto.Point;
 
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
@@ -19,6 +22,10 @@ public class PerfPublisherPointGenerator extends AbstractPointGenerator {
     private final String customPrefix;
     private final PerfPublisherBuildAction performanceBuildAction;
     private final TimeGenerator timeGenerator;
+    private final LineProtocolEncoder encoder = new LineProtocolEncoder();
+    private TestFilter testFilter = TestFilter.ALL;
+    private Map<String, Boolean> previousFailed;
+    private boolean previousLoaded;
 
     public PerfPublisherPointGenerator(MeasurementRenderer<Run<?, ?>> projectNameRenderer, String customPrefix, Run<?, ?> build,
                                        long timestamp) {
@@ -29,6 +36,13 @@ public class PerfPublisherPointGenerator extends AbstractPointGenerator {
         timeGenerator = new TimeGenerator(timestamp);
     }
 
+    /**
+     * @param testFilter selects the tests written as {@code perfpublisher_test} and {@code perfpublisher_test_metric}
+     */
+    public void setTestFilter(TestFilter testFilter) {
+        this.testFilter = testFilter;
+    }
+
     public boolean hasReport() {
         return performanceBuildAction != null && performanceBuildAction.getReport() != null;
     }
@@ -41,123 +55,189 @@ public class PerfPublisherPointGenerator extends AbstractPointGenerator {
     }
 
     public Point[] generate() {
+        List<Point> points = new ArrayList<>();
+        generate(PointSink.collectInto(points));
+        return points.toArray(new Point[0]);
+    }
+
+    @Override
+    public void generate(PointSink sink) {
         ReportContainer reports = performanceBuildAction.getReports();
+        List<Test> tests = reports.getTests();
+
+        // Tests are selected first, so that the summary tells how many were removed
+        BitSet selected = new BitSet(tests.size());
+        TestDelta delta = testFilter.startDelta(build, "perfpublisher");
+        for (int i = 0; i < tests.size(); i++) {
+            if (includes(tests.get(i), delta)) {
+                selected.set(i);
+            }
+        }
+        Integer removed = delta != null ? delta.finish() : null;
 
-        List<Point> points = new ArrayList<>();
+        sink.add(generateSummaryPoint(reports, removed));
+        generateMetricsPoints(reports, sink);
 
-        points.add(generateSummaryPoint(reports));
-        points.addAll(generateMetricsPoints(reports));
+        for (int i = selected.nextSetBit(0); i >= 0; i = selected.nextSetBit(i + 1)) {
+            Test test = tests.get(i);
+            sink.add(generateTestPoint(test));
+            generateTestMetricsPoints(test, sink);
+        }
+    }
 
-        for (Test test : reports.getTests()) {
-            points.add(generateTestPoint(test));
-            points.addAll(generateTestMetricsPoints(test));
+    private boolean includes(Test test, TestDelta delta) {
+        boolean failed = !test.isSuccessfull();
+        if (delta == null) {
+            return testFilter.includes(test.getName(), failed, this::previousFailed);
         }
+        long duration = test.isExecutionTime() ? (long) test.getExecutionTime().getMeasure() : 0;
+        return delta.includes(test.getName(), failed, duration);
+    }
 
-        return points.toArray(new Point[0]);
+    /**
+     * @return whether the tests of the previous build failed, by name, or {@code null} if it has
+     * no Performance Publisher report
+     */
+    private Map<String, Boolean> previousFailed() {
+        if (!previousLoaded) {
+            previousLoaded = true;
+            Run<?, ?> previousBuild = build.getPreviousBuild();
+            PerfPublisherBuildAction previousAction = previousBuild == null ? null : previousBuild.getAction(PerfPublisherBuildAction.class);
+            if (previousAction != null && previousAction.getReports() != null) {
+                previousFailed = new HashMap<>();
+                for (Test test : previousAction.getReports().getTests()) {
+                    previousFailed.put(test.getName(), !test.isSuccessfull());
+                }
+            }
+        }
+        return previousFailed;
+    }
+
+    /**
+     * Starts a point with a unique time, to guarantee correct point adding to DB.
+     */
+    private LineProtocolEncoder startPoint(String name) {
+        return startPoint(encoder, name, customPrefix, build, timeGenerator.next());
     }
 
-    private Point generateSummaryPoint(ReportContainer reports) {
-        Point.Builder builder = buildPoint("perfpublisher_summary", customPrefix, build)
-                .addField("number_of_tests", reports.getNumberOfTest())
-                .addField("number_of_executed_tests", reports.getNumberOfExecutedTest())
-                .addField("number_of_not_executed_tests", reports.getNumberOfNotExecutedTest())
-                .addField("number_of_passed_tests", reports.getNumberOfPassedTest())
-                .addField("number_of_failed_tests", reports.getNumberOfFailedTest())
-                .addField("number_of_success_tests", reports.getNumberOfSuccessTests())
-                .addField("number_of_true_false_tests", reports.getNumberOfTrueFalseTest());
+    /**
+     * Leaves a missing value out, like {@link Point} does.
+     */
+    private static void addField(LineProtocolEncoder point, String key, Double value) {
+        if (value != null) {
+            point.field(key, value.doubleValue());
+        }
+    }
+
+    /**
+     * @param removed number of tests of the previous build the report no longer has, written at
+     *                level {@link TestDetailLevel#DELTA} only
+     */
+    private LineProtocolEncoder generateSummaryPoint(ReportContainer reports, Integer removed) {
+        LineProtocolEncoder point = startPoint("perfpublisher_summary")
+                .field("number_of_tests", reports.getNumberOfTest())
+                .field("number_of_executed_tests", reports.getNumberOfExecutedTest())
+                .field("number_of_not_executed_tests", reports.getNumberOfNotExecutedTest())
+                .field("number_of_passed_tests", reports.getNumberOfPassedTest())
+                .field("number_of_failed_tests", reports.getNumberOfFailedTest())
+                .field("number_of_success_tests", reports.getNumberOfSuccessTests())
+                .field("number_of_true_false_tests", reports.getNumberOfTrueFalseTest());
+        if (removed != null) {
+            point.field("number_of_removed_tests", removed.intValue());
+        }
 
+        // Each best and worst test is looked up once; ReportContainer walks all tests for every call
         // compile time
-        if (reports.getBestCompileTimeTest().isCompileTime()) {
-            builder.addField("best_compile_time_test_value", reports.getBestCompileTimeTestValue())
-                    .addField("best_compile_time_test_name", reports.getBestCompileTimeTestName())
-                    .addField("worst_compile_time_test_value", reports.getWorstCompileTimeTestValue())
-                    .addField("worst_compile_time_test_name", reports.getWorstCompileTimeTestName())
-                    .addField("avg_compile_time", reports.getAverageOfCompileTime());
+        Test bestCompileTime = reports.getBestCompileTimeTest();
+        if (bestCompileTime.isCompileTime()) {
+            Test worstCompileTime = reports.getWorstCompileTimeTest();
+            point.field("best_compile_time_test_value", bestCompileTime.getCompileTime().getMeasure())
+                    .field("best_compile_time_test_name", bestCompileTime.getName())
+                    .field("worst_compile_time_test_value", worstCompileTime.getCompileTime().getMeasure())
+                    .field("worst_compile_time_test_name", worstCompileTime.getName())
+                    .field("avg_compile_time", reports.getAverageOfCompileTime());
         }
 
         // performance
-        if (reports.getBestPerformanceTest().isPerformance()) {
-            builder.addField("best_performance_test_value", reports.getBestPerformanceTestValue())
-                    .addField("best_performance_test_name", reports.getBestPerformanceTestName())
-                    .addField("worst_performance_test_value", reports.getWorstPerformanceTestValue())
-                    .addField("worst_performance_test_name", reports.getWorstPerformanceTestName())
-                    .addField("average_performance", reports.getAverageOfPerformance());
+        Test bestPerformance = reports.getBestPerformanceTest();
+        if (bestPerformance.isPerformance()) {
+            Test worstPerformance = reports.getWorstPerformanceTest();
+            point.field("best_performance_test_value", bestPerformance.getPerformance().getMeasure())
+                    .field("best_performance_test_name", bestPerformance.getName())
+                    .field("worst_performance_test_value", worstPerformance.getPerformance().getMeasure())
+                    .field("worst_performance_test_name", worstPerformance.getName())
+                    .field("average_performance", reports.getAverageOfPerformance());
         }
 
         // execution time
-        if (reports.getBestExecutionTimeTest().isExecutionTime()) {
-            builder.addField("best_execution_time_test_value", reports.getBestExecutionTimeTestValue())
-                    .addField("best_execution_time_test_name", reports.getBestExecutionTimeTestName())
-                    .addField("worst_execution_time_test_value", reports.getWorstExecutionTimeTestValue())
-                    .addField("worst_execution_time_test_name", reports.getWorstExecutionTimeTestName())
-                    .addField("avg_execution_time", reports.getAverageOfExecutionTime());
+        Test bestExecutionTime = reports.getBestExecutionTimeTest();
+        if (bestExecutionTime.isExecutionTime()) {
+            Test worstExecutionTime = reports.getWorstExecutionTimeTest();
+            point.field("best_execution_time_test_value", bestExecutionTime.getExecutionTime().getMeasure())
+                    .field("best_execution_time_test_name", bestExecutionTime.getName())
+                    .field("worst_execution_time_test_value", worstExecutionTime.getExecutionTime().getMeasure())
+                    .field("worst_execution_time_test_name", worstExecutionTime.getName())
+                    .field("avg_execution_time", reports.getAverageOfExecutionTime());
         }
 
-        return builder.build();
+        return point;
     }
 
-    private List<Point> generateMetricsPoints(ReportContainer reports) {
-        List<Point> points = new ArrayList<>();
-
+    private void generateMetricsPoints(ReportContainer reports, PointSink sink) {
+        // Every call walks all tests, so compute each map only once
+        Map<String, Double> worstValues = reports.getWorstValuePerMetrics();
+        Map<String, Double> bestValues = reports.getBestValuePerMetrics();
         for (Map.Entry<String, Double> entry : reports.getAverageValuePerMetrics().entrySet()) {
             String metricName = entry.getKey();
-            Point point = buildPoint("perfpublisher_metric", customPrefix, build)
-                    .addField("metric_name", metricName)
-                    .addField("average", entry.getValue())
-                    .addField("worst", reports.getWorstValuePerMetrics().get(metricName))
-                    .addField("best", reports.getBestValuePerMetrics().get(metricName))
-                    .build();
-            points.add(point);
+            LineProtocolEncoder point = startPoint("perfpublisher_metric")
+                    .field("metric_name", metricName);
+            addField(point, "average", entry.getValue());
+            addField(point, "worst", worstValues.get(metricName));
+            addField(point, "best", bestValues.get(metricName));
+            sink.add(point);
         }
-
-        return points;
     }
 
-    private Point generateTestPoint(Test test) {
-        Point.Builder builder = buildPoint("perfpublisher_test", customPrefix, build)
-                .addField("test_name", test.getName())
+    private LineProtocolEncoder generateTestPoint(Test test) {
+        LineProtocolEncoder point = startPoint("perfpublisher_test")
+                .field("test_name", test.getName())
                 .tag("test_name", test.getName())
-                .addField("successful", test.isSuccessfull())
-                .addField("executed", test.isExecuted());
+                .field("successful", test.isSuccessfull())
+                .field("executed", test.isExecuted());
 
         if (test.getMessage() != null) {
-            builder.addField("message", test.getMessage());
+            point.field("message", test.getMessage());
         }
 
         if (test.isCompileTime()) {
-            builder.addField("compile_time", test.getCompileTime().getMeasure());
+            point.field("compile_time", test.getCompileTime().getMeasure());
         }
 
         if (test.isExecutionTime()) {
-            builder.addField("execution_time", test.getExecutionTime().getMeasure());
+            point.field("execution_time", test.getExecutionTime().getMeasure());
         }
 
         if (test.isPerformance()) {
-            builder.addField("performance", test.getPerformance().getMeasure());
+            point.field("performance", test.getPerformance().getMeasure());
         }
 
-        return builder.build();
+        return point;
     }
 
-    private List<Point> generateTestMetricsPoints(Test test) {
-        List<Point> points = new ArrayList<>();
-
+    private void generateTestMetricsPoints(Test test, PointSink sink) {
         for (Map.Entry<String, Metric> entry : test.getMetrics().entrySet()) {
             String metricName = entry.getKey();
             Metric metric = entry.getValue();
 
-            Point point = buildPoint("perfpublisher_test_metric", customPrefix, build)
-                    .addField("test_name", test.getName())
+            LineProtocolEncoder point = startPoint("perfpublisher_test_metric")
+                    .field("test_name", test.getName())
                     .tag("test_name", test.getName())
-                    .addField("metric_name", metricName)
-                    .addField("value", metric.getMeasure())
-                    .addField("unit", metric.getUnit())
-                    .addField("relevant", metric.isRelevant())
-                    .build();
+                    .field("metric_name", metricName)
+                    .field("value", metric.getMeasure())
+                    .field("unit", metric.getUnit())
+                    .field("relevant", metric.isRelevant());
 
-            points.add(point);
+            sink.add(point);
         }
-
-        return points;
     }
 }
@@ -9,6 +9,16 @@ public interface PointGenerator {
 
     Point[] generate();
 
+    /**
+     * Generates the points into a sink rather than returning all of them at once. Generators of
+     * large reports override this, so their points never have to be held in memory together.
+     */
+    default void generate(PointSink sink) {
+        for (Point point : generate()) {
+            sink.add(point);
+        }
+    }
+
     /**
      * Initializes a basic build point with the basic data already set with a specified timestamp.
      */
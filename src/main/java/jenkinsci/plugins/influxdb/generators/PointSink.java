@@ -0,0 +1,37 @@
+package jenkinsci.plugins.influxdb.generators;
+
+import jenkinsci.plugins.influxdb.write.LineProtocolEncoder;
+import org.influxdb.dto.Point;
+
+import java.util.List;
+
+/**
+ * Receives the points of a generator one by one, as they are generated.
+ */
+public interface PointSink {
+
+    void add(Point point);
+
+    /**
+     * Adds the point an encoder currently holds. Generators of large reports encode their points
+     * rather than building a {@link Point} for each; the encoder is reused once this returns.
+     */
+    void add(LineProtocolEncoder point);
+
+    /**
+     * @return a sink collecting the points into a list, for {@link PointGenerator#generate()}
+     */
+    static PointSink collectInto(List<Point> points) {
+        return new PointSink() {
+            @Override
+            public void add(Point point) {
+                points.add(point);
+            }
+
+            @Override
+            public void add(LineProtocolEncoder point) {
+                points.add(point.toPoint());
+            }
+        };
+    }
+}
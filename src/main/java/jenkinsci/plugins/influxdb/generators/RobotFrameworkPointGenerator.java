@@ -6,12 +6,18 @@ import hudson.plugins.robot.model.RobotCaseResult;
 import hudson.plugins.robot.model.RobotResult;
 import hudson.plugins.robot.model.RobotSuiteResult;
 import jenkinsci.plugins.influxdb.renderer.MeasurementRenderer;
+import jenkinsci.plugins.influxdb.write.LineProtocolEncoder;
 import org.influxdb.dto.Point;
 
 import java.util.ArrayList;
-import java.util.Hashtable;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 
 public class RobotFrameworkPointGenerator extends AbstractPointGenerator {
 
@@ -28,18 +34,30 @@ public class RobotFrameworkPointGenerator extends AbstractPointGenerator {
     private static final String RF_SUITES = "rf_suites";
     private static final String RF_SUITE_NAME = "rf_suite_name";
     private static final String RF_TESTCASES = "rf_testcases";
+    private static final String RF_REMOVED_TESTCASES = "rf_removed_testcases";
     private static final String RF_TAG_NAME = "rf_tag_name";
 
     private final Run<?, ?> build;
     private final String customPrefix;
     private final Map<String, RobotTagResult> tagResults;
+    private final LineProtocolEncoder encoder = new LineProtocolEncoder();
+    private TestFilter testFilter = TestFilter.ALL;
+    private Map<String, Boolean> previousFailed;
+    private boolean previousLoaded;
 
     public RobotFrameworkPointGenerator(MeasurementRenderer<Run<?,?>> projectNameRenderer, String customPrefix,
                                         Run<?, ?> build, long timestamp) {
         super(projectNameRenderer, timestamp);
         this.build = build;
         this.customPrefix = customPrefix;
-        tagResults = new Hashtable<>();
+        tagResults = new LinkedHashMap<>();
+    }
+
+    /**
+     * @param testFilter selects the cases written as {@code testcase_point}
+     */
+    public void setTestFilter(TestFilter testFilter) {
+        this.testFilter = testFilter;
     }
 
     public boolean hasReport() {
@@ -48,96 +66,187 @@ public class RobotFrameworkPointGenerator extends AbstractPointGenerator {
     }
 
     public Point[] generate() {
+        List<Point> points = new ArrayList<>();
+        generate(PointSink.collectInto(points));
+        return points.toArray(new Point[0]);
+    }
+
+    @Override
+    public void generate(PointSink sink) {
         RobotBuildAction robotBuildAction = build.getAction(RobotBuildAction.class);
 
-        List<Point> points = new ArrayList<>();
+        // Cases are selected first, so that the overview tells how many were removed
+        TestDelta delta = testFilter.startDelta(build, "robot");
+        BitSet selected = selectCases(robotBuildAction.getResult(), delta);
+        Integer removed = delta != null ? delta.finish() : null;
 
-        points.add(generateOverviewPoint(robotBuildAction));
-        points.addAll(generateSubPoints(robotBuildAction.getResult()));
+        sink.add(generateOverviewPoint(robotBuildAction, removed));
+        generateSubPoints(robotBuildAction.getResult(), selected, sink);
+    }
 
-        return points.toArray(new Point[0]);
+    /**
+     * @param removed number of cases of the previous build the result no longer has, written at
+     *                level {@link TestDetailLevel#DELTA} only
+     */
+    private LineProtocolEncoder generateOverviewPoint(RobotBuildAction robotBuildAction, Integer removed) {
+        LineProtocolEncoder point = startPoint(encoder, "rf_results", customPrefix, build, timestamp)
+            .field(RF_FAILED, robotBuildAction.getResult().getOverallFailed())
+            .field(RF_PASSED, robotBuildAction.getResult().getOverallPassed())
+            .field(RF_TOTAL, robotBuildAction.getResult().getOverallTotal())
+            .field(RF_CRITICAL_FAILED, robotBuildAction.getResult().getCriticalFailed())
+            .field(RF_CRITICAL_PASSED, robotBuildAction.getResult().getCriticalPassed())
+            .field(RF_CRITICAL_TOTAL, robotBuildAction.getResult().getCriticalTotal())
+            .field(RF_CRITICAL_PASS_PERCENTAGE, robotBuildAction.getCriticalPassPercentage())
+            .field(RF_PASS_PERCENTAGE, robotBuildAction.getOverallPassPercentage())
+            .field(RF_DURATION, robotBuildAction.getResult().getDuration())
+            .field(RF_SUITES, robotBuildAction.getResult().getAllSuites().size());
+        if (removed != null) {
+            point.field(RF_REMOVED_TESTCASES, removed.intValue());
+        }
+        return point;
     }
 
-    private Point generateOverviewPoint(RobotBuildAction robotBuildAction) {
-        return buildPoint("rf_results", customPrefix, build)
-            .addField(RF_FAILED, robotBuildAction.getResult().getOverallFailed())
-            .addField(RF_PASSED, robotBuildAction.getResult().getOverallPassed())
-            .addField(RF_TOTAL, robotBuildAction.getResult().getOverallTotal())
-            .addField(RF_CRITICAL_FAILED, robotBuildAction.getResult().getCriticalFailed())
-            .addField(RF_CRITICAL_PASSED, robotBuildAction.getResult().getCriticalPassed())
-            .addField(RF_CRITICAL_TOTAL, robotBuildAction.getResult().getCriticalTotal())
-            .addField(RF_CRITICAL_PASS_PERCENTAGE, robotBuildAction.getCriticalPassPercentage())
-            .addField(RF_PASS_PERCENTAGE, robotBuildAction.getOverallPassPercentage())
-            .addField(RF_DURATION, robotBuildAction.getResult().getDuration())
-            .addField(RF_SUITES, robotBuildAction.getResult().getAllSuites().size())
-            .build();
+    /**
+     * @return the cases to write, by position among the cases of all suites
+     */
+    private BitSet selectCases(RobotResult robotResult, TestDelta delta) {
+        // Cases selected so far, to skip duplicate cases
+        Set<CaseKey> cases = new HashSet<>();
+        BitSet selected = new BitSet();
+        int index = 0;
+        for (RobotSuiteResult suiteResult : robotResult.getAllSuites()) {
+            for (RobotCaseResult caseResult : suiteResult.getAllCases()) {
+                if (cases.add(new CaseKey(caseResult)) && includes(caseResult, delta)) {
+                    selected.set(index);
+                }
+                index++;
+            }
+        }
+        return selected;
     }
 
-    private List<Point> generateSubPoints(RobotResult robotResult) {
-        List<Point> subPoints = new ArrayList<>();
+    private void generateSubPoints(RobotResult robotResult, BitSet selected, PointSink sink) {
         TimeGenerator suiteResultTime = new TimeGenerator(timestamp);
+        int index = 0;
 
         for (RobotSuiteResult suiteResult : robotResult.getAllSuites()) {
             long caseTimeStamp = suiteResultTime.next();
-            subPoints.add(generateSuitePoint(suiteResult, caseTimeStamp));
+            sink.add(generateSuitePoint(suiteResult, caseTimeStamp));
             // To preserve the existing functionality of the case being timestamps after the
             // suiteResult, seed the new TimeGenerator with the suiteResult's time
             TimeGenerator caseResultTime = new TimeGenerator(caseTimeStamp);
             for (RobotCaseResult caseResult : suiteResult.getAllCases()) {
-                Point casePoint = generateCasePoint(caseResult, caseResultTime.next());
-                if (casePointExists(subPoints, casePoint)) {
-                    continue;
+                long caseTime = caseResultTime.next();
+                for (String tag : caseResult.getTags()) {
+                    markTagResult(tag, caseResult);
+                }
+                if (selected.get(index++)) {
+                    sink.add(generateCasePoint(caseResult, caseTime));
                 }
-                subPoints.add(casePoint);
             }
         }
 
         TimeGenerator tagTime = new TimeGenerator(timestamp);
         for (Map.Entry<String, RobotTagResult> entry : tagResults.entrySet()) {
-            subPoints.add(generateTagPoint(entry.getValue(), tagTime.next()));
+            sink.add(generateTagPoint(entry.getValue(), tagTime.next()));
         }
-        return subPoints;
     }
 
-    private boolean casePointExists(List<Point> subPoints, Point point) {
-        for (Point p : subPoints) {
-            try {
-                // CasePoints are the same if all the fields are equal
-                String pFields = p.toString().substring(p.toString().indexOf("fields="));
-                String pointFields = point.toString().substring(point.toString().indexOf("fields="));
-                if (pFields.equals(pointFields)) {
-                    return true;
+    private boolean includes(RobotCaseResult caseResult, TestDelta delta) {
+        String name = caseResult.getDuplicateSafeName();
+        boolean failed = caseResult.getFailed() > 0;
+        return delta != null ? delta.includes(name, failed, caseResult.getDuration())
+                : testFilter.includes(name, failed, this::previousFailed);
+    }
+
+    /**
+     * @return whether the cases of the previous build failed, by duplicate safe name, or
+     * {@code null} if it has no Robot Framework results
+     */
+    private Map<String, Boolean> previousFailed() {
+        if (!previousLoaded) {
+            previousLoaded = true;
+            Run<?, ?> previousBuild = build.getPreviousBuild();
+            RobotBuildAction previousAction = previousBuild == null ? null : previousBuild.getAction(RobotBuildAction.class);
+            if (previousAction != null && previousAction.getResult() != null) {
+                previousFailed = new HashMap<>();
+                for (RobotSuiteResult suiteResult : previousAction.getResult().getAllSuites()) {
+                    for (RobotCaseResult caseResult : suiteResult.getAllCases()) {
+                        previousFailed.put(caseResult.getDuplicateSafeName(), caseResult.getFailed() > 0);
+                    }
                 }
-            } catch (StringIndexOutOfBoundsException e) {
-                // Handle exception
             }
         }
-        return false;
+        return previousFailed;
     }
 
-    private Point generateCasePoint(RobotCaseResult caseResult, long timestamp) {
-        Point point = buildPoint("testcase_point", customPrefix, build, timestamp)
-            .tag(RF_NAME, caseResult.getName())
-            .addField(RF_NAME, caseResult.getName())
-            .addField(RF_SUITE_NAME, caseResult.getParent().getName())
-            .addField(RF_CRITICAL_FAILED, caseResult.getCriticalFailed())
-            .addField(RF_CRITICAL_PASSED, caseResult.getCriticalPassed())
-            .addField(RF_FAILED, caseResult.getFailed())
-            .addField(RF_PASSED, caseResult.getPassed())
-            .addField(RF_DURATION, caseResult.getDuration())
-            .build();
-
-        for (String tag : caseResult.getTags()) {
-            markTagResult(tag, caseResult);
+    /**
+     * The fields of a case point which are not the same for all cases of a build. Case points
+     * are duplicates if all their fields are equal.
+     */
+    private static final class CaseKey {
+
+        private final String name;
+        private final String suiteName;
+        private final long criticalFailed;
+        private final long criticalPassed;
+        private final long failed;
+        private final long passed;
+        private final long duration;
+        private final int hash;
+
+        private CaseKey(RobotCaseResult caseResult) {
+            this.name = caseResult.getName();
+            this.suiteName = caseResult.getParent().getName();
+            this.criticalFailed = caseResult.getCriticalFailed();
+            this.criticalPassed = caseResult.getCriticalPassed();
+            this.failed = caseResult.getFailed();
+            this.passed = caseResult.getPassed();
+            this.duration = caseResult.getDuration();
+            this.hash = Objects.hash(name, suiteName, criticalFailed, criticalPassed, failed, passed, duration);
         }
 
-        return point;
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof CaseKey)) {
+                return false;
+            }
+            CaseKey that = (CaseKey) o;
+            return hash == that.hash
+                    && criticalFailed == that.criticalFailed
+                    && criticalPassed == that.criticalPassed
+                    && failed == that.failed
+                    && passed == that.passed
+                    && duration == that.duration
+                    && Objects.equals(name, that.name)
+                    && Objects.equals(suiteName, that.suiteName);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private LineProtocolEncoder generateCasePoint(RobotCaseResult caseResult, long timestamp) {
+        return startPoint(encoder, "testcase_point", customPrefix, build, timestamp)
+            .tag(RF_NAME, caseResult.getName())
+            .field(RF_NAME, caseResult.getName())
+            .field(RF_SUITE_NAME, caseResult.getParent().getName())
+            .field(RF_CRITICAL_FAILED, caseResult.getCriticalFailed())
+            .field(RF_CRITICAL_PASSED, caseResult.getCriticalPassed())
+            .field(RF_FAILED, caseResult.getFailed())
+            .field(RF_PASSED, caseResult.getPassed())
+            .field(RF_DURATION, caseResult.getDuration());
     }
 
     private static final class RobotTagResult {
 
         private final String name;
-        private final List<String> testCases = new ArrayList<>();
+        private final Set<String> testCases = new HashSet<>();
         private int failed = 0;
         private int passed = 0;
         private int criticalFailed = 0;
@@ -150,46 +259,40 @@ public class RobotFrameworkPointGenerator extends AbstractPointGenerator {
     }
 
     private void markTagResult(String tag, RobotCaseResult caseResult) {
-        if (tagResults.get(tag) == null)
-            tagResults.put(tag, new RobotTagResult(tag));
-
-        RobotTagResult tagResult = tagResults.get(tag);
-        if (!tagResult.testCases.contains(caseResult.getDuplicateSafeName())) {
+        RobotTagResult tagResult = tagResults.computeIfAbsent(tag, RobotTagResult::new);
+        if (tagResult.testCases.add(caseResult.getDuplicateSafeName())) {
             tagResult.failed += caseResult.getFailed();
             tagResult.passed += caseResult.getPassed();
             tagResult.criticalFailed += caseResult.getCriticalFailed();
             tagResult.criticalPassed += caseResult.getCriticalPassed();
             tagResult.duration += caseResult.getDuration();
-            tagResult.testCases.add(caseResult.getDuplicateSafeName());
         }
     }
 
-    private Point generateTagPoint(RobotTagResult tagResult, long timestamp) {
-        return buildPoint("tag_point", customPrefix, build, timestamp)
+    private LineProtocolEncoder generateTagPoint(RobotTagResult tagResult, long timestamp) {
+        return startPoint(encoder, "tag_point", customPrefix, build, timestamp)
             .tag(RF_TAG_NAME, tagResult.name)
-            .addField(RF_TAG_NAME, tagResult.name)
-            .addField(RF_CRITICAL_FAILED, tagResult.criticalFailed)
-            .addField(RF_CRITICAL_PASSED, tagResult.criticalPassed)
-            .addField(RF_CRITICAL_TOTAL, tagResult.criticalPassed + tagResult.criticalFailed)
-            .addField(RF_FAILED, tagResult.failed)
-            .addField(RF_PASSED, tagResult.passed)
-            .addField(RF_TOTAL, tagResult.passed + tagResult.failed)
-            .addField(RF_DURATION, tagResult.duration)
-            .build();
-    }
-
-    private Point generateSuitePoint(RobotSuiteResult suiteResult, long timestamp) {
-        return buildPoint("suite_result", customPrefix, build, timestamp)
+            .field(RF_TAG_NAME, tagResult.name)
+            .field(RF_CRITICAL_FAILED, tagResult.criticalFailed)
+            .field(RF_CRITICAL_PASSED, tagResult.criticalPassed)
+            .field(RF_CRITICAL_TOTAL, tagResult.criticalPassed + tagResult.criticalFailed)
+            .field(RF_FAILED, tagResult.failed)
+            .field(RF_PASSED, tagResult.passed)
+            .field(RF_TOTAL, tagResult.passed + tagResult.failed)
+            .field(RF_DURATION, tagResult.duration);
+    }
+
+    private LineProtocolEncoder generateSuitePoint(RobotSuiteResult suiteResult, long timestamp) {
+        return startPoint(encoder, "suite_result", customPrefix, build, timestamp)
             .tag(RF_SUITE_NAME, suiteResult.getName())
-            .addField(RF_SUITE_NAME, suiteResult.getName())
-            .addField(RF_TESTCASES, suiteResult.getAllCases().size())
-            .addField(RF_CRITICAL_FAILED, suiteResult.getCriticalFailed())
-            .addField(RF_CRITICAL_PASSED, suiteResult.getCriticalPassed())
-            .addField(RF_CRITICAL_TOTAL, suiteResult.getCriticalTotal())
-            .addField(RF_FAILED, suiteResult.getFailed())
-            .addField(RF_PASSED, suiteResult.getPassed())
-            .addField(RF_TOTAL, suiteResult.getTotal())
-            .addField(RF_DURATION, suiteResult.getDuration())
-            .build();
+            .field(RF_SUITE_NAME, suiteResult.getName())
+            .field(RF_TESTCASES, suiteResult.getAllCases().size())
+            .field(RF_CRITICAL_FAILED, suiteResult.getCriticalFailed())
+            .field(RF_CRITICAL_PASSED, suiteResult.getCriticalPassed())
+            .field(RF_CRITICAL_TOTAL, suiteResult.getCriticalTotal())
+            .field(RF_FAILED, suiteResult.getFailed())
+            .field(RF_PASSED, suiteResult.getPassed())
+            .field(RF_TOTAL, suiteResult.getTotal())
+            .field(RF_DURATION, suiteResult.getDuration());
     }
 }
@@ -1,30 +1,39 @@
 package jenkinsci.plugins.influxdb.generators;
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.nio.charset.StandardCharsets;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 import java.lang.InterruptedException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.annotation.CheckForNull;
 
 import hudson.EnvVars;
-import okhttp3.Credentials;
-import okhttp3.OkHttpClient;
-import okhttp3.Request;
-import okhttp3.Response;
 import org.apache.commons.lang3.StringUtils;
 import org.influxdb.dto.Point;
 
 import hudson.model.Run;
 import hudson.model.TaskListener;
 import jenkinsci.plugins.influxdb.renderer.MeasurementRenderer;
-import net.sf.json.JSONArray;
-import net.sf.json.JSONObject;
+import jenkinsci.plugins.influxdb.sonar.SonarQubeAnalysisAction;
+import jenkinsci.plugins.influxdb.sonar.SonarQubeCache;
+import jenkinsci.plugins.influxdb.sonar.SonarQubeClient;
+import jenkinsci.plugins.influxdb.sonar.SonarQubeLogScanner;
+import jenkinsci.plugins.influxdb.sonar.SonarQubeMeasures;
+import jenkinsci.plugins.influxdb.sonar.SonarQubeTaskPoller;
+import jenkinsci.plugins.influxdb.write.LineProtocolEncoder;
+import jenkinsci.plugins.influxdb.write.PublicationQueue;
 
 public class SonarQubePointGenerator extends AbstractPointGenerator {
 
+    /**
+     * The logger.
+     **/
+    private static final Logger logger = Logger.getLogger(SonarQubePointGenerator.class.getName());
+
     private static final String BUILD_DISPLAY_NAME = "display_name";
     private static final String SONARQUBE_LINES_OF_CODE = "lines_of_code";
     private static final String SONARQUBE_COMPLEXITY = "complexity";
@@ -34,27 +43,21 @@ public class SonarQubePointGenerator extends AbstractPointGenerator {
     private static final String SONARQUBE_INFO_ISSUES = "info_issues";
     private static final String SONARQUBE_BLOCKER_ISSUES = "blocker_issues";
 
-    private static final String URL_PATTERN_IN_LOGS = ".*" + Pattern.quote("ANALYSIS SUCCESSFUL, you can browse ")
-            + "(.*)";
-
-    private static final String SONAR_ISSUES_BASE_URL = "/api/issues/search?ps=500&projectKeys=";
-
-    private static final String SONAR_METRICS_BASE_URL = "/api/measures/component?metricKeys=ncloc,complexity,violations&componentKey=";
-
-    private static final OkHttpClient httpClient = new OkHttpClient();
-
-    private String sonarIssuesUrl;
-    private String sonarMetricsUrl;
+    private String sonarServer;
+    private String sonarProjectName;
 
     private final Run<?, ?> build;
     private final String customPrefix;
     private final TaskListener listener;
 
     private String sonarBuildLink = null;
+    private String ceTaskId = null;
     private String token = null;
 
     private EnvVars env = null;
 
+    private PointSink deferredSink = null;
+
     public SonarQubePointGenerator(MeasurementRenderer<Run<?, ?>> projectNameRenderer, String customPrefix,
                                    Run<?, ?> build, long timestamp, TaskListener listener) {
         super(projectNameRenderer, timestamp);
@@ -65,7 +68,11 @@ public class SonarQubePointGenerator extends AbstractPointGenerator {
 
     public boolean hasReport() {
         try {
-            sonarBuildLink = getSonarProjectURLFromBuildLogs(build);
+            SonarQubeAnalysisAction analysis = SonarQubeLogScanner.findAnalysis(build);
+            if (analysis != null) {
+                sonarBuildLink = analysis.getUrl();
+                ceTaskId = analysis.getCeTaskId();
+            }
             return !StringUtils.isEmpty(sonarBuildLink);
         } catch (IOException e) {
             //
@@ -80,11 +87,10 @@ public class SonarQubePointGenerator extends AbstractPointGenerator {
 
     private void setSonarDetails(String sonarBuildLink) {
         try {
-            String sonarProjectName = getSonarProjectName(sonarBuildLink);
+            sonarProjectName = getSonarProjectName(sonarBuildLink);
             // Use SONAR_HOST_URL environment variable if possible
             String url = env.get("SONAR_HOST_URL");
 
-            String sonarServer;
             if (url != null && !url.isEmpty()) {
                 sonarServer = url;
                 String logMessage = "[InfluxDB Plugin] INFO: Using SonarQube host URL found in environment variable SONAR_HOST_URL.";
@@ -100,8 +106,6 @@ public class SonarQubePointGenerator extends AbstractPointGenerator {
                             sonarBuildLink.indexOf("/dashboard/index/" + sonarProjectName));
                 }
             }
-            sonarIssuesUrl = sonarServer + SONAR_ISSUES_BASE_URL + sonarProjectName + "&resolved=false&severities=";
-            sonarMetricsUrl = sonarServer + SONAR_METRICS_BASE_URL + sonarProjectName;
         } catch (URISyntaxException e) {
             //
         }
@@ -116,59 +120,167 @@ public class SonarQubePointGenerator extends AbstractPointGenerator {
         }
     }
 
+    /**
+     * Receives the point of an analysis SonarQube was still processing when the build published,
+     * once it is processed. If not set, such points are written right away.
+     */
+    public void setDeferredSink(PointSink deferredSink) {
+        this.deferredSink = deferredSink;
+    }
+
     public Point[] generate() {
+        List<Point> points = new ArrayList<>();
+        generate(PointSink.collectInto(points));
+        return points.toArray(new Point[0]);
+    }
+
+    @Override
+    public void generate(PointSink sink) {
         setSonarDetails(sonarBuildLink);
 
-        Point point = null;
+        boolean processed = false;
+        if (ceTaskId != null) {
+            String status = getTaskStatus();
+            // Until processed, the numbers of the server may still be those of the previous analysis
+            if (!SonarQubeTaskPoller.isDone(status) && deferredSink != null) {
+                String logMessage = status != null
+                        ? "[InfluxDB Plugin] INFO: SonarQube is still processing the analysis. Its data will be written once processed."
+                        : "[InfluxDB Plugin] INFO: Could not get the processing status of the analysis from SonarQube. Its data will be written once processed.";
+                listener.getLogger().println(logMessage);
+                publishWhenProcessed();
+                return;
+            }
+            if (SonarQubeTaskPoller.isDone(status) && !SonarQubeTaskPoller.SUCCESS.equals(status)) {
+                String logMessage = "[InfluxDB Plugin] WARNING: SonarQube could not process the analysis (" + status + "). Skipping SonarQube data.";
+                listener.getLogger().println(logMessage);
+                return;
+            }
+            processed = SonarQubeTaskPoller.SUCCESS.equals(status);
+        }
+
         try {
-            point = buildPoint("sonarqube_data", customPrefix, build)
-                    .addField(BUILD_DISPLAY_NAME, build.getDisplayName())
-                    .addField(SONARQUBE_CRITICAL_ISSUES, getSonarIssues(sonarIssuesUrl, "CRITICAL"))
-                    .addField(SONARQUBE_BLOCKER_ISSUES, getSonarIssues(sonarIssuesUrl, "BLOCKER"))
-                    .addField(SONARQUBE_MAJOR_ISSUES, getSonarIssues(sonarIssuesUrl, "MAJOR"))
-                    .addField(SONARQUBE_MINOR_ISSUES, getSonarIssues(sonarIssuesUrl, "MINOR"))
-                    .addField(SONARQUBE_INFO_ISSUES, getSonarIssues(sonarIssuesUrl, "INFO"))
-                    .addField(SONARQUBE_LINES_OF_CODE, getLinesOfCode(sonarMetricsUrl))
-                    .build();
+            SonarQubeMeasures measures = fetchMeasures(sonarServer, sonarProjectName, ceTaskId, token, processed);
+            sink.add(addMeasures(startSonarPoint(), measures));
         } catch (IOException e) {
-            // handle
+            String logMessage = "[InfluxDB Plugin] WARNING: Could not get SonarQube data: " + e.getMessage();
+            listener.getLogger().println(logMessage);
         }
-        return new Point[] { point };
     }
 
-    private String getResult(String url) throws IOException {
-        Request.Builder requestBuilder = new Request.Builder()
-                .get()
-                .url(url)
-                .header("Accept", "application/json");
+    private LineProtocolEncoder startSonarPoint() {
+        return startPoint(new LineProtocolEncoder(), "sonarqube_data", customPrefix, build, timestamp)
+                .field(BUILD_DISPLAY_NAME, build.getDisplayName());
+    }
 
-        if (token != null) {
-            String credential = Credentials.basic(token, "", StandardCharsets.UTF_8);
-            requestBuilder.header("Authorization", credential);
+    private static LineProtocolEncoder addMeasures(LineProtocolEncoder point, SonarQubeMeasures measures) {
+        return point
+                .field(SONARQUBE_CRITICAL_ISSUES, measures.getIssues("CRITICAL"))
+                .field(SONARQUBE_BLOCKER_ISSUES, measures.getIssues("BLOCKER"))
+                .field(SONARQUBE_MAJOR_ISSUES, measures.getIssues("MAJOR"))
+                .field(SONARQUBE_MINOR_ISSUES, measures.getIssues("MINOR"))
+                .field(SONARQUBE_INFO_ISSUES, measures.getIssues("INFO"))
+                .field(SONARQUBE_LINES_OF_CODE, measures.getLinesOfCode());
+    }
+
+    /**
+     * Queries the status of the compute engine task, unless another publication of the analysis
+     * found it final already.
+     *
+     * @return the status of the compute engine task, or {@code null} if unknown
+     */
+    @CheckForNull
+    private String getTaskStatus() {
+        SonarQubeCache cache = SonarQubeCache.getInstance();
+        String status = cache.getStatus(sonarServer, sonarProjectName, ceTaskId);
+        if (status != null) {
+            return status;
+        }
+        try {
+            status = SonarQubeClient.getInstance().getTaskStatus(sonarServer, ceTaskId, token);
+        } catch (IOException e) {
+            logger.log(Level.FINE, "Could not get the status of SonarQube task " + ceTaskId, e);
+            return null;
+        }
+        if (SonarQubeTaskPoller.isDone(status)) {
+            cache.putStatus(sonarServer, sonarProjectName, ceTaskId, status);
         }
+        return status;
+    }
 
-        try (Response response = httpClient.newCall(requestBuilder.build()).execute()) {
-            if (response.code() != 200) {
-                throw new RuntimeException("Failed : HTTP error code : " + response.code() + " from URL : " + url);
-            }
+    /**
+     * Writes the point once SonarQube processed the analysis. The point keeps the timestamp of
+     * the publication.
+     */
+    private void publishWhenProcessed() {
+        new DeferredPublication(sonarServer, sonarProjectName, ceTaskId, token, build.getFullDisplayName(),
+                startSonarPoint(), deferredSink).start();
+    }
 
-            return response.body().string();
+    /**
+     * Queries the numbers of the analysis, unless another publication did already.
+     *
+     * @param processed whether SonarQube is known to have processed the analysis
+     */
+    private static SonarQubeMeasures fetchMeasures(String server, String projectName, @CheckForNull String ceTaskId,
+                                                   @CheckForNull String token, boolean processed) throws IOException {
+        SonarQubeClient client = SonarQubeClient.getInstance();
+        // Until processed, the numbers may still be those of the previous analysis
+        if (!processed) {
+            return client.fetch(server, projectName, token);
         }
+        return SonarQubeCache.getInstance().get(server, projectName, ceTaskId,
+                () -> client.fetch(server, projectName, token));
     }
 
-    private String getSonarProjectURLFromBuildLogs(Run<?, ?> build) throws IOException {
-        String url = null;
-        try (BufferedReader br = new BufferedReader(build.getLogReader())) {
-            String line;
-            Pattern p = Pattern.compile(URL_PATTERN_IN_LOGS);
-            while ((line = br.readLine()) != null) {
-                Matcher match = p.matcher(line);
-                if (match.matches()) {
-                    url = match.group(1);
+    /**
+     * The point of an analysis written once SonarQube processed it. Waiting may take up to
+     * {@code maxWaitMinutes}, so it keeps only what it needs to query the numbers and the point
+     * started already, rather than the build and its listener.
+     */
+    private static final class DeferredPublication {
+
+        private final String server;
+        private final String projectName;
+        private final String ceTaskId;
+        private final String token;
+        private final String buildName;
+        private final LineProtocolEncoder point;
+        private final PointSink sink;
+
+        DeferredPublication(String server, String projectName, String ceTaskId, @CheckForNull String token,
+                            String buildName, LineProtocolEncoder point, PointSink sink) {
+            this.server = server;
+            this.projectName = projectName;
+            this.ceTaskId = ceTaskId;
+            this.token = token;
+            this.buildName = buildName;
+            this.point = point;
+            this.sink = sink;
+        }
+
+        void start() {
+            SonarQubeTaskPoller.getInstance().awaitCompletion(server, ceTaskId, token).whenComplete((status, failure) -> {
+                if (SonarQubeTaskPoller.isDone(status)) {
+                    SonarQubeCache.getInstance().putStatus(server, projectName, ceTaskId, status);
+                }
+                if (failure != null) {
+                    logger.log(Level.WARNING, "Skipping SonarQube data of {0}: {1}", new Object[]{buildName, failure.getMessage()});
+                } else if (!SonarQubeTaskPoller.SUCCESS.equals(status)) {
+                    logger.log(Level.WARNING, "Skipping SonarQube data of {0}: SonarQube could not process the analysis ({1})",
+                            new Object[]{buildName, status});
+                } else if (!PublicationQueue.getInstance().submit(this::publish)) {
+                    logger.log(Level.WARNING, "Skipping SonarQube data of {0}: the publication queue is full", buildName);
                 }
+            });
+        }
+
+        private void publish() {
+            try {
+                sink.add(addMeasures(point, fetchMeasures(server, projectName, ceTaskId, token, true)));
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Could not get SonarQube data of " + buildName, e);
             }
         }
-        return url;
     }
 
     String getSonarProjectName(String url) throws URISyntaxException {
@@ -182,24 +294,4 @@ public class SonarQubePointGenerator extends AbstractPointGenerator {
         }
         return projectUrl.length > 1 ? projectUrl[projectUrl.length - 1] : "";
     }
-
-    private int getLinesOfCode(String url) throws IOException {
-        String output = getResult(url);
-        JSONObject metricsObjects = JSONObject.fromObject(output);
-        int linesOfCodeCount = 0;
-        JSONArray array = metricsObjects.getJSONObject("component").getJSONArray("measures");
-        for (int i = 0; i < array.size(); i++) {
-            JSONObject metricsObject = array.getJSONObject(i);
-            if (metricsObject.get("metric").equals("ncloc")) {
-                linesOfCodeCount = metricsObject.getInt("value");
-            }
-        }
-
-        return linesOfCodeCount;
-    }
-
-    private int getSonarIssues(String url, String severity) throws IOException {
-        String output = getResult(url + severity);
-        return JSONObject.fromObject(output).getInt("total");
-    }
 }
@@ -0,0 +1,239 @@
+package jenkinsci.plugins.influxdb.generators;
+
+import hudson.Extension;
+import hudson.model.Item;
+import hudson.model.Run;
+import hudson.model.listeners.ItemListener;
+import jenkins.util.SystemProperties;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Selects the tests whose status or duration changed since the previous build of a job, at level
+ * {@link TestDetailLevel#DELTA}.
+ * <p>
+ * The results of the previous build are kept as a compact fingerprint in memory: a sorted array
+ * with one {@code long} per test, made of a hash of the test name, whether it failed and the
+ * bucket of its duration. Durations are bucketed in steps of about 19%, so that jitter does not
+ * count as a change. Every {@link #KEYFRAME_INTERVAL} builds, and after a restart, all tests are
+ * written, so that every test has a recent point.
+ * <p>
+ * The fingerprints of the two latest builds are kept. A build is compared with the latest older
+ * build, so that a build published again is not compared with itself.
+ * <p>
+ * The fingerprint does not keep the names of the tests, so removed tests cannot be written. Only
+ * their number is, by {@link #finish()}, so that a removed test can be told from one which did not
+ * change.
+ */
+public final class TestDelta {
+
+    static final int KEYFRAME_INTERVAL = SystemProperties.getInteger(TestDelta.class.getName() + ".keyframeInterval", 20);
+
+    private static final int STATE_BITS = 9;
+    private static final int MAX_BUCKET = (1 << (STATE_BITS - 1)) - 1;
+
+    /**
+     * Fingerprint of the latest build, linked to that of the build before, by full name of the job and report.
+     */
+    private static final ConcurrentMap<String, Fingerprint> fingerprints = new ConcurrentHashMap<>();
+
+    private final String key;
+    private final int buildNumber;
+    private final Fingerprint previous;
+    private final boolean keyframe;
+    private long[] entries = new long[256];
+    private int size;
+
+    private TestDelta(String key, int buildNumber, Fingerprint previous) {
+        this.key = key;
+        this.buildNumber = buildNumber;
+        this.previous = previous;
+        this.keyframe = previous == null || previous.buildsSinceKeyframe + 1 >= KEYFRAME_INTERVAL;
+    }
+
+    /**
+     * Starts comparing the tests of a build with those of the previous build.
+     *
+     * @param report identifies the kind of report, so that a job may have several
+     */
+    public static TestDelta start(Run<?, ?> build, String report) {
+        String key = build.getParent().getFullName() + '#' + report;
+        return new TestDelta(key, build.getNumber(), olderThan(fingerprints.get(key), build.getNumber()));
+    }
+
+    /**
+     * @return the fingerprint of the latest build older than the given one, or {@code null}
+     */
+    private static Fingerprint olderThan(Fingerprint latest, int buildNumber) {
+        for (Fingerprint fingerprint = latest; fingerprint != null; fingerprint = fingerprint.previous) {
+            if (fingerprint.buildNumber < buildNumber) {
+                return fingerprint;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return whether all tests are written by this build
+     */
+    public boolean isKeyframe() {
+        return keyframe;
+    }
+
+    /**
+     * Records a test.
+     *
+     * @return whether the test is new or changed, or this build is a keyframe
+     */
+    public boolean includes(String name, boolean failed, long durationMillis) {
+        long entry = entry(name, failed, durationMillis);
+        if (size == entries.length) {
+            entries = Arrays.copyOf(entries, size * 2);
+        }
+        entries[size++] = entry;
+        if (keyframe) {
+            return true;
+        }
+        int index = previous.indexOf(entry >>> STATE_BITS);
+        return index < 0 || previous.entries[index] != entry;
+    }
+
+    /**
+     * Remembers the recorded tests for the next build. Tests of an older build than the two
+     * remembered already are ignored.
+     *
+     * @return number of tests of the build compared with which were not recorded
+     */
+    public int finish() {
+        long[] sorted = Arrays.copyOf(entries, size);
+        Arrays.sort(sorted);
+        Fingerprint fingerprint = new Fingerprint(buildNumber, keyframe ? 0 : previous.buildsSinceKeyframe + 1, sorted, null);
+        fingerprints.merge(key, fingerprint, TestDelta::merge);
+        return previous == null ? 0 : previous.countMissingFrom(fingerprint);
+    }
+
+    /**
+     * @return the latest of the fingerprints, linked to the one of the build before
+     */
+    private static Fingerprint merge(Fingerprint old, Fingerprint current) {
+        if (current.buildNumber > old.buildNumber) {
+            return current.after(old);
+        }
+        if (current.buildNumber == old.buildNumber) {
+            // Published again
+            return current.after(old.previous);
+        }
+        if (old.previous == null || current.buildNumber > old.previous.buildNumber) {
+            return old.after(current);
+        }
+        return old;
+    }
+
+    static long entry(String name, boolean failed, long durationMillis) {
+        // 64 bit FNV-1a
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < name.length(); i++) {
+            hash ^= name.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return (hash << STATE_BITS) | (failed ? 1L << (STATE_BITS - 1) : 0) | bucket(durationMillis);
+    }
+
+    /**
+     * @return four buckets per doubling of the duration
+     */
+    static int bucket(long durationMillis) {
+        if (durationMillis <= 0) {
+            return 0;
+        }
+        int bucket = 1 + (int) Math.floor(4 * Math.log(durationMillis) / Math.log(2));
+        return Math.min(bucket, MAX_BUCKET);
+    }
+
+    static void clear() {
+        fingerprints.clear();
+    }
+
+    private static void forget(String fullName) {
+        String prefix = fullName + '#';
+        String folderPrefix = fullName + '/';
+        fingerprints.keySet().removeIf(key -> key.startsWith(prefix) || key.startsWith(folderPrefix));
+    }
+
+    private static final class Fingerprint {
+
+        private final int buildNumber;
+        private final int buildsSinceKeyframe;
+        /**
+         * Sorted; the name hash in the upper bits makes entries of the same test adjacent.
+         */
+        private final long[] entries;
+        /**
+         * Fingerprint of an older build, which does not link to another one.
+         */
+        private final Fingerprint previous;
+
+        private Fingerprint(int buildNumber, int buildsSinceKeyframe, long[] entries, Fingerprint previous) {
+            this.buildNumber = buildNumber;
+            this.buildsSinceKeyframe = buildsSinceKeyframe;
+            this.entries = entries;
+            this.previous = previous;
+        }
+
+        /**
+         * @return this fingerprint, linked to the given one
+         */
+        private Fingerprint after(Fingerprint older) {
+            if (older != null && older.previous != null) {
+                older = new Fingerprint(older.buildNumber, older.buildsSinceKeyframe, older.entries, null);
+            }
+            return new Fingerprint(buildNumber, buildsSinceKeyframe, entries, older);
+        }
+
+        /**
+         * @return number of tests of this fingerprint which the given one does not have
+         */
+        private int countMissingFrom(Fingerprint other) {
+            int missing = 0;
+            for (int i = 0; i < entries.length; i++) {
+                long nameHash = entries[i] >>> STATE_BITS;
+                // Entries of the same test are adjacent
+                if ((i == 0 || entries[i - 1] >>> STATE_BITS != nameHash) && other.indexOf(nameHash) < 0) {
+                    missing++;
+                }
+            }
+            return missing;
+        }
+
+        /**
+         * @return index of the entry of the test with the given name hash, or {@code -1}
+         */
+        private int indexOf(long nameHash) {
+            long first = nameHash << STATE_BITS;
+            int index = Arrays.binarySearch(entries, first);
+            if (index < 0) {
+                index = -index - 1;
+            }
+            return index < entries.length && entries[index] >>> STATE_BITS == nameHash ? index : -1;
+        }
+    }
+
+    /**
+     * Forgets the fingerprints of renamed, moved and deleted jobs.
+     */
+    @Extension
+    public static class ItemListenerImpl extends ItemListener {
+
+        @Override
+        public void onLocationChanged(Item item, String oldFullName, String newFullName) {
+            forget(oldFullName);
+        }
+
+        @Override
+        public void onDeleted(Item item) {
+            forget(item.getFullName());
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package jenkinsci.plugins.influxdb.generators;
+
+import hudson.util.ListBoxModel;
+
+/**
+ * Which individual test results are written in addition to the summaries, which are always
+ * written and always cover all tests.
+ */
+public enum TestDetailLevel {
+
+    FULL("All tests"),
+    FAILURES_AND_CHANGES("Failed tests and tests which are new or passed again"),
+    SAMPLED("A stable sample of the tests, and all failed tests"),
+    DELTA("Tests whose status or duration changed, and periodically all tests"),
+    SUMMARY("No individual tests, summaries only");
+
+    private final String displayName;
+
+    TestDetailLevel(String displayName) {
+        this.displayName = displayName;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    /**
+     * @param globalSetting whether to offer the global setting as well, as the empty value
+     * @return the levels to choose from in a form
+     */
+    public static ListBoxModel fillItems(boolean globalSetting) {
+        ListBoxModel model = new ListBoxModel();
+        if (globalSetting) {
+            model.add("Global setting", "");
+        }
+        for (TestDetailLevel level : values()) {
+            model.add(level.getDisplayName(), level.name());
+        }
+        return model;
+    }
+}
@@ -0,0 +1,90 @@
+package jenkinsci.plugins.influxdb.generators;
+
+import hudson.model.Run;
+
+import javax.annotation.CheckForNull;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Decides which individual test results are written, according to a {@link TestDetailLevel}.
+ * <p>
+ * Sampling is based on a hash of the test name, so the same tests are sampled in every build
+ * and their history stays complete.
+ */
+public final class TestFilter {
+
+    public static final int DEFAULT_SAMPLE_PERCENTAGE = 10;
+
+    /**
+     * Writes all tests.
+     */
+    public static final TestFilter ALL = new TestFilter(TestDetailLevel.FULL, 100);
+
+    private final TestDetailLevel level;
+    private final int samplePercentage;
+
+    /**
+     * @param samplePercentage share of the tests written at level {@link TestDetailLevel#SAMPLED}
+     */
+    public TestFilter(TestDetailLevel level, int samplePercentage) {
+        this.level = level;
+        this.samplePercentage = Math.max(0, Math.min(100, samplePercentage));
+    }
+
+    public TestDetailLevel getLevel() {
+        return level;
+    }
+
+    public int getSamplePercentage() {
+        return samplePercentage;
+    }
+
+    /**
+     * Starts selecting the tests of a build at level {@link TestDetailLevel#DELTA}, which depends
+     * on the tests of the previous build rather than on single tests.
+     *
+     * @param report identifies the kind of report
+     * @return the delta to ask instead of {@link #includes}, or {@code null} at any other level
+     */
+    @CheckForNull
+    public TestDelta startDelta(Run<?, ?> build, String report) {
+        return level == TestDetailLevel.DELTA ? TestDelta.start(build, report) : null;
+    }
+
+    /**
+     * @param name           unique name of the test
+     * @param failed         whether the test failed in this build
+     * @param previousFailed supplies whether tests failed in the previous build, by name, or
+     *                       {@code null} if the previous build has no results. Only called at
+     *                       level {@link TestDetailLevel#FAILURES_AND_CHANGES}.
+     * @return whether the result of the test is written
+     */
+    public boolean includes(String name, boolean failed, Supplier<Map<String, Boolean>> previousFailed) {
+        switch (level) {
+            case SUMMARY:
+                return false;
+            case SAMPLED:
+                return failed || isSampled(name);
+            case FAILURES_AND_CHANGES:
+                return failed || hasChanged(name, previousFailed.get());
+            default:
+                return true;
+        }
+    }
+
+    private static boolean hasChanged(String name, @CheckForNull Map<String, Boolean> previousFailed) {
+        if (previousFailed == null) {
+            return true;
+        }
+        Boolean previous = previousFailed.get(name);
+        // New, or passed again
+        return previous == null || previous;
+    }
+
+    boolean isSampled(String name) {
+        int hash = name.hashCode() * 0x9E3779B9;
+        hash ^= hash >>> 16;
+        return Math.floorMod(hash, 100) < samplePercentage;
+    }
+}
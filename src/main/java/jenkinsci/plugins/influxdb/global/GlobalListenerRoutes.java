@@ -0,0 +1,171 @@
+package jenkinsci.plugins.influxdb.global;
+
+import hudson.Extension;
+import hudson.model.Item;
+import hudson.model.listeners.ItemListener;
+import jenkinsci.plugins.influxdb.InfluxDbGlobalConfig;
+import jenkinsci.plugins.influxdb.models.Target;
+import org.apache.commons.lang3.StringUtils;
+
+import javax.annotation.CheckForNull;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Decides which global listener targets receive the builds of a job.
+ * <p>
+ * The filters of the targets are compiled once, when the targets change, and the targets
+ * selected for a job are remembered until the job is renamed, moved or deleted. Completing a
+ * build thereby costs a map lookup rather than one regular expression compilation per target.
+ */
+public class GlobalListenerRoutes {
+
+    /**
+     * The logger.
+     **/
+    private static final Logger logger = Logger.getLogger(GlobalListenerRoutes.class.getName());
+
+    private static final Object lock = new Object();
+
+    private static volatile GlobalListenerRoutes routes;
+
+    private final List<Route> routeList;
+
+    /**
+     * Selected targets by full name of the job.
+     */
+    private final ConcurrentMap<String, List<Target>> jobTargets = new ConcurrentHashMap<>();
+
+    GlobalListenerRoutes(List<Target> targets) {
+        List<Route> list = new ArrayList<>();
+        for (Target target : targets) {
+            if (target.isGlobalListener()) {
+                list.add(new Route(target));
+            }
+        }
+        this.routeList = list;
+    }
+
+    /**
+     * @return the routes for the current targets
+     */
+    public static GlobalListenerRoutes get() {
+        GlobalListenerRoutes r = routes;
+        if (r == null) {
+            synchronized (lock) {
+                r = routes;
+                if (r == null) {
+                    r = new GlobalListenerRoutes(InfluxDbGlobalConfig.getInstance().getTargets());
+                    routes = r;
+                }
+            }
+        }
+        return r;
+    }
+
+    /**
+     * Forgets the routes, for example after the targets have been reconfigured.
+     */
+    public static void invalidate() {
+        synchronized (lock) {
+            routes = null;
+        }
+    }
+
+    /**
+     * @param path full name of a job
+     * @return the global listener targets whose filter matches the job
+     */
+    public List<Target> targetsFor(String path) {
+        if (routeList.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return jobTargets.computeIfAbsent(path, this::match);
+    }
+
+    private List<Target> match(String path) {
+        List<Target> selected = new ArrayList<>();
+        for (Route route : routeList) {
+            if (route.matches(path)) {
+                selected.add(route.target);
+            }
+        }
+        return selected.isEmpty() ? Collections.emptyList() : Collections.unmodifiableList(selected);
+    }
+
+    /**
+     * Forgets the targets of a job and, if it is a folder, of all jobs within.
+     */
+    void forget(String path) {
+        String prefix = path + "/";
+        jobTargets.keySet().removeIf(key -> key.equals(path) || key.startsWith(prefix));
+    }
+
+    int size() {
+        return jobTargets.size();
+    }
+
+    private static final class Route {
+
+        private final Target target;
+        /**
+         * {@code null} if all jobs match.
+         */
+        @CheckForNull
+        private final Pattern filter;
+        private final boolean invalid;
+
+        private Route(Target target) {
+            this.target = target;
+            Pattern pattern = null;
+            boolean invalidPattern = false;
+            String filterString = target.getGlobalListenerFilter();
+            if (StringUtils.isNotBlank(filterString)) {
+                try {
+                    pattern = Pattern.compile(filterString);
+                } catch (PatternSyntaxException e) {
+                    logger.log(Level.WARNING, "Ignoring global listener target ''{0}'': invalid filter: {1}",
+                            new Object[]{target.getDescription(), e.getMessage()});
+                    invalidPattern = true;
+                }
+            }
+            this.filter = pattern;
+            this.invalid = invalidPattern;
+        }
+
+        private boolean matches(String path) {
+            return !invalid && (filter == null || filter.matcher(path).matches());
+        }
+    }
+
+    /**
+     * Forgets the targets of renamed, moved and deleted jobs.
+     */
+    @Extension
+    public static class ItemListenerImpl extends ItemListener {
+
+        @Override
+        public void onLocationChanged(Item item, String oldFullName, String newFullName) {
+            GlobalListenerRoutes r = routes;
+            if (r != null) {
+                r.forget(oldFullName);
+                r.forget(newFullName);
+            }
+        }
+
+        @Override
+        public void onDeleted(Item item) {
+            GlobalListenerRoutes r = routes;
+            if (r != null) {
+                r.forget(item.getFullName());
+            }
+        }
+    }
+}
@@ -7,7 +7,7 @@ import hudson.model.Job;
 import hudson.model.Run;
 import hudson.model.TaskListener;
 import hudson.model.listeners.RunListener;
-import jenkins.model.Jenkins;
+import jenkinsci.plugins.influxdb.InfluxDbGlobalConfig;
 import jenkinsci.plugins.influxdb.InfluxDbPublicationService;
 import jenkinsci.plugins.influxdb.InfluxDbPublisher;
 import jenkinsci.plugins.influxdb.models.Target;
@@ -17,7 +17,6 @@ import javax.annotation.Nonnull;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.regex.Pattern;
 
 /**
  * Listens to all builds being completed and publishes their metrics to InfluxDB.
@@ -27,16 +26,11 @@ public class GlobalRunListener extends RunListener<Run<?, ?>> {
 
     @Override
     public void onCompleted(Run<?, ?> build, @Nonnull TaskListener listener) {
-        // Gets the full path of the build's project
-        String path = build.getParent().getRelativeNameFrom(Jenkins.getInstance());
-        // Gets the list of targets from the configuration
-        List<Target> targets = Jenkins.getInstance().getDescriptorByType(InfluxDbPublisher.DescriptorImpl.class).getTargets();
         // Selects the targets eligible as global listeners and which match the build path
         List<Target> selectedTargets = new ArrayList<>();
-        for (Target target : targets) {
-            // Checks if the target matches the path to the project
+        for (Target target : GlobalListenerRoutes.get().targetsFor(build.getParent().getFullName())) {
             // Skip build if it already publishes information on this target
-            if (isTargetMatchingPath(target, path) && !isPublicationInBuild(target, build)) {
+            if (!isPublicationInBuild(target, build)) {
                 selectedTargets.add(target);
             }
         }
@@ -57,6 +51,8 @@ public class GlobalRunListener extends RunListener<Run<?, ?>> {
                     "jenkins_data"
             );
 
+            publicationService.setTestFilter(InfluxDbGlobalConfig.getInstance().newTestFilter(null, null));
+
             EnvVars env;
             try {
                 env = build.getEnvironment(listener);
@@ -64,8 +60,8 @@ public class GlobalRunListener extends RunListener<Run<?, ?>> {
                 env = new EnvVars();
             }
 
-            // Publication
-            publicationService.perform(build, listener, env);
+            // Publication, written in the background to not hold up the completion of the build
+            publicationService.performAsync(build, listener, env);
         }
     }
 
@@ -83,13 +79,4 @@ public class GlobalRunListener extends RunListener<Run<?, ?>> {
             return false;
         }
     }
-
-    private boolean isTargetMatchingPath(@Nonnull Target target, @Nonnull String path) {
-        if (target.isGlobalListener()) {
-            String pattern = target.getGlobalListenerFilter();
-            return StringUtils.isBlank(pattern) || Pattern.matches(pattern, path);
-        } else {
-            return false;
-        }
-    }
 }
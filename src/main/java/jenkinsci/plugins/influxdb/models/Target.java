@@ -7,10 +7,20 @@ import hudson.util.FormValidation;
 import hudson.util.Secret;
 import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
 import org.kohsuke.stapler.QueryParameter;
 
 public class Target extends AbstractDescribableImpl<Target> implements java.io.Serializable {
 
+    /**
+     * Requests smaller than this are not worth compressing.
+     */
+    public static final long DEFAULT_COMPRESSION_THRESHOLD = 1024;
+
+    public static final int DEFAULT_MAX_POINTS_PER_REQUEST = 5000;
+
+    public static final int DEFAULT_MAX_KILOBYTES_PER_REQUEST = 1024;
+
     private String description;
     private String url;
     private String username;
@@ -22,6 +32,10 @@ public class Target extends AbstractDescribableImpl<Target> implements java.io.S
     private boolean usingJenkinsProxy;
     private boolean globalListener;
     private String globalListenerFilter;
+    private int compressionLevel;
+    private long compressionThreshold = DEFAULT_COMPRESSION_THRESHOLD;
+    private int maxPointsPerRequest = DEFAULT_MAX_POINTS_PER_REQUEST;
+    private int maxKilobytesPerRequest = DEFAULT_MAX_KILOBYTES_PER_REQUEST;
 
     public Target() {
         //nop
@@ -132,6 +146,55 @@ public class Target extends AbstractDescribableImpl<Target> implements java.io.S
         this.globalListenerFilter = globalListenerFilter;
     }
 
+    /**
+     * @return gzip level from 1 (fastest) to 9 (smallest) for write requests, or {@code 0} to not compress them
+     */
+    public int getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    @DataBoundSetter
+    public void setCompressionLevel(int compressionLevel) {
+        this.compressionLevel = compressionLevel;
+    }
+
+    /**
+     * @return size in bytes below which write requests are not compressed
+     */
+    public long getCompressionThreshold() {
+        return compressionThreshold;
+    }
+
+    @DataBoundSetter
+    public void setCompressionThreshold(long compressionThreshold) {
+        this.compressionThreshold = compressionThreshold;
+    }
+
+    /**
+     * @return maximum number of points sent in one write request
+     */
+    public int getMaxPointsPerRequest() {
+        // Not set in configurations saved by older versions
+        return maxPointsPerRequest > 0 ? maxPointsPerRequest : DEFAULT_MAX_POINTS_PER_REQUEST;
+    }
+
+    @DataBoundSetter
+    public void setMaxPointsPerRequest(int maxPointsPerRequest) {
+        this.maxPointsPerRequest = maxPointsPerRequest;
+    }
+
+    /**
+     * @return maximum size of the line protocol sent in one write request
+     */
+    public int getMaxKilobytesPerRequest() {
+        return maxKilobytesPerRequest > 0 ? maxKilobytesPerRequest : DEFAULT_MAX_KILOBYTES_PER_REQUEST;
+    }
+
+    @DataBoundSetter
+    public void setMaxKilobytesPerRequest(int maxKilobytesPerRequest) {
+        this.maxKilobytesPerRequest = maxKilobytesPerRequest;
+    }
+
     @Override
     public String toString() {
         return new ToStringBuilder(this)
@@ -156,5 +219,25 @@ public class Target extends AbstractDescribableImpl<Target> implements java.io.S
         public FormValidation doCheckDatabase(@QueryParameter String value) {
             return FormValidation.validateRequired(value);
         }
+
+        public FormValidation doCheckCompressionLevel(@QueryParameter String value) {
+            FormValidation validation = FormValidation.validateNonNegativeInteger(value);
+            if (validation.kind == FormValidation.Kind.OK && Integer.parseInt(value) > 9) {
+                return FormValidation.error("Compression level must be between 0 and 9");
+            }
+            return validation;
+        }
+
+        public FormValidation doCheckCompressionThreshold(@QueryParameter String value) {
+            return FormValidation.validateNonNegativeInteger(value);
+        }
+
+        public FormValidation doCheckMaxPointsPerRequest(@QueryParameter String value) {
+            return FormValidation.validatePositiveInteger(value);
+        }
+
+        public FormValidation doCheckMaxKilobytesPerRequest(@QueryParameter String value) {
+            return FormValidation.validatePositiveInteger(value);
+        }
     }
 }
@@ -0,0 +1,89 @@
+package jenkinsci.plugins.influxdb.reports;
+
+import jenkinsci.plugins.influxdb.write.LineProtocolEncoder;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.InputStream;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Sums up the line and branch coverage of Cobertura XML reports.
+ */
+class CoberturaReportParser extends ReportParser {
+
+    private final Coverage coverage = new Coverage();
+
+    @Override
+    void parse(InputStream in) throws XMLStreamException {
+        Coverage file = new Coverage();
+        XMLStreamReader reader = newXmlReader(in);
+        try {
+            while (reader.hasNext()) {
+                if (reader.next() != XMLStreamConstants.START_ELEMENT) {
+                    continue;
+                }
+                switch (reader.getLocalName()) {
+                    case "coverage":
+                        file.linesCovered += longAttribute(reader, "lines-covered");
+                        file.linesValid += longAttribute(reader, "lines-valid");
+                        file.branchesCovered += longAttribute(reader, "branches-covered");
+                        file.branchesValid += longAttribute(reader, "branches-valid");
+                        break;
+                    case "package":
+                        file.packages++;
+                        break;
+                    case "class":
+                        file.classes++;
+                        String fileName = reader.getAttributeValue(null, "filename");
+                        if (fileName != null) {
+                            file.sourceFiles.add(fileName);
+                        }
+                        break;
+                    default:
+                        break;
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        coverage.add(file);
+    }
+
+    @Override
+    void write(ReportSeries series, LineProtocolEncoder encoder, Consumer<String> records) {
+        series.start(encoder, "cobertura_report_data")
+                .field("cobertura_number_of_packages", coverage.packages)
+                .field("cobertura_number_of_sourcefiles", (long) coverage.sourceFiles.size())
+                .field("cobertura_number_of_classes", coverage.classes)
+                .field("cobertura_line_coverage_rate", percentage(coverage.linesCovered, coverage.linesValid))
+                .field("cobertura_branch_coverage_rate", percentage(coverage.branchesCovered, coverage.branchesValid))
+                .field("cobertura_lines_covered", coverage.linesCovered)
+                .field("cobertura_lines_valid", coverage.linesValid);
+        records.accept(encoder.encode());
+    }
+
+    private static final class Coverage {
+
+        private long linesCovered;
+        private long linesValid;
+        private long branchesCovered;
+        private long branchesValid;
+        private long packages;
+        private long classes;
+        private final Set<String> sourceFiles = new HashSet<>();
+
+        private void add(Coverage coverage) {
+            linesCovered += coverage.linesCovered;
+            linesValid += coverage.linesValid;
+            branchesCovered += coverage.branchesCovered;
+            branchesValid += coverage.branchesValid;
+            packages += coverage.packages;
+            classes += coverage.classes;
+            sourceFiles.addAll(coverage.sourceFiles);
+        }
+    }
+}
@@ -0,0 +1,290 @@
+package jenkinsci.plugins.influxdb.reports;
+
+import jenkinsci.plugins.influxdb.write.LineProtocolEncoder;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Sums up the samples of JMeter result files, in XML or CSV format, in total and by label.
+ */
+class JMeterReportParser extends ReportParser {
+
+    private static final String LABEL = "label";
+
+    private final Results results = new Results();
+
+    @Override
+    void parse(InputStream in) throws IOException, XMLStreamException {
+        Results file = new Results();
+        BufferedInputStream input = new BufferedInputStream(in);
+        if (firstNonWhitespace(input) == '<') {
+            parseXml(input, file);
+        } else {
+            parseCsv(input, file);
+        }
+        results.add(file);
+    }
+
+    private static int firstNonWhitespace(BufferedInputStream input) throws IOException {
+        input.mark(1024);
+        try {
+            for (int i = 0; i < 1024; i++) {
+                int b = input.read();
+                if (b < 0 || !Character.isWhitespace(b) && b != 0xEF && b != 0xBB && b != 0xBF) {
+                    // Skips a UTF-8 byte order mark as well
+                    return b;
+                }
+            }
+            return -1;
+        } finally {
+            input.reset();
+        }
+    }
+
+    private static void parseXml(InputStream in, Results file) throws XMLStreamException {
+        XMLStreamReader reader = newXmlReader(in);
+        try {
+            int depth = 0;
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    depth++;
+                    // Sub-samples of a transaction are part of the sample itself
+                    if (depth == 2 && ("httpSample".equals(reader.getLocalName()) || "sample".equals(reader.getLocalName()))) {
+                        file.add(reader.getAttributeValue(null, "lb"), longAttribute(reader, "t"),
+                                !"false".equals(reader.getAttributeValue(null, "s")));
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    depth--;
+                }
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static void parseCsv(InputStream in, Results file) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        List<String> header = readCsv(reader);
+        if (header == null) {
+            return;
+        }
+        int elapsed = header.indexOf("elapsed");
+        int label = header.indexOf(LABEL);
+        int success = header.indexOf("success");
+        if (elapsed < 0) {
+            throw new IOException("Not a JMeter result file, the header has no elapsed column");
+        }
+        List<String> values;
+        while ((values = readCsv(reader)) != null) {
+            if (values.size() <= elapsed) {
+                continue;
+            }
+            long millis;
+            try {
+                millis = Long.parseLong(values.get(elapsed).trim());
+            } catch (NumberFormatException e) {
+                continue;
+            }
+            file.add(label >= 0 && label < values.size() ? values.get(label) : null, millis,
+                    success < 0 || success >= values.size() || !"false".equalsIgnoreCase(values.get(success).trim()));
+        }
+    }
+
+    /**
+     * Reads a record of comma separated values, some of which may be quoted. Quoted values may
+     * span several lines, as response messages and assertion failures often do.
+     *
+     * @return the values of the record, or {@code null} at the end of the input
+     */
+    static List<String> readCsv(BufferedReader reader) throws IOException {
+        List<String> values = new ArrayList<>();
+        StringBuilder value = new StringBuilder();
+        boolean quoted = false;
+        int c = reader.read();
+        // Blank lines hold no record
+        while (c == '\r' || c == '\n') {
+            c = reader.read();
+        }
+        if (c < 0) {
+            return null;
+        }
+        for (; c >= 0; c = reader.read()) {
+            if (quoted) {
+                if (c == '"') {
+                    reader.mark(1);
+                    if (reader.read() == '"') {
+                        value.append('"');
+                    } else {
+                        reader.reset();
+                        quoted = false;
+                    }
+                } else {
+                    value.append((char) c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                values.add(value.toString());
+                value.setLength(0);
+            } else if (c == '\n') {
+                break;
+            } else if (c != '\r') {
+                value.append((char) c);
+            }
+        }
+        values.add(value.toString());
+        return values;
+    }
+
+    @Override
+    void write(ReportSeries series, LineProtocolEncoder encoder, Consumer<String> records) {
+        if (results.total.count == 0) {
+            return;
+        }
+        results.total.addFields(series.start(encoder, "jmeter_report_data"));
+        records.accept(encoder.encode());
+        for (Map.Entry<String, Samples> label : results.labels.entrySet()) {
+            label.getValue().addFields(series.start(encoder, "jmeter_label_data").tag(LABEL, label.getKey()));
+            records.accept(encoder.encode());
+        }
+    }
+
+    /**
+     * The samples in total and by label.
+     */
+    private static final class Results {
+
+        private final Samples total = new Samples();
+        private final Map<String, Samples> labels = new LinkedHashMap<>();
+
+        private void add(String label, long millis, boolean success) {
+            total.add(millis, success);
+            if (label != null && !label.isEmpty()) {
+                labels.computeIfAbsent(label, l -> new Samples()).add(millis, success);
+            }
+        }
+
+        private void add(Results results) {
+            total.add(results.total);
+            for (Map.Entry<String, Samples> label : results.labels.entrySet()) {
+                labels.computeIfAbsent(label.getKey(), l -> new Samples()).add(label.getValue());
+            }
+        }
+    }
+
+    /**
+     * The durations of samples, counted in buckets whose width grows with the duration, so that the
+     * memory taken does not grow with the number of samples. Durations below 128 milliseconds have a
+     * bucket each, longer ones share a bucket with durations up to 1/64 longer. The percentiles are
+     * the lowest duration of their bucket, the minimum, maximum and average are exact.
+     */
+    private static final class Samples {
+
+        private static final int SUB_BUCKET_BITS = 6;
+        private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+        /**
+         * Durations below this have a bucket each.
+         */
+        private static final long EXACT = 2L * SUB_BUCKETS;
+
+        /**
+         * Grown up to the bucket of the longest duration.
+         */
+        private int[] buckets = new int[(int) EXACT];
+        private int count;
+        private long errors;
+        private long sum;
+        private long min = Long.MAX_VALUE;
+        private long max = Long.MIN_VALUE;
+
+        private void add(long millis, boolean success) {
+            long duration = Math.max(0, millis);
+            int bucket = bucket(duration);
+            if (bucket >= buckets.length) {
+                buckets = Arrays.copyOf(buckets, bucket + SUB_BUCKETS);
+            }
+            buckets[bucket]++;
+            count++;
+            sum += duration;
+            min = Math.min(min, duration);
+            max = Math.max(max, duration);
+            if (!success) {
+                errors++;
+            }
+        }
+
+        private void add(Samples samples) {
+            if (samples.buckets.length > buckets.length) {
+                buckets = Arrays.copyOf(buckets, samples.buckets.length);
+            }
+            for (int i = 0; i < samples.buckets.length; i++) {
+                buckets[i] += samples.buckets[i];
+            }
+            count += samples.count;
+            errors += samples.errors;
+            sum += samples.sum;
+            min = Math.min(min, samples.min);
+            max = Math.max(max, samples.max);
+        }
+
+        private void addFields(LineProtocolEncoder encoder) {
+            encoder.field("error_percent", percentage(errors, count))
+                    .field("error_count", errors)
+                    .field("average", sum / count)
+                    .field("max", max)
+                    .field("min", min)
+                    .field("size", (long) count)
+                    .field("90Percentile", percentile(0.9))
+                    .field("median", percentile(0.5));
+        }
+
+        private long percentile(double quantile) {
+            long rank = Math.max(1, (long) Math.ceil(quantile * count));
+            long seen = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                seen += buckets[i];
+                if (seen >= rank) {
+                    return Math.max(min, Math.min(max, lowest(i)));
+                }
+            }
+            return max;
+        }
+
+        private static int bucket(long duration) {
+            if (duration < EXACT) {
+                return (int) duration;
+            }
+            int exponent = 63 - Long.numberOfLeadingZeros(duration);
+            int shift = exponent - SUB_BUCKET_BITS;
+            return (int) (EXACT + (long) (shift - 1) * SUB_BUCKETS + ((duration >>> shift) - SUB_BUCKETS));
+        }
+
+        /**
+         * @return the lowest duration counted in a bucket
+         */
+        private static long lowest(int bucket) {
+            if (bucket < EXACT) {
+                return bucket;
+            }
+            int shift = (int) ((bucket - EXACT) / SUB_BUCKETS) + 1;
+            long subBucket = (bucket - EXACT) % SUB_BUCKETS + SUB_BUCKETS;
+            return subBucket << shift;
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package jenkinsci.plugins.influxdb.reports;
+
+import jenkinsci.plugins.influxdb.write.LineProtocolEncoder;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Counts the test cases of JUnit XML reports, in total and by suite.
+ */
+class JUnitReportParser extends ReportParser {
+
+    private static final String SUITE_NAME = "suite_name";
+
+    private final TestCounts total = new TestCounts();
+    private final Map<String, TestCounts> suites = new LinkedHashMap<>();
+
+    @Override
+    void parse(InputStream in) throws XMLStreamException {
+        TestCounts fileTotal = new TestCounts();
+        Map<String, TestCounts> fileSuites = new LinkedHashMap<>();
+        XMLStreamReader reader = newXmlReader(in);
+        try {
+            Deque<String> suiteNames = new ArrayDeque<>();
+            TestCounts testCase = null;
+            String outcome = null;
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    switch (reader.getLocalName()) {
+                        case "testsuite":
+                            String name = reader.getAttributeValue(null, "name");
+                            suiteNames.push(name != null ? name : suiteNames.isEmpty() ? "" : suiteNames.peek());
+                            break;
+                        case "testcase":
+                            testCase = new TestCounts();
+                            testCase.duration = doubleAttribute(reader, "time");
+                            outcome = null;
+                            break;
+                        case "failure":
+                        case "error":
+                        case "skipped":
+                            if (testCase != null && outcome == null) {
+                                outcome = reader.getLocalName();
+                            }
+                            break;
+                        default:
+                            break;
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    if ("testsuite".equals(reader.getLocalName()) && !suiteNames.isEmpty()) {
+                        suiteNames.pop();
+                    } else if ("testcase".equals(reader.getLocalName()) && testCase != null) {
+                        testCase.count(outcome);
+                        String suite = suiteNames.isEmpty() ? "" : suiteNames.peek();
+                        fileSuites.computeIfAbsent(suite, s -> new TestCounts()).add(testCase);
+                        fileTotal.add(testCase);
+                        testCase = null;
+                    }
+                }
+            }
+        } finally {
+            reader.close();
+        }
+
+        total.add(fileTotal);
+        for (Map.Entry<String, TestCounts> suite : fileSuites.entrySet()) {
+            suites.computeIfAbsent(suite.getKey(), s -> new TestCounts()).add(suite.getValue());
+        }
+    }
+
+    @Override
+    void write(ReportSeries series, LineProtocolEncoder encoder, Consumer<String> records) {
+        total.addFields(series.start(encoder, "junit_report_data"));
+        records.accept(encoder.encode());
+        for (Map.Entry<String, TestCounts> suite : suites.entrySet()) {
+            suite.getValue().addFields(series.start(encoder, "junit_suite_data").tag(SUITE_NAME, suite.getKey()));
+            records.accept(encoder.encode());
+        }
+    }
+
+    private static final class TestCounts {
+
+        private long tests;
+        private long failures;
+        private long errors;
+        private long skipped;
+        private double duration;
+
+        private void count(String outcome) {
+            tests = 1;
+            if ("failure".equals(outcome)) {
+                failures = 1;
+            } else if ("error".equals(outcome)) {
+                errors = 1;
+            } else if ("skipped".equals(outcome)) {
+                skipped = 1;
+            }
+        }
+
+        private void add(TestCounts counts) {
+            tests += counts.tests;
+            failures += counts.failures;
+            errors += counts.errors;
+            skipped += counts.skipped;
+            duration += counts.duration;
+        }
+
+        private void addFields(LineProtocolEncoder encoder) {
+            encoder.field("tests", tests)
+                    .field("failures", failures)
+                    .field("errors", errors)
+                    .field("skipped", skipped)
+                    .field("passed", tests - failures - errors - skipped)
+                    .field("duration", duration);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package jenkinsci.plugins.influxdb.reports;
+
+import jenkinsci.plugins.influxdb.write.LineProtocolEncoder;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.InputStream;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+
+/**
+ * Sums up the report level counters of JaCoCo XML reports.
+ */
+class JacocoReportParser extends ReportParser {
+
+    /**
+     * Covered and missed items, by counter type.
+     */
+    private final Map<String, long[]> counters = new TreeMap<>();
+
+    @Override
+    void parse(InputStream in) throws XMLStreamException {
+        Map<String, long[]> fileCounters = new TreeMap<>();
+        XMLStreamReader reader = newXmlReader(in);
+        try {
+            int depth = 0;
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    depth++;
+                    // Counters of the whole report, rather than of a package, class or method
+                    if (depth == 2 && "counter".equals(reader.getLocalName())) {
+                        String type = reader.getAttributeValue(null, "type");
+                        if (type != null) {
+                            long[] counter = fileCounters.computeIfAbsent(type.toLowerCase(Locale.ENGLISH), t -> new long[2]);
+                            counter[0] += longAttribute(reader, "covered");
+                            counter[1] += longAttribute(reader, "missed");
+                        }
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    depth--;
+                }
+            }
+        } finally {
+            reader.close();
+        }
+
+        for (Map.Entry<String, long[]> fileCounter : fileCounters.entrySet()) {
+            long[] counter = counters.computeIfAbsent(fileCounter.getKey(), t -> new long[2]);
+            counter[0] += fileCounter.getValue()[0];
+            counter[1] += fileCounter.getValue()[1];
+        }
+    }
+
+    @Override
+    void write(ReportSeries series, LineProtocolEncoder encoder, Consumer<String> records) {
+        series.start(encoder, "jacoco_report_data");
+        for (Map.Entry<String, long[]> counter : counters.entrySet()) {
+            String prefix = "jacoco_" + counter.getKey();
+            long covered = counter.getValue()[0];
+            long missed = counter.getValue()[1];
+            encoder.field(prefix + "_coverage_rate", percentage(covered, covered + missed))
+                    .field(prefix + "_covered", covered)
+                    .field(prefix + "_missed", missed);
+        }
+        records.accept(encoder.encode());
+    }
+}
@@ -0,0 +1,70 @@
+package jenkinsci.plugins.influxdb.reports;
+
+import jenkinsci.plugins.influxdb.write.LineProtocolEncoder;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.function.Consumer;
+
+/**
+ * Parses the report files of one type, one after the other, and sums them up into points.
+ * <p>
+ * Parsers stream through the files and keep only the numbers they need, so that large reports
+ * are not loaded into memory as a whole.
+ */
+abstract class ReportParser {
+
+    private static final XMLInputFactory XML_INPUT_FACTORY = newXmlInputFactory();
+
+    /**
+     * Adds the results of a report file. They are collected apart and added only once the whole
+     * file has been parsed, so that a file which cannot be parsed adds nothing.
+     */
+    abstract void parse(InputStream in) throws IOException, XMLStreamException;
+
+    /**
+     * Writes the points of all files parsed.
+     */
+    abstract void write(ReportSeries series, LineProtocolEncoder encoder, Consumer<String> records);
+
+    static XMLStreamReader newXmlReader(InputStream in) throws XMLStreamException {
+        return XML_INPUT_FACTORY.createXMLStreamReader(in);
+    }
+
+    /**
+     * @return the value of an attribute as a number, or {@code 0} if missing or malformed
+     */
+    static double doubleAttribute(XMLStreamReader reader, String name) {
+        String value = reader.getAttributeValue(null, name);
+        if (value == null) {
+            return 0;
+        }
+        try {
+            return Double.parseDouble(value.trim().replace(",", ""));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    static long longAttribute(XMLStreamReader reader, String name) {
+        return (long) doubleAttribute(reader, name);
+    }
+
+    /**
+     * @return {@code part} in percent of {@code total}, or {@code 0} if there is no total
+     */
+    static double percentage(double part, double total) {
+        return total > 0 ? part * 100 / total : 0;
+    }
+
+    private static XMLInputFactory newXmlInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        // Reports are untrusted input
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
+}
@@ -0,0 +1,46 @@
+package jenkinsci.plugins.influxdb.reports;
+
+import jenkinsci.plugins.influxdb.generators.AbstractPointGenerator;
+import jenkinsci.plugins.influxdb.write.LineProtocolEncoder;
+
+import java.io.Serializable;
+
+/**
+ * The tags and fields every point of a build starts with, as {@link AbstractPointGenerator#buildPoint}
+ * sets them. Sent to the agent along with the reports to parse, which has no access to the build.
+ */
+public class ReportSeries implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String customPrefix;
+    private final String projectName;
+    private final String projectPath;
+    private final int buildNumber;
+    private final long timestamp;
+
+    /**
+     * @param timestamp timestamp of the points in nanoseconds
+     */
+    public ReportSeries(String customPrefix, String projectName, String projectPath, int buildNumber, long timestamp) {
+        this.customPrefix = customPrefix;
+        this.projectName = projectName;
+        this.projectPath = projectPath;
+        this.buildNumber = buildNumber;
+        this.timestamp = timestamp;
+    }
+
+    /**
+     * Starts a point of the build.
+     */
+    LineProtocolEncoder start(LineProtocolEncoder encoder, String measurement) {
+        return encoder.measurement(measurement)
+                .field(AbstractPointGenerator.PROJECT_NAME, projectName)
+                .field(AbstractPointGenerator.PROJECT_PATH, projectPath)
+                .field(AbstractPointGenerator.BUILD_NUMBER, buildNumber)
+                .tag(AbstractPointGenerator.CUSTOM_PREFIX, customPrefix)
+                .tag(AbstractPointGenerator.PROJECT_NAME, projectName)
+                .tag(AbstractPointGenerator.PROJECT_PATH, projectPath)
+                .time(timestamp);
+    }
+}
@@ -0,0 +1,56 @@
+package jenkinsci.plugins.influxdb.reports;
+
+import javax.annotation.CheckForNull;
+import java.util.Locale;
+
+/**
+ * The report files which can be parsed in the workspace.
+ */
+public enum ReportType {
+
+    JUNIT {
+        @Override
+        ReportParser newParser() {
+            return new JUnitReportParser();
+        }
+    },
+    ROBOT {
+        @Override
+        ReportParser newParser() {
+            return new RobotReportParser();
+        }
+    },
+    JMETER {
+        @Override
+        ReportParser newParser() {
+            return new JMeterReportParser();
+        }
+    },
+    COBERTURA {
+        @Override
+        ReportParser newParser() {
+            return new CoberturaReportParser();
+        }
+    },
+    JACOCO {
+        @Override
+        ReportParser newParser() {
+            return new JacocoReportParser();
+        }
+    };
+
+    abstract ReportParser newParser();
+
+    /**
+     * @param name name of a type, in any case
+     * @return the type, or {@code null} if unknown
+     */
+    @CheckForNull
+    public static ReportType forName(String name) {
+        try {
+            return valueOf(name.trim().toUpperCase(Locale.ENGLISH));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
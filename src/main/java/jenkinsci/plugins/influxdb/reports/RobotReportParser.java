@@ -0,0 +1,119 @@
+package jenkinsci.plugins.influxdb.reports;
+
+import jenkinsci.plugins.influxdb.write.LineProtocolEncoder;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.InputStream;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.function.Consumer;
+
+/**
+ * Counts the tests of Robot Framework {@code output.xml} files by status.
+ */
+class RobotReportParser extends ReportParser {
+
+    private final SimpleDateFormat timeFormat = new SimpleDateFormat("yyyyMMdd HH:mm:ss.SSS");
+
+    private final TestCounts counts = new TestCounts();
+
+    @Override
+    void parse(InputStream in) throws XMLStreamException {
+        TestCounts fileCounts = new TestCounts();
+        XMLStreamReader reader = newXmlReader(in);
+        try {
+            int depth = 0;
+            int testDepth = -1;
+            String status = null;
+            long testMillis = 0;
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    depth++;
+                    if ("test".equals(reader.getLocalName()) && testDepth < 0) {
+                        testDepth = depth;
+                        status = null;
+                        testMillis = 0;
+                    } else if ("status".equals(reader.getLocalName()) && depth == testDepth + 1) {
+                        // The status of the test itself rather than of one of its keywords
+                        status = reader.getAttributeValue(null, "status");
+                        testMillis = durationMillis(reader);
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    if (depth == testDepth) {
+                        fileCounts.count(status, testMillis);
+                        testDepth = -1;
+                    }
+                    depth--;
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        counts.add(fileCounts);
+    }
+
+    /**
+     * Reads the duration of Robot Framework 7 ({@code elapsed} in seconds) and of earlier versions
+     * ({@code starttime} and {@code endtime}).
+     */
+    private long durationMillis(XMLStreamReader reader) {
+        String elapsed = reader.getAttributeValue(null, "elapsed");
+        if (elapsed != null) {
+            return Math.round(1000 * doubleAttribute(reader, "elapsed"));
+        }
+        String start = reader.getAttributeValue(null, "starttime");
+        String end = reader.getAttributeValue(null, "endtime");
+        if (start == null || end == null) {
+            return 0;
+        }
+        try {
+            return Math.max(0, timeFormat.parse(end).getTime() - timeFormat.parse(start).getTime());
+        } catch (ParseException e) {
+            return 0;
+        }
+    }
+
+    @Override
+    void write(ReportSeries series, LineProtocolEncoder encoder, Consumer<String> records) {
+        series.start(encoder, "robot_report_data")
+                .field("rf_total", counts.total)
+                .field("rf_passed", counts.passed)
+                .field("rf_failed", counts.failed)
+                .field("rf_skipped", counts.skipped)
+                .field("rf_pass_percentage", percentage(counts.passed, counts.total))
+                .field("rf_duration", counts.durationMillis);
+        records.accept(encoder.encode());
+    }
+
+    private static final class TestCounts {
+
+        private long total;
+        private long passed;
+        private long failed;
+        private long skipped;
+        private long durationMillis;
+
+        private void count(String status, long millis) {
+            total++;
+            durationMillis += millis;
+            if ("PASS".equals(status)) {
+                passed++;
+            } else if ("SKIP".equals(status) || "NOT RUN".equals(status)) {
+                skipped++;
+            } else {
+                failed++;
+            }
+        }
+
+        private void add(TestCounts counts) {
+            total += counts.total;
+            passed += counts.passed;
+            failed += counts.failed;
+            skipped += counts.skipped;
+            durationMillis += counts.durationMillis;
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package jenkinsci.plugins.influxdb.reports;
+
+import hudson.Util;
+import hudson.remoting.VirtualChannel;
+import jenkins.MasterToSlaveFileCallable;
+import jenkinsci.plugins.influxdb.client.ScopedTarget;
+import jenkinsci.plugins.influxdb.write.AgentWrite;
+import jenkinsci.plugins.influxdb.write.LineProtocolEncoder;
+
+import javax.xml.stream.XMLStreamException;
+import javax.annotation.CheckForNull;
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Parses report files where they are written, in the workspace on the agent, and returns only the
+ * points summing them up.
+ * <p>
+ * Publishers of test and coverage reports copy the files to the controller and keep a parsed
+ * model of them in memory, where the other generators read it. Reports parsed here never leave
+ * the agent, which sends a few line protocol records instead of megabytes of XML. Given the
+ * targets, the agent even writes the records itself and sends back only a summary.
+ */
+public class WorkspaceReports extends MasterToSlaveFileCallable<WorkspaceReports.Result> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final EnumMap<ReportType, String> includes;
+    private final ReportSeries series;
+
+    private ArrayList<ScopedTarget> directTargets = new ArrayList<>();
+
+    /**
+     * @param includes Ant style patterns of the report files, relative to the workspace, by type
+     * @param series   the build the points are written for
+     */
+    public WorkspaceReports(Map<ReportType, String> includes, ReportSeries series) {
+        this.includes = includes.isEmpty() ? new EnumMap<>(ReportType.class) : new EnumMap<>(includes);
+        this.series = series;
+    }
+
+    /**
+     * @param directTargets targets the agent writes the points to, rather than returning them
+     */
+    public void setDirectTargets(List<ScopedTarget> directTargets) {
+        this.directTargets = new ArrayList<>(directTargets);
+    }
+
+    @Override
+    public Result invoke(File workspace, VirtualChannel channel) throws IOException, InterruptedException {
+        long received = System.nanoTime();
+        Result result = new Result();
+        LineProtocolEncoder encoder = new LineProtocolEncoder();
+        for (Map.Entry<ReportType, String> include : includes.entrySet()) {
+            ReportType type = include.getKey();
+            String[] files;
+            try {
+                files = Util.createFileSet(workspace, include.getValue()).getDirectoryScanner().getIncludedFiles();
+            } catch (RuntimeException e) {
+                // Ant reports a missing directory or a malformed pattern this way
+                result.problems.add(type + ": " + e.getMessage());
+                continue;
+            }
+            if (files.length == 0) {
+                continue;
+            }
+
+            ReportParser parser = type.newParser();
+            int parsed = 0;
+            for (String file : files) {
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+                try (InputStream in = new BufferedInputStream(Files.newInputStream(new File(workspace, file).toPath()))) {
+                    parser.parse(in);
+                    parsed++;
+                } catch (IOException | XMLStreamException | RuntimeException e) {
+                    result.problems.add(type + ": could not parse " + file + ": " + e.getMessage());
+                }
+            }
+            if (parsed > 0) {
+                parser.write(series, encoder, result.records::add);
+                result.files += parsed;
+            }
+        }
+
+        if (!directTargets.isEmpty() && !result.records.isEmpty()) {
+            result.written = AgentWrite.write(directTargets, result.records, received);
+            if (result.written.getFailures().isEmpty()) {
+                result.records.clear();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * The points of the reports, along with what went wrong.
+     */
+    public static class Result implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final List<String> records = new ArrayList<>();
+        private final List<String> problems = new ArrayList<>();
+        private int files;
+        private AgentWrite.Summary written;
+
+        /**
+         * @return the points as line protocol records, unless the agent wrote them to all targets
+         */
+        public List<String> getRecords() {
+            return records;
+        }
+
+        /**
+         * @return the files which could not be found or parsed
+         */
+        public List<String> getProblems() {
+            return problems;
+        }
+
+        /**
+         * @return the number of files parsed
+         */
+        public int getFiles() {
+            return files;
+        }
+
+        /**
+         * @return what was written from the agent, or {@code null} if it was given no targets
+         */
+        @CheckForNull
+        public AgentWrite.Summary getWritten() {
+            return written;
+        }
+    }
+}
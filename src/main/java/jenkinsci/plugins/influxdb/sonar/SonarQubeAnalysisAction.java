@@ -0,0 +1,35 @@
+package jenkinsci.plugins.influxdb.sonar;
+
+import hudson.model.InvisibleAction;
+
+import javax.annotation.CheckForNull;
+
+/**
+ * Remembers the dashboard URL and compute engine task the SonarQube scanner logged for a build.
+ */
+public class SonarQubeAnalysisAction extends InvisibleAction {
+
+    private final String url;
+    @CheckForNull
+    private final String ceTaskId;
+
+    public SonarQubeAnalysisAction(String url, @CheckForNull String ceTaskId) {
+        this.url = url;
+        this.ceTaskId = ceTaskId;
+    }
+
+    /**
+     * @return the URL of the latest analysis of the build
+     */
+    public String getUrl() {
+        return url;
+    }
+
+    /**
+     * @return the id of the compute engine task processing the analysis, or {@code null} if not logged
+     */
+    @CheckForNull
+    public String getCeTaskId() {
+        return ceTaskId;
+    }
+}
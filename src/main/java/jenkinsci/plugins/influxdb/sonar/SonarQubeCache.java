@@ -0,0 +1,225 @@
+package jenkinsci.plugins.influxdb.sonar;
+
+import jenkins.util.SystemProperties;
+
+import javax.annotation.CheckForNull;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Remembers the numbers of SonarQube analyses, so that an analysis reported by several
+ * publications, for example by a global listener and a publisher step, or by several builds, is
+ * queried from the server only once.
+ * <p>
+ * Analyses are identified by the server, the project and the id of the compute engine task which
+ * processed them. Publications of the same analysis at the same time wait for a single query.
+ * The final status of the task is kept along with the numbers, as it never changes, so that an
+ * analysis reported again costs no query at all. Entries expire after a while and the least
+ * recently used ones are dropped once the cache is full.
+ */
+public class SonarQubeCache {
+
+    /**
+     * The logger.
+     **/
+    private static final Logger logger = Logger.getLogger(SonarQubeCache.class.getName());
+
+    private static final int MAX_ENTRIES = SystemProperties.getInteger(SonarQubeCache.class.getName() + ".maxEntries", 1000);
+
+    private static final long EXPIRY_MINUTES = SystemProperties.getInteger(SonarQubeCache.class.getName() + ".expiryMinutes", 60);
+
+    private static final SonarQubeCache INSTANCE = new SonarQubeCache(MAX_ENTRIES, TimeUnit.MINUTES.toNanos(EXPIRY_MINUTES));
+
+    private final long expiryNanos;
+
+    /**
+     * In access order, guarded by {@code this}.
+     */
+    private final LinkedHashMap<AnalysisKey, Entry> entries;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    SonarQubeCache(int maxEntries, long expiryNanos) {
+        this.expiryNanos = expiryNanos;
+        this.entries = new LinkedHashMap<AnalysisKey, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<AnalysisKey, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    public static SonarQubeCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Returns the numbers of an analysis, querying them only if not known yet.
+     *
+     * @param server     URL of the server
+     * @param projectKey key of the project
+     * @param ceTaskId   id of the compute engine task of the analysis
+     * @param fetcher    queries the numbers from the server
+     */
+    public SonarQubeMeasures get(String server, String projectKey, String ceTaskId, Fetcher fetcher) throws IOException {
+        AnalysisKey key = new AnalysisKey(server, projectKey, ceTaskId);
+        CompletableFuture<SonarQubeMeasures> measures;
+        Entry entry;
+        boolean miss = false;
+        synchronized (this) {
+            entry = current(key);
+            if (entry.measures == null) {
+                entry.measures = new CompletableFuture<>();
+                miss = true;
+            }
+            measures = entry.measures;
+        }
+
+        if (!miss) {
+            hits.incrementAndGet();
+            return await(measures);
+        }
+
+        long missCount = misses.incrementAndGet();
+        logger.log(Level.FINE, "SonarQube cache miss for {0}, {1} hits and {2} misses so far",
+                new Object[]{projectKey, hits.get(), missCount});
+        try {
+            SonarQubeMeasures fetched = fetcher.fetch();
+            measures.complete(fetched);
+            return fetched;
+        } catch (IOException | RuntimeException e) {
+            // Let the next publication try again
+            synchronized (this) {
+                if (entry.measures == measures) {
+                    entry.measures = null;
+                }
+            }
+            measures.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /**
+     * @return the final status of the compute engine task of an analysis, or {@code null} if not known
+     */
+    @CheckForNull
+    public synchronized String getStatus(String server, String projectKey, String ceTaskId) {
+        Entry entry = entries.get(new AnalysisKey(server, projectKey, ceTaskId));
+        return entry == null || isExpired(entry, System.nanoTime()) ? null : entry.status;
+    }
+
+    /**
+     * Remembers the final status of the compute engine task of an analysis.
+     */
+    public synchronized void putStatus(String server, String projectKey, String ceTaskId, String status) {
+        current(new AnalysisKey(server, projectKey, ceTaskId)).status = status;
+    }
+
+    /**
+     * @return the entry of an analysis, a new one if it has none or it expired
+     */
+    private Entry current(AnalysisKey key) {
+        Entry entry = entries.get(key);
+        long now = System.nanoTime();
+        if (entry == null || isExpired(entry, now)) {
+            entry = new Entry(now);
+            entries.put(key, entry);
+        }
+        return entry;
+    }
+
+    private boolean isExpired(Entry entry, long now) {
+        return now - entry.created >= expiryNanos;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    private static SonarQubeMeasures await(CompletableFuture<SonarQubeMeasures> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for SonarQube data");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Queries the numbers of an analysis.
+     */
+    @FunctionalInterface
+    public interface Fetcher {
+
+        SonarQubeMeasures fetch() throws IOException;
+    }
+
+    /**
+     * Guarded by the cache.
+     */
+    private static final class Entry {
+
+        private final long created;
+        private CompletableFuture<SonarQubeMeasures> measures;
+        private String status;
+
+        private Entry(long created) {
+            this.created = created;
+        }
+    }
+
+    private static final class AnalysisKey {
+
+        private final String server;
+        private final String projectKey;
+        private final String ceTaskId;
+
+        private AnalysisKey(String server, String projectKey, String ceTaskId) {
+            this.server = server;
+            this.projectKey = projectKey;
+            this.ceTaskId = ceTaskId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            AnalysisKey that = (AnalysisKey) o;
+            return Objects.equals(server, that.server) && Objects.equals(projectKey, that.projectKey)
+                    && Objects.equals(ceTaskId, that.ceTaskId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(server, projectKey, ceTaskId);
+        }
+    }
+}
@@ -0,0 +1,286 @@
+package jenkinsci.plugins.influxdb.sonar;
+
+import com.squareup.moshi.JsonReader;
+import jenkins.util.SystemProperties;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.Credentials;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+import javax.annotation.CheckForNull;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Queries the numbers of an analysis from a SonarQube server.
+ * <p>
+ * The issue counts of all severities are read from the facets of a single issue search, which
+ * runs at the same time as the query of the measures. Responses are parsed as they are read,
+ * picking only the few values needed.
+ */
+public class SonarQubeClient {
+
+    private static final int TIMEOUT_SECONDS = SystemProperties.getInteger(SonarQubeClient.class.getName() + ".timeoutSeconds", 30);
+
+    private static final String ISSUES_PATH = "/api/issues/search?ps=1&facets=severities&resolved=false&projectKeys=";
+
+    private static final String MEASURES_PATH = "/api/measures/component?metricKeys=ncloc&componentKey=";
+
+    private static final String TASK_PATH = "/api/ce/task?id=";
+
+    private static final SonarQubeClient INSTANCE = new SonarQubeClient(new OkHttpClient.Builder()
+            .connectTimeout(TIMEOUT_SECONDS, TimeUnit.SECONDS)
+            .readTimeout(TIMEOUT_SECONDS, TimeUnit.SECONDS)
+            .callTimeout(TIMEOUT_SECONDS, TimeUnit.SECONDS)
+            .build());
+
+    private final OkHttpClient httpClient;
+
+    SonarQubeClient(OkHttpClient httpClient) {
+        this.httpClient = httpClient;
+    }
+
+    public static SonarQubeClient getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @param server     URL of the server, without a trailing slash
+     * @param projectKey key of the project, URL encoded
+     * @param token      authentication token, if any
+     */
+    public SonarQubeMeasures fetch(String server, String projectKey, @CheckForNull String token) throws IOException {
+        CompletableFuture<Map<String, Integer>> issues = call(server + ISSUES_PATH + projectKey, token, SonarQubeClient::parseSeverities);
+        CompletableFuture<Integer> linesOfCode = call(server + MEASURES_PATH + projectKey, token, SonarQubeClient::parseLinesOfCode);
+        try {
+            return new SonarQubeMeasures(await(issues), await(linesOfCode));
+        } finally {
+            issues.cancel(true);
+            linesOfCode.cancel(true);
+        }
+    }
+
+    /**
+     * @param server   URL of the server, without a trailing slash
+     * @param ceTaskId id of a compute engine task
+     * @param token    authentication token, if any
+     * @return the status of the task, for example {@code IN_PROGRESS} or {@code SUCCESS}
+     */
+    @CheckForNull
+    public String getTaskStatus(String server, String ceTaskId, @CheckForNull String token) throws IOException {
+        return await(call(server + TASK_PATH + ceTaskId, token, SonarQubeClient::parseTaskStatus));
+    }
+
+    private <T> CompletableFuture<T> call(String url, @CheckForNull String token, ResponseParser<T> parser) {
+        Request.Builder requestBuilder = new Request.Builder()
+                .get()
+                .url(url)
+                .header("Accept", "application/json");
+
+        if (token != null) {
+            String credential = Credentials.basic(token, "", StandardCharsets.UTF_8);
+            requestBuilder.header("Authorization", credential);
+        }
+
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Call call = httpClient.newCall(requestBuilder.build());
+        // Cancelled once the other query failed or the build was interrupted
+        result.whenComplete((value, failure) -> {
+            if (result.isCancelled()) {
+                call.cancel();
+            }
+        });
+        call.enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                result.completeExceptionally(e);
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                try (Response r = response) {
+                    if (r.code() != 200) {
+                        throw new IOException("Failed : HTTP error code : " + r.code() + " from URL : " + url);
+                    }
+                    try (JsonReader reader = JsonReader.of(r.body().source())) {
+                        result.complete(parser.parse(reader));
+                    }
+                } catch (IOException | RuntimeException e) {
+                    result.completeExceptionally(e);
+                }
+            }
+        });
+        return result;
+    }
+
+    private static <T> T await(CompletableFuture<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while querying SonarQube");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Reads the issue counts from the {@code severities} facet of an issue search.
+     */
+    static Map<String, Integer> parseSeverities(JsonReader reader) throws IOException {
+        Map<String, Integer> counts = new HashMap<>();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (!"facets".equals(reader.nextName())) {
+                reader.skipValue();
+                continue;
+            }
+            reader.beginArray();
+            while (reader.hasNext()) {
+                readFacet(reader, counts);
+            }
+            reader.endArray();
+        }
+        reader.endObject();
+        return counts;
+    }
+
+    private static void readFacet(JsonReader reader, Map<String, Integer> counts) throws IOException {
+        String property = null;
+        Map<String, Integer> values = new HashMap<>();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "property":
+                    property = reader.nextString();
+                    break;
+                case "values":
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        readFacetValue(reader, values);
+                    }
+                    reader.endArray();
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+        if ("severities".equals(property)) {
+            counts.putAll(values);
+        }
+    }
+
+    private static void readFacetValue(JsonReader reader, Map<String, Integer> values) throws IOException {
+        String val = null;
+        int count = 0;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "val":
+                    val = reader.nextString();
+                    break;
+                case "count":
+                    count = reader.nextInt();
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+        if (val != null) {
+            values.put(val, count);
+        }
+    }
+
+    /**
+     * Reads the {@code ncloc} measure of a component.
+     */
+    static int parseLinesOfCode(JsonReader reader) throws IOException {
+        int linesOfCode = 0;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (!"component".equals(reader.nextName())) {
+                reader.skipValue();
+                continue;
+            }
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (!"measures".equals(reader.nextName())) {
+                    reader.skipValue();
+                    continue;
+                }
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    String metric = null;
+                    String value = null;
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        switch (reader.nextName()) {
+                            case "metric":
+                                metric = reader.nextString();
+                                break;
+                            case "value":
+                                value = reader.nextString();
+                                break;
+                            default:
+                                reader.skipValue();
+                        }
+                    }
+                    reader.endObject();
+                    if ("ncloc".equals(metric) && value != null) {
+                        linesOfCode = Integer.parseInt(value);
+                    }
+                }
+                reader.endArray();
+            }
+            reader.endObject();
+        }
+        reader.endObject();
+        return linesOfCode;
+    }
+
+    /**
+     * Reads the status of a compute engine task.
+     */
+    @CheckForNull
+    static String parseTaskStatus(JsonReader reader) throws IOException {
+        String status = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (!"task".equals(reader.nextName())) {
+                reader.skipValue();
+                continue;
+            }
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if ("status".equals(reader.nextName())) {
+                    status = reader.nextString();
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+        }
+        reader.endObject();
+        return status;
+    }
+
+    @FunctionalInterface
+    private interface ResponseParser<T> {
+
+        T parse(JsonReader reader) throws IOException;
+    }
+}
@@ -0,0 +1,278 @@
+package jenkinsci.plugins.influxdb.sonar;
+
+import hudson.Extension;
+import hudson.console.ConsoleLogFilter;
+import hudson.console.LineTransformationOutputStream;
+import hudson.model.AbstractBuild;
+import hudson.model.Run;
+
+import javax.annotation.CheckForNull;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Finds the dashboard URL the SonarQube scanner logs once an analysis was uploaded, and the id of
+ * the compute engine task it logs right after.
+ * <p>
+ * While a freestyle build runs, its console output is watched for these lines, which are then
+ * stored as a {@link SonarQubeAnalysisAction}. Lines are first searched for the literal messages as
+ * bytes, only the rare matching lines are decoded and parsed. Pipeline steps log past console log
+ * filters, often on an agent, so the log of a Pipeline is searched backwards from the end once it
+ * is needed, like that of a build started before the plugin was loaded.
+ */
+public final class SonarQubeLogScanner {
+
+    private static final String MARKER = "ANALYSIS SUCCESSFUL, you can browse ";
+
+    private static final byte[] MARKER_BYTES = MARKER.getBytes(StandardCharsets.US_ASCII);
+
+    private static final Pattern URL_PATTERN = Pattern.compile(".*" + Pattern.quote(MARKER) + "(.*)");
+
+    private static final String TASK_MARKER = "More about the report processing at ";
+
+    private static final byte[] TASK_MARKER_BYTES = TASK_MARKER.getBytes(StandardCharsets.US_ASCII);
+
+    private static final Pattern TASK_PATTERN = Pattern.compile(".*" + Pattern.quote(TASK_MARKER) + "\\S*[?&]id=([^&\\s]+).*");
+
+    private static final int BLOCK_SIZE = 64 * 1024;
+
+    private static final int MAX_LINE_LENGTH = 8 * 1024;
+
+    /**
+     * Freestyle builds whose console output is watched in this JVM.
+     */
+    private static final Map<Run<?, ?>, Boolean> watched = Collections.synchronizedMap(new WeakHashMap<>());
+
+    private SonarQubeLogScanner() {
+        //nop
+    }
+
+    /**
+     * @return the latest analysis of the build, or {@code null} if none was logged
+     */
+    @CheckForNull
+    public static SonarQubeAnalysisAction findAnalysis(Run<?, ?> build) throws IOException {
+        SonarQubeAnalysisAction action = build.getAction(SonarQubeAnalysisAction.class);
+        if (action != null) {
+            return action;
+        }
+        if (watched.containsKey(build)) {
+            return null;
+        }
+        File log = build.getLogFile();
+        if (log.getName().endsWith(".gz")) {
+            return readForward(build);
+        }
+        return log.isFile() ? scanTail(log, Long.MAX_VALUE, build.getCharset()) : null;
+    }
+
+    /**
+     * @return the URL logged in a line, or {@code null} if the line does not contain one
+     */
+    @CheckForNull
+    static String parse(String line) {
+        Matcher matcher = URL_PATTERN.matcher(line);
+        return matcher.matches() ? matcher.group(1) : null;
+    }
+
+    /**
+     * @return the compute engine task id logged in a line, or {@code null} if the line does not contain one
+     */
+    @CheckForNull
+    static String parseTask(String line) {
+        Matcher matcher = TASK_PATTERN.matcher(line);
+        return matcher.matches() ? matcher.group(1) : null;
+    }
+
+    /**
+     * Searches the end of a log backwards for the URL.
+     *
+     * @return the last analysis whose URL is within {@code maxBytes} of the end, or {@code null}
+     */
+    @CheckForNull
+    static SonarQubeAnalysisAction scanTail(File log, long maxBytes, Charset charset) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(log, "r")) {
+            long length = file.length();
+            long limit = Math.max(0, length - maxBytes);
+            // Blocks overlap by the length of the marker, to find it across block boundaries
+            byte[] block = new byte[BLOCK_SIZE + MARKER_BYTES.length - 1];
+            long end = length;
+            while (end > limit) {
+                long start = Math.max(limit, end - BLOCK_SIZE);
+                int len = (int) (Math.min(length, end + MARKER_BYTES.length - 1) - start);
+                file.seek(start);
+                file.readFully(block, 0, len);
+                for (int index = lastIndexOf(block, len, len); index >= 0; index = lastIndexOf(block, len, index)) {
+                    SonarQubeAnalysisAction analysis = readAnalysis(file, start + index, charset);
+                    if (analysis != null) {
+                        return analysis;
+                    }
+                }
+                end = start;
+            }
+        }
+        return null;
+    }
+
+    @CheckForNull
+    private static SonarQubeAnalysisAction readForward(Run<?, ?> build) throws IOException {
+        SonarQubeAnalysisAction analysis = null;
+        try (BufferedReader br = new BufferedReader(build.getLogReader())) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                if (line.contains(MARKER)) {
+                    String url = parse(line);
+                    if (url != null) {
+                        analysis = new SonarQubeAnalysisAction(url, null);
+                    }
+                } else if (analysis != null && line.contains(TASK_MARKER)) {
+                    String ceTaskId = parseTask(line);
+                    if (ceTaskId != null) {
+                        analysis = new SonarQubeAnalysisAction(analysis.getUrl(), ceTaskId);
+                    }
+                }
+            }
+        }
+        return analysis;
+    }
+
+    /**
+     * Reads the analysis whose URL is logged at the given position, along with the compute engine
+     * task logged shortly after.
+     */
+    @CheckForNull
+    private static SonarQubeAnalysisAction readAnalysis(RandomAccessFile file, long position, Charset charset) throws IOException {
+        byte[] text = new byte[(int) Math.min(MAX_LINE_LENGTH, file.length() - position)];
+        file.seek(position);
+        file.readFully(text);
+        String[] lines = new String(text, charset).split("\n");
+        String url = parse(trimEol(lines[0]));
+        if (url == null) {
+            return null;
+        }
+        String ceTaskId = null;
+        for (int i = 1; i < lines.length && ceTaskId == null; i++) {
+            ceTaskId = parseTask(trimEol(lines[i]));
+        }
+        return new SonarQubeAnalysisAction(url, ceTaskId);
+    }
+
+    /**
+     * @return index of the first byte of the marker within {@code b[0..len)}, or {@code -1}
+     */
+    static int indexOf(byte[] b, int len, byte[] marker) {
+        int last = len - marker.length;
+        byte first = marker[0];
+        for (int i = 0; i <= last; i++) {
+            if (b[i] == first && regionMatches(b, i, marker)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return index of the last marker within {@code b[0..len)} which starts before {@code before}, or {@code -1}
+     */
+    private static int lastIndexOf(byte[] b, int len, int before) {
+        byte first = MARKER_BYTES[0];
+        for (int i = Math.min(before - 1, len - MARKER_BYTES.length); i >= 0; i--) {
+            if (b[i] == first && regionMatches(b, i, MARKER_BYTES)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean regionMatches(byte[] b, int offset, byte[] marker) {
+        for (int j = 1; j < marker.length; j++) {
+            if (b[offset + j] != marker[j]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String trimEol(String line) {
+        int end = line.length();
+        while (end > 0 && (line.charAt(end - 1) == '\n' || line.charAt(end - 1) == '\r')) {
+            end--;
+        }
+        return line.substring(0, end);
+    }
+
+    /**
+     * Passes console output through unchanged and reports every analysis logged, once with its
+     * URL and again once its compute engine task is logged.
+     */
+    static final class CaptureStream extends LineTransformationOutputStream {
+
+        private final OutputStream out;
+        private final Charset charset;
+        private final Consumer<SonarQubeAnalysisAction> onAnalysis;
+        private String url;
+
+        CaptureStream(OutputStream out, Charset charset, Consumer<SonarQubeAnalysisAction> onAnalysis) {
+            this.out = out;
+            this.charset = charset;
+            this.onAnalysis = onAnalysis;
+        }
+
+        @Override
+        protected void eol(byte[] b, int len) throws IOException {
+            out.write(b, 0, len);
+            if (indexOf(b, len, MARKER_BYTES) >= 0) {
+                String match = parse(trimEol(new String(b, 0, len, charset)));
+                if (match != null) {
+                    url = match;
+                    onAnalysis.accept(new SonarQubeAnalysisAction(url, null));
+                }
+            } else if (url != null && indexOf(b, len, TASK_MARKER_BYTES) >= 0) {
+                String ceTaskId = parseTask(trimEol(new String(b, 0, len, charset)));
+                if (ceTaskId != null) {
+                    onAnalysis.accept(new SonarQubeAnalysisAction(url, ceTaskId));
+                }
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            super.close();
+            out.close();
+        }
+    }
+
+    /**
+     * Watches the console output of freestyle builds. Of a Pipeline, only the overall log would
+     * pass through here, not the output of its steps, so it is not watched at all.
+     */
+    @Extension
+    public static class ConsoleLogFilterImpl extends ConsoleLogFilter {
+
+        @Override
+        public OutputStream decorateLogger(Run build, OutputStream logger) {
+            if (!(build instanceof AbstractBuild)) {
+                return logger;
+            }
+            Run<?, ?> run = build;
+            watched.put(run, Boolean.TRUE);
+            return new CaptureStream(logger, run.getCharset(), run::addOrReplaceAction);
+        }
+    }
+}
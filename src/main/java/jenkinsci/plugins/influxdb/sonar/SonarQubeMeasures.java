@@ -0,0 +1,31 @@
+package jenkinsci.plugins.influxdb.sonar;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The numbers of a SonarQube analysis written to InfluxDB.
+ */
+public final class SonarQubeMeasures {
+
+    private final Map<String, Integer> issuesBySeverity;
+    private final int linesOfCode;
+
+    public SonarQubeMeasures(Map<String, Integer> issuesBySeverity, int linesOfCode) {
+        this.issuesBySeverity = Collections.unmodifiableMap(new HashMap<>(issuesBySeverity));
+        this.linesOfCode = linesOfCode;
+    }
+
+    /**
+     * @param severity for example {@code CRITICAL}
+     * @return number of unresolved issues of the severity
+     */
+    public int getIssues(String severity) {
+        return issuesBySeverity.getOrDefault(severity, 0);
+    }
+
+    public int getLinesOfCode() {
+        return linesOfCode;
+    }
+}
@@ -0,0 +1,196 @@
+package jenkinsci.plugins.influxdb.sonar;
+
+import hudson.init.Terminator;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import jenkins.util.SystemProperties;
+
+import javax.annotation.CheckForNull;
+import java.io.IOException;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Waits in the background for the SonarQube compute engine to process an analysis.
+ * <p>
+ * Right after the scanner uploaded an analysis, the server still reports the numbers of the
+ * previous one. The task processing the analysis is therefore polled on a small scheduler of its
+ * own, first after a short delay and then less and less often, without holding up a build or an
+ * executor. A slow SonarQube server thus never delays the periodic work Jenkins runs on its shared
+ * timer. Publications waiting for the same task share its polls.
+ */
+public class SonarQubeTaskPoller {
+
+    /**
+     * The logger.
+     **/
+    private static final Logger logger = Logger.getLogger(SonarQubeTaskPoller.class.getName());
+
+    private static final long INITIAL_DELAY_MILLIS = SystemProperties.getInteger(SonarQubeTaskPoller.class.getName() + ".initialDelayMillis", 2000);
+
+    private static final long MAX_DELAY_MILLIS = TimeUnit.SECONDS.toMillis(
+            SystemProperties.getInteger(SonarQubeTaskPoller.class.getName() + ".maxDelaySeconds", 60));
+
+    private static final long MAX_WAIT_MILLIS = TimeUnit.MINUTES.toMillis(
+            SystemProperties.getInteger(SonarQubeTaskPoller.class.getName() + ".maxWaitMinutes", 60));
+
+    private static final int POLL_THREADS = SystemProperties.getInteger(SonarQubeTaskPoller.class.getName() + ".pollThreads", 1);
+
+    private static final ScheduledThreadPoolExecutor POLLER = createPoller();
+
+    /**
+     * Status of a task which was processed successfully.
+     */
+    public static final String SUCCESS = "SUCCESS";
+
+    private static SonarQubeTaskPoller instance;
+
+    private final ScheduledExecutorService scheduler;
+    private final StatusSource statusSource;
+    private final long initialDelayMillis;
+    private final long maxDelayMillis;
+    private final long maxWaitMillis;
+
+    private final ConcurrentMap<TaskKey, CompletableFuture<String>> pending = new ConcurrentHashMap<>();
+
+    SonarQubeTaskPoller(ScheduledExecutorService scheduler, StatusSource statusSource,
+                        long initialDelayMillis, long maxDelayMillis, long maxWaitMillis) {
+        this.scheduler = scheduler;
+        this.statusSource = statusSource;
+        this.initialDelayMillis = Math.max(1, initialDelayMillis);
+        this.maxDelayMillis = Math.max(this.initialDelayMillis, maxDelayMillis);
+        this.maxWaitMillis = maxWaitMillis;
+    }
+
+    public static synchronized SonarQubeTaskPoller getInstance() {
+        if (instance == null) {
+            instance = new SonarQubeTaskPoller(POLLER, SonarQubeClient.getInstance()::getTaskStatus,
+                    INITIAL_DELAY_MILLIS, MAX_DELAY_MILLIS, MAX_WAIT_MILLIS);
+        }
+        return instance;
+    }
+
+    /**
+     * Stops polling. Publications still waiting for SonarQube are abandoned.
+     */
+    @Terminator
+    public static void terminate() {
+        POLLER.shutdownNow();
+    }
+
+    private static ScheduledThreadPoolExecutor createPoller() {
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(Math.max(1, POLL_THREADS),
+                new NamingThreadFactory(new DaemonThreadFactory(), "SonarQube task poll"));
+        executor.setRemoveOnCancelPolicy(true);
+        return executor;
+    }
+
+    /**
+     * @return whether a task of the given status is processed, successfully or not
+     */
+    public static boolean isDone(@CheckForNull String status) {
+        return SUCCESS.equals(status) || "FAILED".equals(status) || "CANCELED".equals(status);
+    }
+
+    /**
+     * Polls a task until it is processed.
+     *
+     * @param server   URL of the server
+     * @param ceTaskId id of the compute engine task
+     * @param token    authentication token, if any
+     * @return completes with the final status of the task, or with a {@link TimeoutException} if
+     * the task is not processed in time
+     */
+    public CompletableFuture<String> awaitCompletion(String server, String ceTaskId, @CheckForNull String token) {
+        TaskKey key = new TaskKey(server, ceTaskId);
+        CompletableFuture<String> result = new CompletableFuture<>();
+        CompletableFuture<String> existing = pending.putIfAbsent(key, result);
+        if (existing != null) {
+            return existing;
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+        schedule(key, token, result, initialDelayMillis, deadline);
+        return result;
+    }
+
+    private void schedule(TaskKey key, @CheckForNull String token, CompletableFuture<String> result, long delayMillis, long deadline) {
+        try {
+            scheduler.schedule(() -> poll(key, token, result, delayMillis, deadline), delayMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // Shutting down
+            pending.remove(key, result);
+            result.completeExceptionally(e);
+        }
+    }
+
+    private void poll(TaskKey key, @CheckForNull String token, CompletableFuture<String> result, long delayMillis, long deadline) {
+        String status = null;
+        try {
+            status = statusSource.getTaskStatus(key.server, key.ceTaskId, token);
+        } catch (IOException | RuntimeException e) {
+            // The server may be restarting, try again later
+            logger.log(Level.FINE, "Could not get the status of SonarQube task " + key.ceTaskId, e);
+        }
+        if (isDone(status)) {
+            pending.remove(key, result);
+            result.complete(status);
+        } else if (System.nanoTime() - deadline >= 0) {
+            pending.remove(key, result);
+            result.completeExceptionally(new TimeoutException("SonarQube task " + key.ceTaskId
+                    + " was not processed within " + TimeUnit.MILLISECONDS.toMinutes(maxWaitMillis) + " minutes"));
+        } else {
+            schedule(key, token, result, Math.min(2 * delayMillis, maxDelayMillis), deadline);
+        }
+    }
+
+    int pendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * Queries the status of a compute engine task.
+     */
+    @FunctionalInterface
+    interface StatusSource {
+
+        @CheckForNull
+        String getTaskStatus(String server, String ceTaskId, @CheckForNull String token) throws IOException;
+    }
+
+    private static final class TaskKey {
+
+        private final String server;
+        private final String ceTaskId;
+
+        private TaskKey(String server, String ceTaskId) {
+            this.server = server;
+            this.ceTaskId = ceTaskId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            TaskKey that = (TaskKey) o;
+            return Objects.equals(server, that.server) && Objects.equals(ceTaskId, that.ceTaskId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(server, ceTaskId);
+        }
+    }
+}
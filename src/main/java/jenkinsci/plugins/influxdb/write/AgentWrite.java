@@ -0,0 +1,120 @@
+package jenkinsci.plugins.influxdb.write;
+
+import jenkinsci.plugins.influxdb.client.LineProtocolWriter;
+import jenkinsci.plugins.influxdb.client.ScopedTarget;
+import okhttp3.OkHttpClient;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes points from the agent which generated them straight to the targets, so that they do not
+ * pass through the controller. Only a {@link Summary} of the writes is sent back.
+ * <p>
+ * The chunks of a target are written one after the other. Unlike writes from the controller, a
+ * failed write is neither spooled nor bisected: the records are handed back to the controller
+ * instead, which writes them the usual way. Targets which already accepted them get the same
+ * points again, which InfluxDB stores only once.
+ */
+public final class AgentWrite {
+
+    /**
+     * Shared by all builds on the agent, so keep-alive connections survive from one build to the next.
+     */
+    private static final OkHttpClient httpClient = new OkHttpClient();
+
+    private AgentWrite() {
+        //nop
+    }
+
+    /**
+     * @param targets       the targets to write to
+     * @param records       the points as line protocol records
+     * @param receivedNanos {@link System#nanoTime()} when the agent received the targets
+     */
+    public static Summary write(List<ScopedTarget> targets, List<String> records, long receivedNanos) {
+        Summary summary = new Summary(records.size());
+        long start = System.nanoTime();
+        for (ScopedTarget target : targets) {
+            LineProtocolWriter writer = null;
+            try {
+                for (List<String> chunk : ChunkedWrite.split(records, target.getMaxPointsPerRequest(), target.getMaxBytesPerRequest())) {
+                    // Checked before every request, as the writes may outlast the copy
+                    if (target.isExpired(receivedNanos)) {
+                        summary.failures.add(String.format("Target '%s' may no longer be written from the agent", target.getDescription()));
+                        break;
+                    }
+                    if (writer == null) {
+                        writer = target.newWriter(httpClient);
+                    }
+                    LineProtocolWriter.WriteStats stats = writer.write(target.getDatabase(), target.getRetentionPolicy(), chunk);
+                    summary.requests++;
+                    summary.bytes += stats.getBytes();
+                    summary.sentBytes += stats.getSentBytes();
+                }
+            } catch (IOException | RuntimeException e) {
+                summary.failures.add(String.format("Failed to write to target '%s' from the agent: %s", target.getDescription(), e));
+            }
+        }
+        summary.latencyMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        return summary;
+    }
+
+    /**
+     * What was written from the agent, for the build log.
+     */
+    public static final class Summary implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int points;
+        private final List<String> failures = new ArrayList<>();
+        private int requests;
+        private long bytes;
+        private long sentBytes;
+        private long latencyMillis;
+
+        Summary(int points) {
+            this.points = points;
+        }
+
+        public int getPoints() {
+            return points;
+        }
+
+        public int getRequests() {
+            return requests;
+        }
+
+        /**
+         * @return size of the line protocol written, summed up over all targets
+         */
+        public long getBytes() {
+            return bytes;
+        }
+
+        /**
+         * @return size of the request bodies sent, which differs from {@link #getBytes()} if compressed
+         */
+        public long getSentBytes() {
+            return sentBytes;
+        }
+
+        /**
+         * @return time taken by all writes
+         */
+        public long getLatencyMillis() {
+            return latencyMillis;
+        }
+
+        /**
+         * @return the targets which could not be written to, if any
+         */
+        public List<String> getFailures() {
+            return failures;
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package jenkinsci.plugins.influxdb.write;
+
+import jenkinsci.plugins.influxdb.client.LineProtocolWriter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Writes a batch of records and, if InfluxDB rejects it as bad data (HTTP 400, for example a field
+ * type conflict), splits it in halves until the offending records are isolated. The valid records
+ * are written, the offending ones are quarantined: logged and counted, but neither retried nor
+ * spooled, since they would never be accepted.
+ * <p>
+ * InfluxDB may already have stored the valid points of a rejected batch (a "partial write"); writing
+ * them again is harmless as points with the same series and timestamp are overwritten.
+ */
+public class BatchBisector {
+
+    /**
+     * The logger.
+     **/
+    private static final Logger logger = Logger.getLogger(BatchBisector.class.getName());
+
+    /**
+     * Requests a single batch may take to isolate bad records. Once used up, the sub-batches not
+     * written yet get one final attempt each, unsplit, and are quarantined as a whole if rejected.
+     */
+    static final int MAX_REQUESTS = 64;
+
+    private static final AtomicLong quarantinedCount = new AtomicLong();
+
+    private final String name;
+    private final ChunkedWrite.ChunkWriter writer;
+
+    private int requests;
+    private long bytes;
+    private long sentBytes;
+    private final List<QuarantinedPoint> quarantined = new ArrayList<>();
+    /**
+     * Records quarantined with a rejected sub-batch once the requests were used up, which may be valid.
+     */
+    private int quarantinedUnsplit;
+
+    /**
+     * @param name   describes the destination in log messages
+     * @param writer writes a batch
+     */
+    public BatchBisector(String name, ChunkedWrite.ChunkWriter writer) {
+        this.name = name;
+        this.writer = writer;
+    }
+
+    /**
+     * @return number of records quarantined since Jenkins started
+     */
+    public static long getQuarantinedCount() {
+        return quarantinedCount.get();
+    }
+
+    /**
+     * Writes the records, isolating rejected ones.
+     *
+     * @return the outcome, listing the quarantined records
+     * @throws IOException if a write fails for another reason than bad data
+     */
+    public Outcome write(List<String> records) throws IOException {
+        bisect(records);
+        if (quarantinedUnsplit > 0) {
+            logger.log(Level.WARNING, "Gave up isolating the points InfluxDB target ''{0}'' rejected after {1} requests. "
+                    + "{2} point(s) were quarantined with their sub-batch and may have been valid",
+                    new Object[]{name, requests, quarantinedUnsplit});
+        }
+        return new Outcome(bytes, sentBytes, quarantined);
+    }
+
+    private void bisect(List<String> records) throws IOException {
+        requests++;
+        try {
+            LineProtocolWriter.WriteStats stats = writer.write(records);
+            bytes += stats.getBytes();
+            sentBytes += stats.getSentBytes();
+        } catch (LineProtocolWriter.WriteException e) {
+            if (e.getStatus() != 400) {
+                throw e;
+            }
+            if (records.size() == 1) {
+                quarantine(records, e.getMessage());
+                return;
+            }
+            if (requests >= MAX_REQUESTS) {
+                quarantinedUnsplit += records.size();
+                quarantine(records, e.getMessage() + " (rejected with " + (records.size() - 1)
+                        + " other point(s), not isolated as the batch took " + MAX_REQUESTS + " requests)");
+                return;
+            }
+            int middle = records.size() / 2;
+            bisect(records.subList(0, middle));
+            bisect(records.subList(middle, records.size()));
+        }
+    }
+
+    private void quarantine(List<String> records, String reason) {
+        for (String record : records) {
+            quarantined.add(new QuarantinedPoint(record, reason));
+            logger.log(Level.WARNING, "InfluxDB target ''{0}'' rejected point {1}: {2}", new Object[]{name, record, reason});
+        }
+        quarantinedCount.addAndGet(records.size());
+    }
+
+    /**
+     * Outcome of a bisected write.
+     */
+    public static final class Outcome {
+
+        private final long bytes;
+        private final long sentBytes;
+        private final List<QuarantinedPoint> quarantined;
+
+        private Outcome(long bytes, long sentBytes, List<QuarantinedPoint> quarantined) {
+            this.bytes = bytes;
+            this.sentBytes = sentBytes;
+            this.quarantined = Collections.unmodifiableList(quarantined);
+        }
+
+        /**
+         * @return size of the line protocol accepted
+         */
+        public long getBytes() {
+            return bytes;
+        }
+
+        /**
+         * @return size of the accepted request bodies, after compression
+         */
+        public long getSentBytes() {
+            return sentBytes;
+        }
+
+        public List<QuarantinedPoint> getQuarantined() {
+            return quarantined;
+        }
+    }
+
+    /**
+     * A record InfluxDB refused to store.
+     */
+    public static final class QuarantinedPoint {
+
+        private final String record;
+        private final String reason;
+
+        QuarantinedPoint(String record, String reason) {
+            this.record = record;
+            this.reason = reason;
+        }
+
+        public String getRecord() {
+            return record;
+        }
+
+        /**
+         * @return the error message of InfluxDB
+         */
+        public String getReason() {
+            return reason;
+        }
+    }
+}
@@ -0,0 +1,292 @@
+package jenkinsci.plugins.influxdb.write;
+
+import jenkinsci.plugins.influxdb.client.InfluxDbClientRegistry;
+import jenkinsci.plugins.influxdb.client.LineProtocolWriter;
+import jenkinsci.plugins.influxdb.models.Target;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Writes the records of a build to one target in requests bounded by a number of points and bytes,
+ * so that large reports neither exceed the maximum body size of InfluxDB nor fail as a whole.
+ * <p>
+ * Up to {@code parallelism} chunks are written at the same time. Every chunk succeeds or fails on
+ * its own, and only the records of failed chunks are spooled. Records rejected as bad data are
+ * isolated and quarantined by the {@link BatchBisector}.
+ */
+public class ChunkedWrite {
+
+    /**
+     * The logger.
+     **/
+    private static final Logger logger = Logger.getLogger(ChunkedWrite.class.getName());
+
+    /**
+     * Writes a single chunk.
+     */
+    @FunctionalInterface
+    public interface ChunkWriter {
+
+        LineProtocolWriter.WriteStats write(List<String> records) throws IOException;
+    }
+
+    private final String name;
+    private final ChunkWriter writer;
+    private final WriteSpool.RecordWriter spool;
+    private final ExecutorService executor;
+    private final int parallelism;
+    private final int maxPoints;
+    private final long maxBytes;
+
+    /**
+     * @param name        describes the target in log messages
+     * @param writer      writes a chunk to the target
+     * @param spool       keeps the records of a failed chunk
+     * @param executor    runs the chunks
+     * @param parallelism maximum number of chunks written at the same time
+     * @param maxPoints   maximum number of points per chunk
+     * @param maxBytes    maximum size of a chunk in bytes
+     */
+    public ChunkedWrite(String name, ChunkWriter writer, WriteSpool.RecordWriter spool, ExecutorService executor,
+                        int parallelism, int maxPoints, long maxBytes) {
+        this.name = name;
+        this.writer = writer;
+        this.spool = spool;
+        this.executor = executor;
+        this.parallelism = Math.max(1, parallelism);
+        this.maxPoints = Math.max(1, maxPoints);
+        this.maxBytes = Math.max(1, maxBytes);
+    }
+
+    /**
+     * Splits records into consecutive chunks of at most {@code maxPoints} records and {@code maxBytes}
+     * bytes. A single record larger than {@code maxBytes} becomes a chunk of its own.
+     */
+    public static List<List<String>> split(List<String> records, int maxPoints, long maxBytes) {
+        List<List<String>> chunks = new ArrayList<>();
+        int from = 0;
+        long bytes = 0;
+        for (int i = 0; i < records.size(); i++) {
+            long recordBytes = LineProtocolWriter.utf8Length(records.get(i)) + 1;
+            if (i > from && (i - from >= maxPoints || bytes + recordBytes > maxBytes)) {
+                chunks.add(records.subList(from, i));
+                from = i;
+                bytes = 0;
+            }
+            bytes += recordBytes;
+        }
+        if (from < records.size()) {
+            chunks.add(records.subList(from, records.size()));
+        }
+        return chunks;
+    }
+
+    /**
+     * Writes records to a target chunk by chunk, in the calling thread. Stops at the first failed
+     * chunk; the caller retries all records, which is harmless since InfluxDB overwrites points
+     * with the same series and timestamp. Rejected records are quarantined rather than failing
+     * the write, so they cannot block a spool forever.
+     */
+    static void writeInOrder(Target target, List<String> records) throws IOException {
+        LineProtocolWriter writer = InfluxDbClientRegistry.getInstance().getWriter(target);
+        for (List<String> chunk : split(records, target.getMaxPointsPerRequest(), 1024L * target.getMaxKilobytesPerRequest())) {
+            new BatchBisector(target.getDescription(),
+                    part -> writer.write(target.getDatabase(), target.getRetentionPolicy(), part)).write(chunk);
+        }
+    }
+
+    /**
+     * Writes the records and waits for all chunks. If the calling thread is interrupted, chunks
+     * which have not started yet are spooled instead of written.
+     */
+    public Result write(List<String> records) throws InterruptedException {
+        List<Chunk> chunks = new ArrayList<>();
+        for (List<String> part : split(records, maxPoints, maxBytes)) {
+            chunks.add(new Chunk(part));
+        }
+
+        Result result = new Result(chunks.size());
+        try {
+            for (int i = 0; i < chunks.size(); i++) {
+                if (i >= parallelism) {
+                    chunks.get(i - parallelism).await(result);
+                }
+                Chunk chunk = chunks.get(i);
+                chunk.future = executor.submit(chunk::run);
+            }
+            for (int i = Math.max(0, chunks.size() - parallelism); i < chunks.size(); i++) {
+                chunks.get(i).await(result);
+            }
+        } catch (InterruptedException e) {
+            for (Chunk chunk : chunks) {
+                chunk.abandon();
+            }
+            throw e;
+        }
+        return result;
+    }
+
+    private void spool(List<String> records) {
+        try {
+            spool.write(records);
+        } catch (Exception e) {
+            logger.log(Level.WARNING, "Could not spool " + records.size() + " point(s)", e);
+        }
+    }
+
+    private final class Chunk {
+
+        private final List<String> records;
+        /**
+         * Whoever claims the chunk first either writes or spools it.
+         */
+        private final AtomicBoolean claimed = new AtomicBoolean();
+        private Future<BatchBisector.Outcome> future;
+
+        private Chunk(List<String> records) {
+            this.records = records;
+        }
+
+        private BatchBisector.Outcome run() throws IOException {
+            if (!claimed.compareAndSet(false, true)) {
+                return null;
+            }
+            try {
+                return new BatchBisector(name, writer).write(records);
+            } catch (IOException | RuntimeException e) {
+                spool(records);
+                throw e;
+            }
+        }
+
+        private void await(Result result) throws InterruptedException {
+            try {
+                result.succeeded(records.size(), future.get());
+            } catch (ExecutionException e) {
+                result.failed(records.size(), e.getCause());
+            }
+        }
+
+        private void abandon() {
+            if (claimed.compareAndSet(false, true)) {
+                spool(records);
+            }
+            if (future != null) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * Outcome of the chunks of a write.
+     */
+    public static final class Result {
+
+        private int chunks;
+        private int failedChunks;
+        private int writtenPoints;
+        private int failedPoints;
+        private long bytes;
+        private long sentBytes;
+        private Throwable failure;
+        private final List<BatchBisector.QuarantinedPoint> quarantined = new ArrayList<>();
+
+        /**
+         * Starts an empty outcome, to {@link #add} those of several writes to the same target.
+         */
+        public Result() {
+            this(0);
+        }
+
+        private Result(int chunks) {
+            this.chunks = chunks;
+        }
+
+        /**
+         * Adds the outcome of another write.
+         */
+        public void add(Result other) {
+            chunks += other.chunks;
+            failedChunks += other.failedChunks;
+            writtenPoints += other.writtenPoints;
+            failedPoints += other.failedPoints;
+            bytes += other.bytes;
+            sentBytes += other.sentBytes;
+            quarantined.addAll(other.quarantined);
+            if (failure == null) {
+                failure = other.failure;
+            } else if (other.failure != null) {
+                failure.addSuppressed(other.failure);
+            }
+        }
+
+        private void succeeded(int points, BatchBisector.Outcome outcome) {
+            writtenPoints += points - outcome.getQuarantined().size();
+            bytes += outcome.getBytes();
+            sentBytes += outcome.getSentBytes();
+            quarantined.addAll(outcome.getQuarantined());
+        }
+
+        private void failed(int points, Throwable cause) {
+            failedChunks++;
+            failedPoints += points;
+            if (failure == null) {
+                failure = cause;
+            } else {
+                failure.addSuppressed(cause);
+            }
+        }
+
+        public int getChunks() {
+            return chunks;
+        }
+
+        public int getFailedChunks() {
+            return failedChunks;
+        }
+
+        public int getWrittenPoints() {
+            return writtenPoints;
+        }
+
+        public int getFailedPoints() {
+            return failedPoints;
+        }
+
+        /**
+         * @return size of the line protocol written by the successful chunks
+         */
+        public long getBytes() {
+            return bytes;
+        }
+
+        /**
+         * @return size of the request bodies sent by the successful chunks, after compression
+         */
+        public long getSentBytes() {
+            return sentBytes;
+        }
+
+        /**
+         * @return the records InfluxDB rejected as bad data
+         */
+        public List<BatchBisector.QuarantinedPoint> getQuarantined() {
+            return quarantined;
+        }
+
+        /**
+         * @return the failure of the first failed chunk, with those of later chunks suppressed, or {@code null}
+         */
+        public Throwable getFailure() {
+            return failure;
+        }
+    }
+}
@@ -0,0 +1,306 @@
+package jenkinsci.plugins.influxdb.write;
+
+import hudson.init.Terminator;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import hudson.util.Secret;
+import jenkins.util.SystemProperties;
+import jenkinsci.plugins.influxdb.models.Target;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Merges the records of many builds writing to the same destination into a single write.
+ * <p>
+ * Records are held back until either enough points or bytes are pending, or the first pending
+ * record has waited for the linger time. Records of a failed flush go to the {@link WriteSpool}.
+ * Targets share a batcher only if they write the same way, with the same credentials and limits,
+ * as the records of a batcher are written with the target which created it.
+ * <p>
+ * The batcher is tuned with system properties:
+ * <ul>
+ * <li>{@code jenkinsci.plugins.influxdb.write.CoalescingBatcher.maxPoints} - flush once this many points are pending (default 5000)</li>
+ * <li>{@code jenkinsci.plugins.influxdb.write.CoalescingBatcher.maxKilobytes} - flush once this much line protocol is pending (default 1024)</li>
+ * <li>{@code jenkinsci.plugins.influxdb.write.CoalescingBatcher.lingerMillis} - maximum time a point is held back (default 500)</li>
+ * <li>{@code jenkinsci.plugins.influxdb.write.CoalescingBatcher.flushThreads} - threads writing lingering points (default 2)</li>
+ * </ul>
+ * Lingering points are written by threads of the batchers' own, as writes block on the network
+ * and may wait for retries, which must not hold up the periodic work of Jenkins.
+ */
+public class CoalescingBatcher {
+
+    /**
+     * The logger.
+     **/
+    private static final Logger logger = Logger.getLogger(CoalescingBatcher.class.getName());
+
+    private static final int MAX_POINTS = SystemProperties.getInteger(CoalescingBatcher.class.getName() + ".maxPoints", 5000);
+
+    private static final long MAX_BYTES = 1024L * SystemProperties.getInteger(CoalescingBatcher.class.getName() + ".maxKilobytes", 1024);
+
+    private static final long LINGER_MILLIS = SystemProperties.getInteger(CoalescingBatcher.class.getName() + ".lingerMillis", 500);
+
+    private static final int FLUSH_THREADS = SystemProperties.getInteger(CoalescingBatcher.class.getName() + ".flushThreads", 2);
+
+    private static final ScheduledThreadPoolExecutor FLUSHER = createFlusher();
+
+    private static final ConcurrentMap<WriteKey, CoalescingBatcher> batchers = new ConcurrentHashMap<>();
+
+    private final String name;
+    private final int maxPoints;
+    private final long maxBytes;
+    private final long lingerMillis;
+    private final ScheduledExecutorService scheduler;
+    private final WriteSpool.RecordWriter writer;
+    private final WriteSpool.RecordWriter fallback;
+
+    private List<String> pending = new ArrayList<>();
+    private long pendingBytes;
+    private ScheduledFuture<?> lingerTask;
+
+    private final AtomicLong flushCount = new AtomicLong();
+    private final AtomicLong flushedPoints = new AtomicLong();
+    private volatile int lastFlushPoints;
+
+    CoalescingBatcher(String name, int maxPoints, long maxBytes, long lingerMillis, ScheduledExecutorService scheduler,
+                      WriteSpool.RecordWriter writer, WriteSpool.RecordWriter fallback) {
+        this.name = name;
+        this.maxPoints = Math.max(1, maxPoints);
+        this.maxBytes = maxBytes;
+        this.lingerMillis = lingerMillis;
+        this.scheduler = scheduler;
+        this.writer = writer;
+        this.fallback = fallback;
+    }
+
+    /**
+     * Returns the batcher of the destination the given target writes to, and of the way it writes.
+     */
+    @Nonnull
+    public static CoalescingBatcher forTarget(@Nonnull Target target) {
+        return batchers.computeIfAbsent(new WriteKey(target), key -> new CoalescingBatcher(
+                target.getDescription(), MAX_POINTS, MAX_BYTES, LINGER_MILLIS, FLUSHER,
+                records -> ChunkedWrite.writeInOrder(target, records),
+                records -> WriteSpool.forTarget(target).append(records)));
+    }
+
+    /**
+     * Flushes and forgets all batchers, for example after the targets have been reconfigured.
+     */
+    public static void flushAll() {
+        for (CoalescingBatcher batcher : detachAll()) {
+            batcher.flush();
+        }
+    }
+
+    /**
+     * Forgets all batchers right away, so that new records go to new ones, but leaves flushing
+     * them to a background thread, for example to not hold up saving the configuration.
+     */
+    public static void flushAllAsync() {
+        List<CoalescingBatcher> detached = detachAll();
+        if (detached.isEmpty()) {
+            return;
+        }
+        Runnable flush = () -> detached.forEach(CoalescingBatcher::flush);
+        try {
+            FLUSHER.execute(flush);
+        } catch (RejectedExecutionException e) {
+            // Shutting down
+            flush.run();
+        }
+    }
+
+    private static List<CoalescingBatcher> detachAll() {
+        List<CoalescingBatcher> detached = new ArrayList<>();
+        for (WriteKey key : batchers.keySet()) {
+            CoalescingBatcher batcher = batchers.remove(key);
+            if (batcher != null) {
+                detached.add(batcher);
+            }
+        }
+        return detached;
+    }
+
+    @Terminator(requires = PublicationQueue.STOPPED)
+    public static void terminate() throws InterruptedException {
+        flushAll();
+        FLUSHER.shutdown();
+        if (!FLUSHER.awaitTermination(10, TimeUnit.SECONDS)) {
+            logger.log(Level.WARNING, "Abandoning InfluxDB batch flushes still running");
+            FLUSHER.shutdownNow();
+        }
+    }
+
+    private static ScheduledThreadPoolExecutor createFlusher() {
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(Math.max(1, FLUSH_THREADS),
+                new NamingThreadFactory(new DaemonThreadFactory(), "InfluxDB batch flush"));
+        executor.setRemoveOnCancelPolicy(true);
+        // Points still lingering at shutdown are flushed by terminate() instead
+        executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        return executor;
+    }
+
+    /**
+     * Adds records to the next write. Flushes right away in the calling thread if this makes the
+     * pending records exceed the point or byte limit.
+     */
+    public void add(List<String> records) {
+        List<String> toFlush = null;
+        synchronized (this) {
+            for (String record : records) {
+                pending.add(record);
+                // Characters rather than encoded bytes, which is close enough for line protocol
+                pendingBytes += record.length() + 1;
+            }
+            if (pending.size() >= maxPoints || pendingBytes >= maxBytes) {
+                toFlush = drain();
+            } else if (lingerTask == null && !pending.isEmpty()) {
+                try {
+                    lingerTask = scheduler.schedule(this::flush, lingerMillis, TimeUnit.MILLISECONDS);
+                } catch (RejectedExecutionException e) {
+                    // Shutting down, there is no one left to flush later
+                    toFlush = drain();
+                }
+            }
+        }
+        if (toFlush != null) {
+            write(toFlush);
+        }
+    }
+
+    /**
+     * Writes all pending records.
+     */
+    public void flush() {
+        List<String> toFlush;
+        synchronized (this) {
+            toFlush = drain();
+        }
+        if (!toFlush.isEmpty()) {
+            write(toFlush);
+        }
+    }
+
+    /**
+     * @return number of flushes so far
+     */
+    public long getFlushCount() {
+        return flushCount.get();
+    }
+
+    /**
+     * @return number of points written by all flushes so far
+     */
+    public long getFlushedPoints() {
+        return flushedPoints.get();
+    }
+
+    /**
+     * @return number of points carried by the latest flush
+     */
+    public int getLastFlushPoints() {
+        return lastFlushPoints;
+    }
+
+    private List<String> drain() {
+        if (lingerTask != null) {
+            lingerTask.cancel(false);
+            lingerTask = null;
+        }
+        List<String> drained = pending;
+        pending = new ArrayList<>();
+        pendingBytes = 0;
+        return drained;
+    }
+
+    private void write(List<String> records) {
+        for (int from = 0; from < records.size(); from += maxPoints) {
+            List<String> batch = records.subList(from, Math.min(records.size(), from + maxPoints));
+            flushCount.incrementAndGet();
+            flushedPoints.addAndGet(batch.size());
+            lastFlushPoints = batch.size();
+            try {
+                writer.write(batch);
+                logger.log(Level.FINE, "Flushed {0} point(s) to target ''{1}''", new Object[]{batch.size(), name});
+            } catch (Exception e) {
+                logger.log(Level.WARNING, "Could not flush " + batch.size() + " point(s) to target '" + name + "'. Spooling them.", e);
+                try {
+                    fallback.write(batch);
+                } catch (Exception ex) {
+                    logger.log(Level.WARNING, "Could not spool points for target '" + name + "'", ex);
+                }
+            }
+        }
+    }
+
+    /**
+     * The parts of a target which determine where and how its records are written.
+     */
+    private static final class WriteKey {
+
+        private final String url;
+        private final String username;
+        private final Secret password;
+        private final boolean usingJenkinsProxy;
+        private final String database;
+        private final String retentionPolicy;
+        private final int compressionLevel;
+        private final long compressionThreshold;
+        private final int maxPointsPerRequest;
+        private final int maxKilobytesPerRequest;
+
+        private WriteKey(Target target) {
+            this.url = target.getUrl();
+            this.username = target.getUsername();
+            this.password = target.getPassword();
+            this.usingJenkinsProxy = target.isUsingJenkinsProxy();
+            this.database = target.getDatabase();
+            this.retentionPolicy = target.getRetentionPolicy();
+            this.compressionLevel = target.getCompressionLevel();
+            this.compressionThreshold = target.getCompressionThreshold();
+            this.maxPointsPerRequest = target.getMaxPointsPerRequest();
+            this.maxKilobytesPerRequest = target.getMaxKilobytesPerRequest();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            WriteKey that = (WriteKey) o;
+            return usingJenkinsProxy == that.usingJenkinsProxy
+                    && compressionLevel == that.compressionLevel
+                    && compressionThreshold == that.compressionThreshold
+                    && maxPointsPerRequest == that.maxPointsPerRequest
+                    && maxKilobytesPerRequest == that.maxKilobytesPerRequest
+                    && Objects.equals(url, that.url)
+                    && Objects.equals(username, that.username)
+                    && Objects.equals(password, that.password)
+                    && Objects.equals(database, that.database)
+                    && Objects.equals(retentionPolicy, that.retentionPolicy);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(url, username, password, usingJenkinsProxy, database, retentionPolicy, compressionLevel,
+                    compressionThreshold, maxPointsPerRequest, maxKilobytesPerRequest);
+        }
+    }
+}
@@ -0,0 +1,298 @@
+package jenkinsci.plugins.influxdb.write;
+
+import org.influxdb.dto.Point;
+
+import java.text.NumberFormat;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encodes points to line protocol without the intermediate maps and boxed values of
+ * {@link org.influxdb.dto.Point}. The output is identical to {@link org.influxdb.dto.Point#lineProtocol()}:
+ * tags and fields are sorted by key, later values replace earlier ones of the same key, empty tags
+ * and non-finite fields are left out.
+ * <p>
+ * An encoder is reused for many points, but it is not thread safe:
+ * <pre>{@code
+ * encoder.measurement("jenkins_data").tag("project_name", name).field("build_number", 42).time(nanos);
+ * encoder.appendTo(buffer);
+ * }</pre>
+ */
+public final class LineProtocolEncoder {
+
+    private static final int INTEGER = 0;
+    private static final int FLOAT = 1;
+    private static final int BOOLEAN = 2;
+    private static final int STRING = 3;
+
+    /**
+     * Formats floating point fields the same way {@link org.influxdb.dto.Point} does.
+     */
+    private static final ThreadLocal<NumberFormat> NUMBER_FORMAT = ThreadLocal.withInitial(() -> {
+        NumberFormat format = NumberFormat.getInstance(Locale.ENGLISH);
+        format.setMaximumFractionDigits(340);
+        format.setGroupingUsed(false);
+        format.setMinimumFractionDigits(1);
+        return format;
+    });
+
+    private String measurement;
+
+    private String[] tagKeys = new String[8];
+    private String[] tagValues = new String[8];
+    private int tagCount;
+
+    private String[] fieldKeys = new String[16];
+    private int[] fieldTypes = new int[16];
+    private long[] longValues = new long[16];
+    private double[] doubleValues = new double[16];
+    private String[] stringValues = new String[16];
+    private int fieldCount;
+
+    private boolean hasTime;
+    private long time;
+
+    private final StringBuilder buffer = new StringBuilder(256);
+
+    /**
+     * Starts a new point, forgetting everything about the previous one.
+     */
+    public LineProtocolEncoder measurement(String measurement) {
+        this.measurement = measurement;
+        Arrays.fill(tagValues, 0, tagCount, null);
+        Arrays.fill(stringValues, 0, fieldCount, null);
+        tagCount = 0;
+        fieldCount = 0;
+        hasTime = false;
+        return this;
+    }
+
+    public LineProtocolEncoder tag(String key, String value) {
+        if (key.isEmpty() || value == null || value.isEmpty()) {
+            return this;
+        }
+        int index = indexOf(tagKeys, tagCount, key);
+        if (index < 0) {
+            if (tagCount == tagKeys.length) {
+                tagKeys = Arrays.copyOf(tagKeys, tagCount * 2);
+                tagValues = Arrays.copyOf(tagValues, tagCount * 2);
+            }
+            index = tagCount++;
+            tagKeys[index] = key;
+        }
+        tagValues[index] = value;
+        return this;
+    }
+
+    public LineProtocolEncoder field(String key, long value) {
+        longValues[fieldIndex(key, INTEGER)] = value;
+        return this;
+    }
+
+    public LineProtocolEncoder field(String key, double value) {
+        doubleValues[fieldIndex(key, FLOAT)] = value;
+        return this;
+    }
+
+    public LineProtocolEncoder field(String key, boolean value) {
+        longValues[fieldIndex(key, BOOLEAN)] = value ? 1 : 0;
+        return this;
+    }
+
+    public LineProtocolEncoder field(String key, String value) {
+        if (value != null) {
+            stringValues[fieldIndex(key, STRING)] = value;
+        }
+        return this;
+    }
+
+    /**
+     * @param nanos timestamp of the point in nanoseconds
+     */
+    public LineProtocolEncoder time(long nanos) {
+        this.hasTime = true;
+        this.time = nanos;
+        return this;
+    }
+
+    /**
+     * Appends the current point to a buffer, without a trailing newline.
+     */
+    public void appendTo(StringBuilder sb) {
+        sortByKey(tagKeys, tagValues, tagCount);
+        sortFields();
+
+        appendKey(sb, measurement);
+        for (int i = 0; i < tagCount; i++) {
+            sb.append(',');
+            appendKey(sb, tagKeys[i]);
+            sb.append('=');
+            appendKey(sb, tagValues[i]);
+        }
+        sb.append(' ');
+
+        boolean first = true;
+        for (int i = 0; i < fieldCount; i++) {
+            if (fieldTypes[i] == FLOAT && (Double.isNaN(doubleValues[i]) || Double.isInfinite(doubleValues[i]))) {
+                continue;
+            }
+            if (!first) {
+                sb.append(',');
+            }
+            first = false;
+            appendKey(sb, fieldKeys[i]);
+            sb.append('=');
+            switch (fieldTypes[i]) {
+                case INTEGER:
+                    sb.append(longValues[i]).append('i');
+                    break;
+                case FLOAT:
+                    sb.append(NUMBER_FORMAT.get().format(doubleValues[i]));
+                    break;
+                case BOOLEAN:
+                    sb.append(longValues[i] != 0);
+                    break;
+                default:
+                    sb.append('"');
+                    appendStringField(sb, stringValues[i]);
+                    sb.append('"');
+                    break;
+            }
+        }
+
+        if (hasTime) {
+            sb.append(' ').append(time);
+        }
+    }
+
+    /**
+     * @return the current point as a line protocol record
+     */
+    public String encode() {
+        buffer.setLength(0);
+        appendTo(buffer);
+        return buffer.toString();
+    }
+
+    /**
+     * @return the current point as a {@link Point}, for callers which still need one
+     */
+    public Point toPoint() {
+        Point.Builder builder = Point.measurement(measurement);
+        for (int i = 0; i < tagCount; i++) {
+            builder.tag(tagKeys[i], tagValues[i]);
+        }
+        for (int i = 0; i < fieldCount; i++) {
+            switch (fieldTypes[i]) {
+                case INTEGER:
+                    builder.addField(fieldKeys[i], longValues[i]);
+                    break;
+                case FLOAT:
+                    builder.addField(fieldKeys[i], doubleValues[i]);
+                    break;
+                case BOOLEAN:
+                    builder.addField(fieldKeys[i], longValues[i] != 0);
+                    break;
+                default:
+                    builder.addField(fieldKeys[i], stringValues[i]);
+                    break;
+            }
+        }
+        if (hasTime) {
+            builder.time(time, TimeUnit.NANOSECONDS);
+        }
+        return builder.build();
+    }
+
+    private int fieldIndex(String key, int type) {
+        int index = indexOf(fieldKeys, fieldCount, key);
+        if (index < 0) {
+            if (fieldCount == fieldKeys.length) {
+                int capacity = fieldCount * 2;
+                fieldKeys = Arrays.copyOf(fieldKeys, capacity);
+                fieldTypes = Arrays.copyOf(fieldTypes, capacity);
+                longValues = Arrays.copyOf(longValues, capacity);
+                doubleValues = Arrays.copyOf(doubleValues, capacity);
+                stringValues = Arrays.copyOf(stringValues, capacity);
+            }
+            index = fieldCount++;
+            fieldKeys[index] = key;
+        }
+        fieldTypes[index] = type;
+        stringValues[index] = null;
+        return index;
+    }
+
+    private static int indexOf(String[] keys, int count, String key) {
+        for (int i = 0; i < count; i++) {
+            if (keys[i].equals(key)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Insertion sort, points rarely have more than a dozen tags or fields.
+     */
+    private static void sortByKey(String[] keys, String[] values, int count) {
+        for (int i = 1; i < count; i++) {
+            String key = keys[i];
+            String value = values[i];
+            int j = i - 1;
+            for (; j >= 0 && keys[j].compareTo(key) > 0; j--) {
+                keys[j + 1] = keys[j];
+                values[j + 1] = values[j];
+            }
+            keys[j + 1] = key;
+            values[j + 1] = value;
+        }
+    }
+
+    private void sortFields() {
+        for (int i = 1; i < fieldCount; i++) {
+            String key = fieldKeys[i];
+            int type = fieldTypes[i];
+            long longValue = longValues[i];
+            double doubleValue = doubleValues[i];
+            String stringValue = stringValues[i];
+            int j = i - 1;
+            for (; j >= 0 && fieldKeys[j].compareTo(key) > 0; j--) {
+                fieldKeys[j + 1] = fieldKeys[j];
+                fieldTypes[j + 1] = fieldTypes[j];
+                longValues[j + 1] = longValues[j];
+                doubleValues[j + 1] = doubleValues[j];
+                stringValues[j + 1] = stringValues[j];
+            }
+            fieldKeys[j + 1] = key;
+            fieldTypes[j + 1] = type;
+            longValues[j + 1] = longValue;
+            doubleValues[j + 1] = doubleValue;
+            stringValues[j + 1] = stringValue;
+        }
+    }
+
+    /**
+     * Escapes measurements, tag keys, tag values and field keys.
+     */
+    static void appendKey(StringBuilder sb, String key) {
+        for (int i = 0; i < key.length(); i++) {
+            char c = key.charAt(i);
+            if (c == ' ' || c == ',' || c == '=') {
+                sb.append('\\');
+            }
+            sb.append(c);
+        }
+    }
+
+    static void appendStringField(StringBuilder sb, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' || c == '"') {
+                sb.append('\\');
+            }
+            sb.append(c);
+        }
+    }
+}
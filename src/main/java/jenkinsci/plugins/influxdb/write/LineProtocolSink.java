@@ -0,0 +1,68 @@
+package jenkinsci.plugins.influxdb.write;
+
+import jenkinsci.plugins.influxdb.generators.PointSink;
+import org.influxdb.dto.Point;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Serialises points to line protocol as soon as they are generated and passes the records on in
+ * chunks, so that the points of a report never pile up in memory. Points from a
+ * {@link LineProtocolEncoder} are encoded straight into records, without building a {@link Point}.
+ */
+public class LineProtocolSink implements PointSink {
+
+    private final int chunkSize;
+    private final Consumer<List<String>> consumer;
+
+    private List<String> chunk;
+    private int count;
+
+    /**
+     * @param chunkSize number of records handed over at once
+     * @param consumer  receives the chunks of records
+     */
+    public LineProtocolSink(int chunkSize, Consumer<List<String>> consumer) {
+        this.chunkSize = Math.max(1, chunkSize);
+        this.consumer = consumer;
+        this.chunk = new ArrayList<>(this.chunkSize);
+    }
+
+    @Override
+    public void add(Point point) {
+        addRecord(point.lineProtocol());
+    }
+
+    @Override
+    public void add(LineProtocolEncoder point) {
+        addRecord(point.encode());
+    }
+
+    private void addRecord(String record) {
+        chunk.add(record);
+        count++;
+        if (chunk.size() >= chunkSize) {
+            flush();
+        }
+    }
+
+    /**
+     * Hands over the records not passed on yet.
+     */
+    public void flush() {
+        if (!chunk.isEmpty()) {
+            List<String> full = chunk;
+            chunk = new ArrayList<>(chunkSize);
+            consumer.accept(full);
+        }
+    }
+
+    /**
+     * @return number of points received so far
+     */
+    public int getCount() {
+        return count;
+    }
+}
@@ -0,0 +1,177 @@
+package jenkinsci.plugins.influxdb.write;
+
+import hudson.init.Terminator;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import jenkins.util.SystemProperties;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Bounded queue with its own worker pool which performs publications in the background,
+ * so that a slow or unreachable InfluxDB never stalls the completion of a build.
+ * <p>
+ * The queue is tuned with system properties:
+ * <ul>
+ * <li>{@code jenkinsci.plugins.influxdb.write.PublicationQueue.capacity} - maximum number of pending publications (default 1000)</li>
+ * <li>{@code jenkinsci.plugins.influxdb.write.PublicationQueue.workers} - number of worker threads (default 2)</li>
+ * <li>{@code jenkinsci.plugins.influxdb.write.PublicationQueue.fullPolicy} - one of {@link FullPolicy} (default {@code DROP_OLDEST})</li>
+ * </ul>
+ */
+public class PublicationQueue {
+
+    /**
+     * The logger.
+     **/
+    private static final Logger logger = Logger.getLogger(PublicationQueue.class.getName());
+
+    private static final int CAPACITY = SystemProperties.getInteger(PublicationQueue.class.getName() + ".capacity", 1000);
+
+    private static final int WORKERS = SystemProperties.getInteger(PublicationQueue.class.getName() + ".workers", 2);
+
+    private static final FullPolicy FULL_POLICY = FullPolicy.fromString(
+            SystemProperties.getString(PublicationQueue.class.getName() + ".fullPolicy"));
+
+    private static final PublicationQueue INSTANCE = new PublicationQueue(CAPACITY, WORKERS, FULL_POLICY);
+
+    /**
+     * Milestone attained on shutdown once no more publications are run.
+     */
+    static final String STOPPED = "influxdb-publication-queue-stopped";
+
+    /**
+     * What happens to a publication submitted while the queue is full.
+     */
+    public enum FullPolicy {
+        /**
+         * Wait until there is room in the queue. This holds up the build thread, so it is only
+         * used if configured explicitly.
+         */
+        BLOCK,
+        /**
+         * Discard the oldest pending publication to make room for the new one.
+         */
+        DROP_OLDEST,
+        /**
+         * Discard the publication being submitted.
+         */
+        DROP_NEWEST;
+
+        static FullPolicy fromString(String value) {
+            if (value == null) {
+                return DROP_OLDEST;
+            }
+            try {
+                return valueOf(value.trim().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                logger.log(Level.WARNING, "Unknown publication queue policy ''{0}'', using {1}", new Object[]{value, DROP_OLDEST});
+                return DROP_OLDEST;
+            }
+        }
+    }
+
+    private final ThreadPoolExecutor executor;
+    private final FullPolicy fullPolicy;
+    private final AtomicLong dropped = new AtomicLong();
+
+    PublicationQueue(int capacity, int workers, FullPolicy fullPolicy) {
+        this.fullPolicy = fullPolicy;
+        this.executor = new ThreadPoolExecutor(workers, workers, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, capacity)),
+                new NamingThreadFactory(new DaemonThreadFactory(), "InfluxDB publication"),
+                createRejectionHandler());
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    public static PublicationQueue getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Submits a publication to be run by one of the workers.
+     *
+     * @param publication the publication to run
+     * @return {@code false} if the publication was dropped because the queue was full
+     */
+    public boolean submit(Runnable publication) {
+        try {
+            executor.execute(() -> {
+                try {
+                    publication.run();
+                } catch (RuntimeException e) {
+                    logger.log(Level.WARNING, "Background publication to InfluxDB failed", e);
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            long count = dropped.incrementAndGet();
+            logger.log(Level.WARNING, "Dropping publication to InfluxDB: {0}, {1} dropped so far", new Object[]{e.getMessage(), count});
+            return false;
+        }
+    }
+
+    /**
+     * @return number of publications dropped because the queue was full
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * @return number of publications waiting for a worker
+     */
+    public int getPendingCount() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * Stops accepting publications and waits a moment for the pending ones to complete.
+     */
+    void shutdown(long timeout, TimeUnit unit) throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(timeout, unit)) {
+            logger.log(Level.WARNING, "Abandoning {0} pending InfluxDB publication(s)", executor.getQueue().size());
+            executor.shutdownNow();
+        }
+    }
+
+    @Terminator(attains = STOPPED)
+    public static void terminate() throws InterruptedException {
+        INSTANCE.shutdown(10, TimeUnit.SECONDS);
+    }
+
+    private RejectedExecutionHandler createRejectionHandler() {
+        return (task, pool) -> {
+            if (pool.isShutdown()) {
+                throw new RejectedExecutionException("publication queue has been shut down");
+            }
+            switch (fullPolicy) {
+                case DROP_OLDEST:
+                    if (pool.getQueue().poll() != null) {
+                        long count = dropped.incrementAndGet();
+                        logger.log(Level.WARNING, "Publication queue is full. Dropped the oldest pending publication, {0} dropped so far.", count);
+                    }
+                    pool.execute(task);
+                    break;
+                case DROP_NEWEST:
+                    throw new RejectedExecutionException("publication queue is full");
+                case BLOCK:
+                default:
+                    try {
+                        pool.getQueue().put(task);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new RejectedExecutionException("interrupted while waiting for room in the publication queue");
+                    }
+                    break;
+            }
+        };
+    }
+}
@@ -0,0 +1,59 @@
+package jenkinsci.plugins.influxdb.write;
+
+import hudson.Extension;
+import hudson.model.AsyncPeriodicWork;
+import hudson.model.TaskListener;
+import jenkins.util.SystemProperties;
+import jenkinsci.plugins.influxdb.InfluxDbGlobalConfig;
+import jenkinsci.plugins.influxdb.client.InfluxDbClientRegistry;
+import jenkinsci.plugins.influxdb.models.Target;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically replays the {@link WriteSpool} of every configured target.
+ * A target is considered healthy again as soon as the first replayed batch is accepted.
+ */
+@Extension
+public class SpoolReplayWork extends AsyncPeriodicWork {
+
+    private static final int RECURRENCE_SECONDS = SystemProperties.getInteger(SpoolReplayWork.class.getName() + ".recurrenceSeconds", 30);
+
+    private static final int BATCH_SIZE = 5000;
+
+    public SpoolReplayWork() {
+        super("InfluxDB spool replay");
+    }
+
+    @Override
+    public long getRecurrencePeriod() {
+        return TimeUnit.SECONDS.toMillis(RECURRENCE_SECONDS);
+    }
+
+    @Override
+    protected void execute(TaskListener listener) {
+        for (Target target : InfluxDbGlobalConfig.getInstance().getTargets()) {
+            WriteSpool spool = WriteSpool.forTarget(target);
+            if (spool.isEmpty()) {
+                continue;
+            }
+            try {
+                // Fail early on an invalid URL rather than once per batch
+                InfluxDbClientRegistry.getInstance().getWriter(target);
+                int replayed = spool.replay(records -> ChunkedWrite.writeInOrder(target, records), BATCH_SIZE);
+                listener.getLogger().println(String.format("Replayed %d spooled record(s) to target '%s', %d byte(s) left in spool",
+                        replayed, target.getDescription(), spool.getSize()));
+                if (Thread.currentThread().isInterrupted()) {
+                    return;
+                }
+            } catch (MalformedURLException e) {
+                listener.getLogger().println(String.format("Skipping spool of target '%s' due to invalid URL '%s'",
+                        target.getDescription(), target.getUrl()));
+            } catch (IOException e) {
+                e.printStackTrace(listener.error("Failed to replay spool of target '%s'", target.getDescription()));
+            }
+        }
+    }
+}
@@ -0,0 +1,349 @@
+package jenkinsci.plugins.influxdb.write;
+
+import hudson.Util;
+import jenkins.model.Jenkins;
+import jenkins.util.SystemProperties;
+import jenkinsci.plugins.influxdb.models.Target;
+
+import javax.annotation.Nonnull;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Append-only spool on disk which keeps the line protocol records of failed writes until they
+ * can be replayed to their target.
+ * <p>
+ * Every destination (URL, database and retention policy) has its own directory below
+ * {@code JENKINS_HOME/influxdb-spool}, holding numbered segment files of length-prefixed records.
+ * New records are always appended to the newest segment; replay consumes the segments in order
+ * and deletes them once delivered. The size of a spool is capped, dropping the oldest segments
+ * first, so that a long outage cannot fill the disk.
+ * <p>
+ * Replay claims a segment by renaming it before reading it, under the same lock the size cap is
+ * enforced with. A claimed segment is never dropped, so it is neither replayed and dropped at
+ * once nor deleted while being read.
+ * <p>
+ * The spool is tuned with system properties:
+ * <ul>
+ * <li>{@code jenkinsci.plugins.influxdb.write.WriteSpool.maxMegabytes} - maximum size per destination, {@code 0} disables spooling (default 256)</li>
+ * <li>{@code jenkinsci.plugins.influxdb.write.WriteSpool.segmentMegabytes} - size at which a new segment is started (default 8)</li>
+ * </ul>
+ */
+public class WriteSpool {
+
+    /**
+     * The logger.
+     **/
+    private static final Logger logger = Logger.getLogger(WriteSpool.class.getName());
+
+    private static final long MEGABYTE = 1024L * 1024L;
+
+    private static final long MAX_BYTES = MEGABYTE * SystemProperties.getInteger(WriteSpool.class.getName() + ".maxMegabytes", 256);
+
+    private static final long SEGMENT_BYTES = MEGABYTE * SystemProperties.getInteger(WriteSpool.class.getName() + ".segmentMegabytes", 8);
+
+    private static final String SEGMENT_SUFFIX = ".spool";
+
+    private static final String CLAIMED_SUFFIX = SEGMENT_SUFFIX + ".replaying";
+
+    private static final ConcurrentMap<String, WriteSpool> spools = new ConcurrentHashMap<>();
+
+    /**
+     * Writes a batch of records to a target.
+     */
+    @FunctionalInterface
+    public interface RecordWriter {
+
+        void write(List<String> records) throws Exception;
+    }
+
+    private final File directory;
+    private final long maxBytes;
+    private final long segmentBytes;
+
+    /**
+     * Held for the whole of a replay, so that replays of the same spool do not overlap.
+     */
+    private final Object replayLock = new Object();
+
+    private File activeSegment;
+    private FileOutputStream activeFile;
+    private DataOutputStream activeOut;
+
+    WriteSpool(File directory, long maxBytes, long segmentBytes) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        this.segmentBytes = segmentBytes;
+    }
+
+    /**
+     * Returns the spool of the destination the given target writes to.
+     */
+    @Nonnull
+    public static WriteSpool forTarget(@Nonnull Target target) {
+        return spools.computeIfAbsent(spoolId(target), id -> new WriteSpool(
+                new File(new File(Jenkins.getInstance().getRootDir(), "influxdb-spool"), id), MAX_BYTES, SEGMENT_BYTES));
+    }
+
+    static String spoolId(Target target) {
+        return Util.getDigestOf(target.getUrl() + '\n' + target.getDatabase() + '\n' + target.getRetentionPolicy());
+    }
+
+    /**
+     * Appends records to the spool. The data is forced to disk once per call.
+     *
+     * @param records line protocol records to keep
+     * @return {@code false} if spooling is disabled
+     */
+    public synchronized boolean append(List<String> records) throws IOException {
+        if (maxBytes <= 0) {
+            return false;
+        }
+        if (activeOut == null || activeSegment.length() >= segmentBytes) {
+            openSegment();
+        }
+        for (String record : records) {
+            byte[] bytes = record.getBytes(StandardCharsets.UTF_8);
+            activeOut.writeInt(bytes.length);
+            activeOut.write(bytes);
+        }
+        activeOut.flush();
+        activeFile.getChannel().force(false);
+        enforceSizeCap();
+        return true;
+    }
+
+    /**
+     * Replays the spooled records in order, in batches of at most {@code batchSize} records.
+     * Replay stops at the first batch that cannot be written; the records delivered so far are
+     * compacted away so they are not sent again. If the writer is interrupted, replay stops the
+     * same way and the thread is left interrupted.
+     *
+     * @return number of records delivered
+     */
+    public int replay(RecordWriter writer, int batchSize) throws IOException {
+        synchronized (replayLock) {
+            int replayed = 0;
+            for (File segment : sealSegments()) {
+                File claimed = claim(segment);
+                if (claimed == null) {
+                    // Dropped by the size cap in the meantime
+                    continue;
+                }
+                List<String> records = readSegment(claimed);
+                int delivered = 0;
+                try {
+                    while (delivered < records.size()) {
+                        List<String> batch = records.subList(delivered, Math.min(records.size(), delivered + batchSize));
+                        writer.write(batch);
+                        delivered += batch.size();
+                    }
+                } catch (InterruptedIOException | InterruptedException e) {
+                    logger.log(Level.FINE, "Replay of {0} interrupted after {1} record(s)", new Object[]{segment, delivered});
+                    release(claimed, segment, records.subList(delivered, records.size()), delivered > 0);
+                    Thread.currentThread().interrupt();
+                    return replayed + delivered;
+                } catch (Exception e) {
+                    logger.log(Level.FINE, "Replay of " + segment + " stopped after " + delivered + " record(s)", e);
+                    release(claimed, segment, records.subList(delivered, records.size()), delivered > 0);
+                    return replayed + delivered;
+                }
+                delete(claimed);
+                replayed += delivered;
+            }
+            return replayed;
+        }
+    }
+
+    public synchronized boolean isEmpty() {
+        return listSegments().isEmpty() && listFiles(CLAIMED_SUFFIX).isEmpty();
+    }
+
+    /**
+     * @return size of the spool on disk in bytes
+     */
+    public synchronized long getSize() {
+        long size = 0;
+        for (File segment : listSegments()) {
+            size += segment.length();
+        }
+        for (File segment : listFiles(CLAIMED_SUFFIX)) {
+            size += segment.length();
+        }
+        return size;
+    }
+
+    /**
+     * Closes the active segment so that every existing segment can be replayed, while new records
+     * go to a fresh segment.
+     */
+    private synchronized List<File> sealSegments() throws IOException {
+        closeSegment();
+        // Segments left claimed by a replay which did not complete, for example because of a crash
+        for (File claimed : listFiles(CLAIMED_SUFFIX)) {
+            String name = claimed.getName();
+            move(claimed, new File(directory, name.substring(0, name.length() - CLAIMED_SUFFIX.length()) + SEGMENT_SUFFIX));
+        }
+        return listSegments();
+    }
+
+    /**
+     * @return the claimed segment, or {@code null} if it no longer exists
+     */
+    private synchronized File claim(File segment) throws IOException {
+        if (!segment.isFile()) {
+            return null;
+        }
+        File claimed = new File(directory, segment.getName().substring(0,
+                segment.getName().length() - SEGMENT_SUFFIX.length()) + CLAIMED_SUFFIX);
+        move(segment, claimed);
+        return claimed;
+    }
+
+    /**
+     * Returns the records of a claimed segment which were not delivered to the spool.
+     */
+    private synchronized void release(File claimed, File segment, List<String> remaining, boolean compact) throws IOException {
+        if (compact) {
+            compact(claimed, remaining);
+        }
+        move(claimed, segment);
+    }
+
+    private synchronized void compact(File segment, List<String> remaining) throws IOException {
+        File compacted = new File(directory, segment.getName() + ".tmp");
+        try (FileOutputStream file = new FileOutputStream(compacted);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file))) {
+            for (String record : remaining) {
+                byte[] bytes = record.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+            out.flush();
+            file.getChannel().force(false);
+        }
+        move(compacted, segment);
+    }
+
+    private static void move(File from, File to) throws IOException {
+        Files.move(from.toPath(), to.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private synchronized void delete(File segment) throws IOException {
+        Files.deleteIfExists(segment.toPath());
+    }
+
+    private void openSegment() throws IOException {
+        closeSegment();
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Could not create spool directory " + directory);
+        }
+        // Claimed segments keep their number, so that they can be returned to the spool
+        long sequence = 0;
+        for (File segment : listSegments()) {
+            sequence = Math.max(sequence, sequenceOf(segment, SEGMENT_SUFFIX) + 1);
+        }
+        for (File segment : listFiles(CLAIMED_SUFFIX)) {
+            sequence = Math.max(sequence, sequenceOf(segment, CLAIMED_SUFFIX) + 1);
+        }
+        activeSegment = new File(directory, String.format("%019d%s", sequence, SEGMENT_SUFFIX));
+        activeFile = new FileOutputStream(activeSegment, true);
+        activeOut = new DataOutputStream(new BufferedOutputStream(activeFile));
+    }
+
+    private void closeSegment() throws IOException {
+        if (activeOut != null) {
+            try {
+                activeOut.close();
+            } finally {
+                activeOut = null;
+                activeFile = null;
+                activeSegment = null;
+            }
+        }
+    }
+
+    private void enforceSizeCap() throws IOException {
+        List<File> segments = listSegments();
+        long size = 0;
+        for (File segment : segments) {
+            size += segment.length();
+        }
+        for (File segment : listFiles(CLAIMED_SUFFIX)) {
+            size += segment.length();
+        }
+        // The active segment is always the newest one and is never dropped, nor are claimed segments
+        for (int i = 0; size > maxBytes && i < segments.size() - 1; i++) {
+            File oldest = segments.get(i);
+            size -= oldest.length();
+            logger.log(Level.WARNING, "InfluxDB spool {0} exceeds {1} bytes. Dropping oldest segment {2}",
+                    new Object[]{directory, maxBytes, oldest.getName()});
+            Files.deleteIfExists(oldest.toPath());
+        }
+    }
+
+    private List<File> listSegments() {
+        return listFiles(SEGMENT_SUFFIX);
+    }
+
+    private List<File> listFiles(String suffix) {
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(suffix));
+        if (files == null) {
+            return Collections.emptyList();
+        }
+        Arrays.sort(files);
+        return new ArrayList<>(Arrays.asList(files));
+    }
+
+    private static long sequenceOf(File segment, String suffix) {
+        String name = segment.getName();
+        return Long.parseLong(name.substring(0, name.length() - suffix.length()));
+    }
+
+    private static List<String> readSegment(File segment) throws IOException {
+        List<String> records = new ArrayList<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(segment)))) {
+            while (true) {
+                int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                if (length < 0 || length > segment.length()) {
+                    logger.log(Level.WARNING, "Ignoring corrupt record in {0}", segment);
+                    break;
+                }
+                byte[] bytes = new byte[length];
+                try {
+                    in.readFully(bytes);
+                } catch (EOFException e) {
+                    // Record was cut short by a crash while appending, everything before it is intact
+                    logger.log(Level.WARNING, "Ignoring truncated record at the end of {0}", segment);
+                    break;
+                }
+                records.add(new String(bytes, StandardCharsets.UTF_8));
+            }
+        }
+        return records;
+    }
+}
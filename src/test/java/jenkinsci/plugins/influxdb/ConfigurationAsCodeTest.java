@@ -2,6 +2,7 @@ package jenkinsci.plugins.influxdb;
 
 import hudson.util.Secret;
 import io.jenkins.plugins.casc.ConfigurationAsCode;
+import jenkinsci.plugins.influxdb.generators.TestDetailLevel;
 import jenkinsci.plugins.influxdb.models.Target;
 import org.apache.commons.io.IOUtils;
 import org.junit.Rule;
@@ -43,6 +44,22 @@ public class ConfigurationAsCodeTest {
         assertThat(target.isUsingJenkinsProxy(), is(true));
         assertThat(target.isGlobalListener(), is(true));
         assertThat(target.getGlobalListenerFilter(), is("some filter"));
+        assertThat(target.getCompressionLevel(), is(6));
+        assertThat(target.getCompressionThreshold(), is(2048L));
+        assertThat(target.getMaxPointsPerRequest(), is(1000));
+        assertThat(target.getMaxKilobytesPerRequest(), is(512));
+    }
+
+    @Test
+    public void should_support_test_detail_level_from_yaml() throws Exception {
+        InfluxDbGlobalConfig globalConfig = InfluxDbGlobalConfig.getInstance();
+        assertThat(globalConfig.getTestDetailLevel(), is(TestDetailLevel.FULL));
+
+        String yamlUrl = getClass().getResource(getClass().getSimpleName() + "/test-detail.yml").toString();
+        ConfigurationAsCode.get().configure(yamlUrl);
+
+        assertThat(globalConfig.getTestDetailLevel(), is(TestDetailLevel.SAMPLED));
+        assertThat(globalConfig.getTestSamplePercentage(), is(25));
     }
 
     @Test
@@ -61,6 +78,10 @@ public class ConfigurationAsCodeTest {
         target.setUsingJenkinsProxy(true);
         target.setGlobalListener(true);
         target.setGlobalListenerFilter("some filter");
+        target.setCompressionLevel(6);
+        target.setCompressionThreshold(2048);
+        target.setMaxPointsPerRequest(1000);
+        target.setMaxKilobytesPerRequest(512);
 
         globalConfig.setTargets(Collections.singletonList(target));
 
@@ -0,0 +1,103 @@
+package jenkinsci.plugins.influxdb.benchmarks;
+
+import jenkinsci.plugins.influxdb.write.LineProtocolEncoder;
+import org.influxdb.dto.BatchPoints;
+import org.influxdb.dto.Point;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares encoding test case points through {@link Point} and {@link BatchPoints} with the
+ * {@link LineProtocolEncoder}. Run with {@code -prof gc} to compare the allocation rates as well.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LineProtocolBenchmark {
+
+    @Param({"1000", "10000"})
+    private int points;
+
+    private String[] names;
+    private long timestamp;
+
+    @Setup
+    public void setup() {
+        names = new String[points];
+        for (int i = 0; i < points; i++) {
+            names[i] = "Test case " + i + ", with spaces";
+        }
+        timestamp = TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis());
+    }
+
+    @Benchmark
+    public String point() {
+        BatchPoints.Builder batch = BatchPoints.database("jenkins");
+        for (int i = 0; i < points; i++) {
+            batch.point(Point.measurement("testcase_point")
+                    .tag("project_name", "job")
+                    .tag("project_path", "folder/job")
+                    .tag("rf_name", names[i])
+                    .addField("project_name", "job")
+                    .addField("project_path", "folder/job")
+                    .addField("build_number", 42)
+                    .addField("rf_name", names[i])
+                    .addField("rf_suite_name", "Suite")
+                    .addField("rf_failed", i % 2)
+                    .addField("rf_passed", 1 - i % 2)
+                    .addField("rf_duration", (long) i)
+                    .addField("rf_pass_percentage", 50.0)
+                    .time(timestamp + i, TimeUnit.NANOSECONDS)
+                    .build());
+        }
+        return batch.build().lineProtocol();
+    }
+
+    @Benchmark
+    public String encoder() {
+        LineProtocolEncoder encoder = new LineProtocolEncoder();
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < points; i++) {
+            if (i > 0) {
+                body.append('\n');
+            }
+            encoder.measurement("testcase_point")
+                    .tag("project_name", "job")
+                    .tag("project_path", "folder/job")
+                    .tag("rf_name", names[i])
+                    .field("project_name", "job")
+                    .field("project_path", "folder/job")
+                    .field("build_number", 42)
+                    .field("rf_name", names[i])
+                    .field("rf_suite_name", "Suite")
+                    .field("rf_failed", i % 2)
+                    .field("rf_passed", 1 - i % 2)
+                    .field("rf_duration", (long) i)
+                    .field("rf_pass_percentage", 50.0)
+                    .time(timestamp + i)
+                    .appendTo(body);
+        }
+        return body.toString();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(LineProtocolBenchmark.class.getSimpleName()).build()).run();
+    }
+}
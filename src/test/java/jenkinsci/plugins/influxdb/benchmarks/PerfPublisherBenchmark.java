@@ -0,0 +1,99 @@
+package jenkinsci.plugins.influxdb.benchmarks;
+
+import hudson.model.Job;
+import hudson.model.Run;
+import hudson.plugins.PerfPublisher.PerfPublisherBuildAction;
+import hudson.plugins.PerfPublisher.Report.Metric;
+import hudson.plugins.PerfPublisher.Report.Report;
+import hudson.plugins.PerfPublisher.Report.ReportContainer;
+import jenkins.model.Jenkins;
+import jenkinsci.plugins.influxdb.generators.PerfPublisherPointGenerator;
+import jenkinsci.plugins.influxdb.renderer.ProjectNameRenderer;
+import jenkinsci.plugins.influxdb.write.LineProtocolSink;
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Generates the points of a synthetic Performance Publisher report of 10k tests with 20 metrics
+ * each, to catch aggregates being computed once per metric or test again.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PerfPublisherBenchmark {
+
+    @Param({"10000"})
+    private int tests;
+
+    @Param({"20"})
+    private int metrics;
+
+    private Run<?, ?> build;
+    private ProjectNameRenderer renderer;
+
+    @Setup
+    public void setup() {
+        ReportContainer reports = new ReportContainer();
+        Report report = new Report();
+        for (int t = 0; t < tests; t++) {
+            hudson.plugins.PerfPublisher.Report.Test test = new hudson.plugins.PerfPublisher.Report.Test();
+            test.setName("test" + t + ".txt");
+            test.setExecuted(true);
+            Map<String, Metric> testMetrics = new HashMap<>();
+            for (int m = 0; m < metrics; m++) {
+                Metric metric = new Metric();
+                metric.setMeasure((t * 31 + m) % 1000);
+                metric.setRelevant(true);
+                metric.setUnit("ms");
+                testMetrics.put("metric" + m, metric);
+            }
+            test.setMetrics(testMetrics);
+            report.addTest(test);
+        }
+        reports.addReport(report);
+
+        PerfPublisherBuildAction action = Mockito.mock(PerfPublisherBuildAction.class);
+        Mockito.when(action.getReports()).thenReturn(reports);
+        Job job = Mockito.mock(Job.class);
+        Mockito.when(job.getName()).thenReturn("job");
+        Mockito.when(job.getRelativeNameFrom(Mockito.nullable(Jenkins.class))).thenReturn("folder/job");
+        Run run = Mockito.mock(Run.class);
+        Mockito.when(run.getParent()).thenReturn(job);
+        Mockito.when(run.getAction(PerfPublisherBuildAction.class)).thenReturn(action);
+        build = run;
+        renderer = new ProjectNameRenderer(null, null);
+    }
+
+    @Benchmark
+    public int generate() {
+        // Encodes the points like a build does, but drops the records
+        LineProtocolSink sink = new LineProtocolSink(1000, records -> { });
+        new PerfPublisherPointGenerator(renderer, null, build, 0).generate(sink);
+        sink.flush();
+        return sink.getCount();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(PerfPublisherBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,107 @@
+package jenkinsci.plugins.influxdb.benchmarks;
+
+import hudson.model.Job;
+import hudson.model.Run;
+import hudson.plugins.robot.RobotBuildAction;
+import hudson.plugins.robot.model.RobotCaseResult;
+import hudson.plugins.robot.model.RobotResult;
+import hudson.plugins.robot.model.RobotSuiteResult;
+import jenkins.model.Jenkins;
+import jenkinsci.plugins.influxdb.generators.RobotFrameworkPointGenerator;
+import jenkinsci.plugins.influxdb.renderer.ProjectNameRenderer;
+import jenkinsci.plugins.influxdb.write.LineProtocolSink;
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Generates the points of a synthetic Robot Framework report, in which every tenth case is a
+ * duplicate. The time per operation should grow linearly with the number of cases.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RobotFrameworkBenchmark {
+
+    private static final int CASES_PER_SUITE = 100;
+    private static final int TAGS = 20;
+
+    @Param({"10000", "50000"})
+    private int cases;
+
+    private Run<?, ?> build;
+    private ProjectNameRenderer renderer;
+
+    @Setup
+    public void setup() {
+        List<RobotSuiteResult> suites = new ArrayList<>();
+        for (int s = 0; s < cases / CASES_PER_SUITE; s++) {
+            RobotSuiteResult suite = mock(RobotSuiteResult.class);
+            Mockito.when(suite.getName()).thenReturn("Suite " + s);
+            List<RobotCaseResult> suiteCases = new ArrayList<>();
+            for (int c = 0; c < CASES_PER_SUITE; c++) {
+                // Every tenth case repeats the previous one
+                int name = c % 10 == 9 ? c - 1 : c;
+                RobotCaseResult caseResult = mock(RobotCaseResult.class);
+                Mockito.when(caseResult.getName()).thenReturn("Case " + name);
+                Mockito.when(caseResult.getDuplicateSafeName()).thenReturn("Suite " + s + ".Case " + name);
+                Mockito.when(caseResult.getParent()).thenReturn(suite);
+                Mockito.when(caseResult.getTags()).thenReturn(Arrays.asList("tag" + name % TAGS, "tag" + s % TAGS));
+                suiteCases.add(caseResult);
+            }
+            Mockito.when(suite.getAllCases()).thenReturn(suiteCases);
+            suites.add(suite);
+        }
+
+        RobotResult result = mock(RobotResult.class);
+        Mockito.when(result.getAllSuites()).thenReturn(suites);
+        RobotBuildAction action = mock(RobotBuildAction.class);
+        Mockito.when(action.getResult()).thenReturn(result);
+
+        Job job = mock(Job.class);
+        Mockito.when(job.getName()).thenReturn("job");
+        Mockito.when(job.getRelativeNameFrom(Mockito.nullable(Jenkins.class))).thenReturn("folder/job");
+        Run run = mock(Run.class);
+        Mockito.when(run.getParent()).thenReturn(job);
+        Mockito.when(run.getAction(RobotBuildAction.class)).thenReturn(action);
+        build = run;
+        renderer = new ProjectNameRenderer(null, null);
+    }
+
+    private static <T> T mock(Class<T> type) {
+        return Mockito.mock(type, Mockito.withSettings().stubOnly());
+    }
+
+    @Benchmark
+    public int generate() {
+        // Encodes the points like a build does, but drops the records
+        LineProtocolSink sink = new LineProtocolSink(1000, records -> { });
+        new RobotFrameworkPointGenerator(renderer, null, build, 0).generate(sink);
+        sink.flush();
+        return sink.getCount();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(RobotFrameworkBenchmark.class.getSimpleName()).build()).run();
+    }
+}
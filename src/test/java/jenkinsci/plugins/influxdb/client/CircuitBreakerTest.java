@@ -0,0 +1,90 @@
+package jenkinsci.plugins.influxdb.client;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class CircuitBreakerTest {
+
+    private final AtomicLong now = new AtomicLong();
+    private final CircuitBreaker breaker = new CircuitBreaker("http://localhost:8086", 2, 1000, now::get);
+
+    @Test
+    public void opensAfterConsecutiveFailures() throws Exception {
+        breaker.acquire();
+        breaker.onFailure();
+        assertThat(breaker.getState(), is(CircuitBreaker.State.CLOSED));
+
+        breaker.acquire();
+        breaker.onFailure();
+        assertThat(breaker.getState(), is(CircuitBreaker.State.OPEN));
+        assertRejected();
+    }
+
+    @Test
+    public void successResetsFailures() throws Exception {
+        breaker.onFailure();
+        breaker.onSuccess();
+        breaker.onFailure();
+
+        assertThat(breaker.getState(), is(CircuitBreaker.State.CLOSED));
+    }
+
+    @Test
+    public void halfOpenLetsSingleProbeThrough() throws Exception {
+        breaker.onFailure();
+        breaker.onFailure();
+
+        now.set(1000);
+        breaker.acquire();
+        assertThat(breaker.getState(), is(CircuitBreaker.State.HALF_OPEN));
+        assertRejected();
+
+        breaker.onSuccess();
+        assertThat(breaker.getState(), is(CircuitBreaker.State.CLOSED));
+        breaker.acquire();
+    }
+
+    @Test
+    public void failedProbeOpensAgain() throws Exception {
+        breaker.onFailure();
+        breaker.onFailure();
+
+        now.set(1000);
+        breaker.acquire();
+        breaker.onFailure();
+
+        assertThat(breaker.getState(), is(CircuitBreaker.State.OPEN));
+        now.set(1999);
+        assertRejected();
+        now.set(2000);
+        breaker.acquire();
+    }
+
+    @Test
+    public void abandonedProbeLetsNextWriteProbe() throws Exception {
+        breaker.onFailure();
+        breaker.onFailure();
+
+        now.set(1000);
+        breaker.acquire();
+        breaker.onAbandoned();
+
+        assertThat(breaker.getState(), is(CircuitBreaker.State.OPEN));
+        breaker.acquire();
+        assertThat(breaker.getState(), is(CircuitBreaker.State.HALF_OPEN));
+    }
+
+    private void assertRejected() {
+        try {
+            breaker.acquire();
+            fail("write should have been rejected");
+        } catch (CircuitBreaker.OpenException e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package jenkinsci.plugins.influxdb.client;
+
+import jenkinsci.plugins.influxdb.models.Target;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class FieldTypeCacheTest {
+
+    private static final String URL = "http://localhost:8086";
+
+    private final FieldTypeCache cache = new FieldTypeCache();
+
+    private Target target;
+
+    @Before
+    public void before() {
+        target = new Target();
+        target.setDescription("local");
+        target.setUrl(URL);
+        target.setDatabase("jenkins");
+    }
+
+    @Test
+    public void parsesFieldTypes() {
+        String record = "my\\ data,tag=a\\ b count=1i,flag=t,name=\"x, y=\\\"z\\\"\",ratio=0.5,other\\=key=F 1000";
+        Map<String, FieldType> types = new LinkedHashMap<>();
+        int end = FieldTypeCache.measurementEnd(record);
+        FieldTypeCache.parseFields(record, end, types::put);
+
+        assertThat(record.substring(0, end), is("my\\ data"));
+        assertThat(types.toString(), is("{count=INTEGER, flag=BOOLEAN, name=STRING, ratio=FLOAT, other=key=BOOLEAN}"));
+    }
+
+    @Test
+    public void learnsTrackedMeasurementsOnly() {
+        FieldTypeLookup lookup = cache.lookup(Collections.singletonList(target));
+        assertThat(lookup.typeOf("custom_data", "count"), is(nullValue()));
+
+        cache.learn(URL, "jenkins", Arrays.asList(
+                "custom_data,project_name=a count=1i,label=\"x\" 1",
+                "jenkins_data build_time=10i 1"));
+
+        assertThat(lookup.typeOf("custom_data", "count"), is(FieldType.INTEGER));
+        assertThat(lookup.typeOf("custom_data", "label"), is(FieldType.STRING));
+        assertThat(cache.get(URL, "jenkins", "jenkins_data", "build_time"), is(nullValue()));
+        assertThat(cache.get(URL, "other", "custom_data", "count"), is(nullValue()));
+    }
+
+    @Test
+    public void coercesToExpectedType() {
+        assertThat(FieldType.INTEGER.coerce("42"), is(42L));
+        assertThat(FieldType.INTEGER.coerce(new BigDecimal("3.0")), is(3L));
+        assertThat(FieldType.INTEGER.coerce(2.5), is(nullValue()));
+        assertThat(FieldType.INTEGER.coerce("abc"), is(nullValue()));
+        assertThat(FieldType.FLOAT.coerce(7), is(7.0));
+        assertThat(FieldType.FLOAT.coerce("1.5"), is(1.5));
+        assertThat(FieldType.STRING.coerce(12), is("12"));
+        assertThat(FieldType.BOOLEAN.coerce("TRUE"), is(true));
+        assertThat(FieldType.BOOLEAN.coerce(1), is(nullValue()));
+    }
+
+    @Test
+    public void normalizesUnsupportedTypes() {
+        StringBuilder text = new StringBuilder("hello");
+        assertThat(FieldType.normalize(text), is("hello"));
+        assertThat(FieldType.of(FieldType.normalize(new BigDecimal("1.5"))), is(FieldType.FLOAT));
+        assertThat(FieldType.of(FieldType.normalize(java.math.BigInteger.TEN)), is(FieldType.INTEGER));
+    }
+}
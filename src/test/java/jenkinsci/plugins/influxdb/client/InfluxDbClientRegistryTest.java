@@ -0,0 +1,76 @@
+package jenkinsci.plugins.influxdb.client;
+
+import jenkinsci.plugins.influxdb.models.Target;
+import org.influxdb.InfluxDB;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.MalformedURLException;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class InfluxDbClientRegistryTest {
+
+    private InfluxDbClientRegistry registry;
+
+    @Before
+    public void before() {
+        registry = new InfluxDbClientRegistry();
+    }
+
+    @Test
+    public void sameConfigurationSharesClient() throws Exception {
+        InfluxDB first = registry.getClient(createTarget("first", "http://localhost:8086"));
+        InfluxDB second = registry.getClient(createTarget("second", "http://localhost:8086"));
+
+        assertThat(second, sameInstance(first));
+        assertThat(registry.size(), is(1));
+    }
+
+    @Test
+    public void differentUrlUsesDifferentClient() throws Exception {
+        InfluxDB first = registry.getClient(createTarget("first", "http://localhost:8086"));
+        InfluxDB second = registry.getClient(createTarget("second", "http://otherhost:8086"));
+
+        assertThat(second, not(sameInstance(first)));
+        assertThat(registry.size(), is(2));
+    }
+
+    @Test
+    public void differentRetentionPolicyUsesDifferentClient() throws Exception {
+        Target target = createTarget("target", "http://localhost:8086");
+        InfluxDB first = registry.getClient(target);
+        target.setRetentionPolicy("one_week");
+        InfluxDB second = registry.getClient(target);
+
+        assertThat(second, not(sameInstance(first)));
+    }
+
+    @Test
+    public void invalidateDropsClients() throws Exception {
+        Target target = createTarget("target", "http://localhost:8086");
+        InfluxDB first = registry.getClient(target);
+
+        registry.invalidate();
+
+        assertThat(registry.size(), is(0));
+        assertThat(registry.getClient(target), not(sameInstance(first)));
+    }
+
+    @Test(expected = MalformedURLException.class)
+    public void invalidUrl() throws Exception {
+        registry.getClient(createTarget("target", "localhost:8086"));
+    }
+
+    private Target createTarget(String description, String url) {
+        Target target = new Target();
+        target.setDescription(description);
+        target.setUrl(url);
+        target.setDatabase("jenkins");
+        target.setRetentionPolicy("autogen");
+        return target;
+    }
+}
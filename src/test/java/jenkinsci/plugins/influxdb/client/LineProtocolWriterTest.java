@@ -0,0 +1,72 @@
+package jenkinsci.plugins.influxdb.client;
+
+import okhttp3.OkHttpClient;
+import okio.Buffer;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class LineProtocolWriterTest {
+
+    @Test
+    public void bodySeparatesRecordsWithNewlines() throws Exception {
+        LineProtocolWriter.RecordsBody body = new LineProtocolWriter.RecordsBody(Arrays.asList("m f=1i 1", "m f=\"\u00e4\u20ac\" 2"));
+
+        Buffer buffer = new Buffer();
+        body.writeTo(buffer);
+
+        assertThat(buffer.readUtf8(), is("m f=1i 1\nm f=\"\u00e4\u20ac\" 2"));
+        assertThat(body.contentLength(), is(8L + 1 + 8 + 2 + 3));
+    }
+
+    @Test
+    public void utf8Length() {
+        assertThat(LineProtocolWriter.utf8Length("abc"), is(3L));
+        assertThat(LineProtocolWriter.utf8Length("\ud83d\ude00"), is(4L));
+        assertThat(LineProtocolWriter.utf8Length("\ud83d"), is(1L));
+    }
+
+    @Test
+    public void interruptionIsNotCountedAgainstBreaker() throws Exception {
+        CircuitBreaker breaker = new CircuitBreaker("http://localhost:8086", 1, 1000, () -> 0L);
+        OkHttpClient client = new OkHttpClient.Builder().addInterceptor(chain -> {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted");
+        }).build();
+
+        assertInterrupted(new LineProtocolWriter(client, "http://localhost:8086", null, null, 0, 0,
+                new RetryPolicy(3, 0, 0), breaker));
+        assertThat(breaker.getState(), is(CircuitBreaker.State.CLOSED));
+    }
+
+    @Test
+    public void interruptedBackOffIsRethrownRightAway() throws Exception {
+        CircuitBreaker breaker = new CircuitBreaker("http://localhost:8086", 2, 1000, () -> 0L);
+        OkHttpClient client = new OkHttpClient.Builder().addInterceptor(chain -> {
+            Thread.currentThread().interrupt();
+            throw new IOException("Connection reset");
+        }).build();
+
+        assertInterrupted(new LineProtocolWriter(client, "http://localhost:8086", null, null, 0, 0,
+                new RetryPolicy(3, 60000, 60000), breaker));
+        // Only the failed attempt counts, not the interrupted back-off
+        breaker.onFailure();
+        assertThat(breaker.getState(), is(CircuitBreaker.State.OPEN));
+    }
+
+    private static void assertInterrupted(LineProtocolWriter writer) throws IOException {
+        try {
+            writer.write("db", null, Collections.singletonList("m f=1i 1"));
+            fail("write should have been interrupted");
+        } catch (InterruptedIOException e) {
+            assertThat(Thread.interrupted(), is(true));
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package jenkinsci.plugins.influxdb.client;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.assertThat;
+
+public class RetryPolicyTest {
+
+    private final RetryPolicy policy = new RetryPolicy(3, 100, 400);
+
+    @Test
+    public void retriesUnavailableServer() {
+        assertThat(policy.isRetryable(new SocketTimeoutException()), is(true));
+        assertThat(policy.isRetryable(new IOException("Connection reset")), is(true));
+        assertThat(policy.isRetryable(new LineProtocolWriter.WriteException(503, "")), is(true));
+        assertThat(policy.isRetryable(new LineProtocolWriter.WriteException(429, "")), is(true));
+    }
+
+    @Test
+    public void doesNotRetryRejectedData() {
+        assertThat(policy.isRetryable(new LineProtocolWriter.WriteException(400, "partial write")), is(false));
+        assertThat(policy.isRetryable(new LineProtocolWriter.WriteException(404, "database not found")), is(false));
+        assertThat(policy.isRetryable(new CircuitBreaker.OpenException("http://localhost:8086")), is(false));
+    }
+
+    @Test
+    public void delaysAreBounded() {
+        for (int i = 0; i < 100; i++) {
+            assertThat(policy.delayMillis(1), lessThanOrEqualTo(100L));
+            assertThat(policy.delayMillis(2), lessThanOrEqualTo(200L));
+            assertThat(policy.delayMillis(10), lessThanOrEqualTo(400L));
+            assertThat(policy.delayMillis(100), lessThanOrEqualTo(400L));
+        }
+    }
+}
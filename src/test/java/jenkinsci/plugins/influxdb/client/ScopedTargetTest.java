@@ -0,0 +1,66 @@
+package jenkinsci.plugins.influxdb.client;
+
+import jenkinsci.plugins.influxdb.models.Target;
+import jenkinsci.plugins.influxdb.write.AgentWrite;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class ScopedTargetTest {
+
+    private Target target;
+
+    @Before
+    public void before() {
+        target = new Target();
+        target.setDescription("my-target");
+        target.setUrl("http://localhost:8086");
+        target.setDatabase("jenkins");
+        target.setMaxKilobytesPerRequest(64);
+    }
+
+    @Test
+    public void copiesWhatIsNeededToWrite() {
+        ScopedTarget scoped = ScopedTarget.of(target, TimeUnit.HOURS.toMillis(1));
+
+        assertThat(scoped.getDescription(), is("my-target"));
+        assertThat(scoped.getDatabase(), is("jenkins"));
+        assertThat(scoped.getMaxBytesPerRequest(), is(64L * 1024));
+        assertThat(scoped.isExpired(System.nanoTime()), is(false));
+    }
+
+    @Test
+    public void targetsBehindJenkinsProxyAreNotCopied() {
+        target.setUsingJenkinsProxy(true);
+
+        assertThat(ScopedTarget.of(target), is(nullValue()));
+    }
+
+    @Test
+    public void expiryIsStampedByController() {
+        ScopedTarget scoped = ScopedTarget.of(target, 0);
+
+        // Just received by the agent, but already expired when made
+        assertThat(scoped.isExpired(System.nanoTime()), is(true));
+    }
+
+    @Test
+    public void expiredCopyIsNotWritten() {
+        ScopedTarget scoped = ScopedTarget.of(target, 0);
+
+        AgentWrite.Summary summary = AgentWrite.write(Collections.singletonList(scoped),
+                Arrays.asList("m f=1i 1", "m f=2i 2"), System.nanoTime() - 1);
+
+        assertThat(summary.getPoints(), is(2));
+        assertThat(summary.getRequests(), is(0));
+        assertThat(summary.getFailures(), contains("Target 'my-target' may no longer be written from the agent"));
+    }
+}
@@ -92,4 +92,20 @@ public class CustomDataMapPointGeneratorTest {
         assertThat(lineProtocol1, startsWith("series1,build_result=SUCCESS,prefix=test_prefix,project_name=test_prefix_master,project_path=folder/master build_number=11i,project_name=\"test_prefix_master\",project_path=\"folder/master\",test1=11i,test2=22i"));
         assertThat(lineProtocol2, startsWith("series2,prefix=test_prefix,project_name=test_prefix_master,project_path=folder/master build_number=11i,project_name=\"test_prefix_master\",project_path=\"folder/master\",test3=33i,test4=44i"));
     }
+
+    @Test
+    public void renders_project_once_per_build() {
+        Map<String, Map<String, Object>> customDataMap = new HashMap<>();
+        customDataMap.put("series1", Collections.singletonMap("test1", 11));
+        customDataMap.put("series2", Collections.singletonMap("test2", 22));
+        customDataMap.put("series3", Collections.singletonMap("test3", 33));
+
+        MeasurementRenderer<Run<?, ?>> renderer = Mockito.spy(measurementRenderer);
+        CustomDataMapPointGenerator cdmGen = new CustomDataMapPointGenerator(renderer, CUSTOM_PREFIX, build,
+                currTime, customDataMap, null);
+
+        assertThat(cdmGen.generate().length, is(3));
+        Mockito.verify(renderer, Mockito.times(1)).render(build);
+        Mockito.verify(build.getParent(), Mockito.times(1)).getRelativeNameFrom(Mockito.nullable(Jenkins.class));
+    }
 }
@@ -3,6 +3,7 @@ package jenkinsci.plugins.influxdb.generators;
 import hudson.model.Job;
 import hudson.model.Run;
 import jenkins.model.Jenkins;
+import jenkinsci.plugins.influxdb.client.FieldType;
 import jenkinsci.plugins.influxdb.renderer.MeasurementRenderer;
 import jenkinsci.plugins.influxdb.renderer.ProjectNameRenderer;
 import org.influxdb.dto.Point;
@@ -16,6 +17,7 @@ import java.util.Map;
 
 import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
 import static org.hamcrest.Matchers.startsWith;
 import static org.junit.Assert.assertThat;
 
@@ -89,4 +91,26 @@ public class CustomDataPointGeneratorTest {
         String lineProtocol = pointsToWrite[0].lineProtocol();
         assertThat(lineProtocol, startsWith("custom_" + customMeasurement));
     }
+
+    @Test
+    public void coerces_to_expected_field_types() {
+        Map<String, Object> customData = new HashMap<>();
+        customData.put("count", "12");
+        customData.put("ratio", 3);
+        customData.put("label", new StringBuilder("abc"));
+        customData.put("broken", "n/a");
+
+        CustomDataPointGenerator cdGen = new CustomDataPointGenerator(measurementRenderer, CUSTOM_PREFIX, build, currTime, customData, null, MEASUREMENT_NAME);
+        cdGen.setFieldTypes((measurement, field) -> {
+            if (!"jenkins_custom_data".equals(measurement)) {
+                return null;
+            }
+            return "count".equals(field) || "broken".equals(field) ? FieldType.INTEGER : "ratio".equals(field) ? FieldType.FLOAT : null;
+        });
+        String lineProtocol = cdGen.generate()[0].lineProtocol();
+
+        assertThat(lineProtocol, containsString("count=12i,label=\"abc\""));
+        assertThat(lineProtocol, containsString("ratio=3.0"));
+        assertThat(lineProtocol, not(containsString("broken")));
+    }
 }
@@ -0,0 +1,121 @@
+package jenkinsci.plugins.influxdb.generators;
+
+import hudson.model.Run;
+import org.influxdb.dto.Point;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class GeneratorRunnerTest {
+
+    private static final long TIMEOUT_NANOS = TimeUnit.MILLISECONDS.toNanos(500);
+
+    // One thread, as if generators of other builds held the rest of the pool
+    private final ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 60L, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(10), new ThreadPoolExecutor.CallerRunsPolicy());
+    private final List<String> written = new CopyOnWriteArrayList<>();
+
+    @After
+    public void after() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void lateGeneratorsOfSaturatedPoolStillProducePoints() {
+        List<GeneratorRunner.Generation> generations = Arrays.asList(
+                new GeneratorRunner.Generation("first", "first", new SlowGenerator(5, 300)),
+                new GeneratorRunner.Generation("second", "second", new SlowGenerator(5, 300)),
+                new GeneratorRunner.Generation("third", "third", new SlowGenerator(5, 300)));
+
+        new GeneratorRunner(executor, TIMEOUT_NANOS, 2, 1).run(generations, written::addAll);
+
+        for (GeneratorRunner.Generation generation : generations) {
+            assertThat(generation.isTimedOut(), is(false));
+            assertThat(generation.getGenerated(), is(5));
+        }
+        assertThat(written, hasSize(15));
+    }
+
+    @Test
+    public void timeSpentWritingDoesNotCountAgainstGenerators() {
+        GeneratorRunner.Generation generation = new GeneratorRunner.Generation("report", "report", new SlowGenerator(10, 0));
+
+        new GeneratorRunner(executor, TIMEOUT_NANOS, 2, 1).run(Arrays.asList(generation), records -> {
+            sleep(200);
+            written.addAll(records);
+        });
+
+        assertThat(generation.isTimedOut(), is(false));
+        assertThat(written, hasSize(10));
+    }
+
+    @Test
+    public void generatorsRunningOutOfTimeAreCancelled() {
+        GeneratorRunner.Generation slow = new GeneratorRunner.Generation("slow", "slow", new SlowGenerator(5, 5000));
+        GeneratorRunner.Generation quick = new GeneratorRunner.Generation("quick", "quick", new SlowGenerator(3, 0));
+
+        new GeneratorRunner(executor, TIMEOUT_NANOS, 2, 1).run(Arrays.asList(slow, quick), written::addAll);
+
+        assertThat(slow.isTimedOut(), is(true));
+        assertThat(quick.getGenerated(), is(3));
+        assertThat(written, hasSize(3));
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Takes its time before generating its points.
+     */
+    private static final class SlowGenerator implements PointGenerator {
+
+        private final int points;
+        private final long millis;
+
+        SlowGenerator(int points, long millis) {
+            this.points = points;
+            this.millis = millis;
+        }
+
+        @Override
+        public boolean hasReport() {
+            return true;
+        }
+
+        @Override
+        public Point[] generate() {
+            sleep(millis);
+            Point[] generated = new Point[points];
+            for (int i = 0; i < points; i++) {
+                generated[i] = Point.measurement("slow").addField("index", i).time(i, TimeUnit.MILLISECONDS).build();
+            }
+            return generated;
+        }
+
+        @Override
+        public Point.Builder buildPoint(String name, String customPrefix, Run<?, ?> build, long timeStamp) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Point.Builder buildPoint(String name, String customPrefix, Run<?, ?> build) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -19,6 +19,7 @@ import org.mockito.stubbing.Answer;
 import java.util.HashMap;
 import java.util.Map;
 
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.startsWith;
 import static org.junit.Assert.assertThat;
@@ -99,4 +100,32 @@ public class PerfPublisherPointGeneratorTest {
         assertThat(points[2].lineProtocol(), startsWith("perfpublisher_test,prefix=test_prefix,project_name=test_prefix_master,project_path=folder/master,test_name=test.txt build_number=11i,executed=true,project_name=\"test_prefix_master\",project_path=\"folder/master\",successful=false,test_name=\"test.txt\""));
         assertThat(points[3].lineProtocol(), startsWith("perfpublisher_test_metric,prefix=test_prefix,project_name=test_prefix_master,project_path=folder/master,test_name=test.txt build_number=11i,metric_name=\"metric1\",project_name=\"test_prefix_master\",project_path=\"folder/master\",relevant=true,test_name=\"test.txt\",unit=\"ms\",value=50.0"));
     }
+
+    @Test
+    public void generateWithTestFilter() {
+        Report report = new Report();
+        hudson.plugins.PerfPublisher.Report.Test failed = new hudson.plugins.PerfPublisher.Report.Test();
+        failed.setName("failed.txt");
+        failed.setExecuted(true);
+        report.addTest(failed);
+        hudson.plugins.PerfPublisher.Report.Test passed = new hudson.plugins.PerfPublisher.Report.Test();
+        passed.setName("passed.txt");
+        passed.setExecuted(true);
+        passed.setSuccessfull(true);
+        report.addTest(passed);
+        reports.addReport(report);
+
+        PerfPublisherPointGenerator generator = new PerfPublisherPointGenerator(measurementRenderer, CUSTOM_PREFIX, build, currTime);
+        generator.setTestFilter(new TestFilter(TestDetailLevel.SUMMARY, 100));
+        Point[] points = generator.generate();
+        assertThat(points.length, is(1));
+        assertThat(points[0].lineProtocol(), startsWith("perfpublisher_summary,"));
+        assertThat(points[0].lineProtocol(), containsString("number_of_tests=2i"));
+
+        generator = new PerfPublisherPointGenerator(measurementRenderer, CUSTOM_PREFIX, build, currTime);
+        generator.setTestFilter(new TestFilter(TestDetailLevel.SAMPLED, 0));
+        points = generator.generate();
+        assertThat(points.length, is(2));
+        assertThat(points[1].lineProtocol(), containsString("test_name=\"failed.txt\""));
+    }
 }
@@ -0,0 +1,160 @@
+package jenkinsci.plugins.influxdb.generators;
+
+import hudson.model.Job;
+import hudson.model.Run;
+import hudson.plugins.robot.RobotBuildAction;
+import hudson.plugins.robot.model.RobotCaseResult;
+import hudson.plugins.robot.model.RobotResult;
+import hudson.plugins.robot.model.RobotSuiteResult;
+import jenkins.model.Jenkins;
+import jenkinsci.plugins.influxdb.renderer.MeasurementRenderer;
+import jenkinsci.plugins.influxdb.renderer.ProjectNameRenderer;
+import org.influxdb.dto.Point;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class RobotFrameworkPointGeneratorTest {
+
+    private static final String JOB_NAME = "master";
+    private static final int BUILD_NUMBER = 11;
+    private static final String CUSTOM_PREFIX = "test_prefix";
+
+    private Run<?, ?> build;
+    private MeasurementRenderer<Run<?, ?>> measurementRenderer;
+    private RobotResult result;
+
+    private long currTime;
+
+    @Before
+    public void before() {
+        build = Mockito.mock(Run.class);
+        Job job = Mockito.mock(Job.class);
+        measurementRenderer = new ProjectNameRenderer(CUSTOM_PREFIX, null);
+        RobotBuildAction buildAction = Mockito.mock(RobotBuildAction.class);
+        result = Mockito.mock(RobotResult.class);
+
+        Mockito.when(build.getNumber()).thenReturn(BUILD_NUMBER);
+        Mockito.when(build.getParent()).thenReturn(job);
+        Mockito.when(job.getName()).thenReturn(JOB_NAME);
+        Mockito.when(job.getRelativeNameFrom(Mockito.nullable(Jenkins.class))).thenReturn("folder/" + JOB_NAME);
+        Mockito.when(build.getAction(RobotBuildAction.class)).thenReturn(buildAction);
+        Mockito.when(buildAction.getResult()).thenReturn(result);
+
+        currTime = System.currentTimeMillis();
+    }
+
+    @Test
+    public void duplicateCasesAreSkipped() {
+        RobotSuiteResult suite = suite("Suite A");
+        cases(suite,
+                passedCase(suite, "Login", "Login", 10),
+                passedCase(suite, "Login", "Login_1", 10));
+        Mockito.when(result.getAllSuites()).thenReturn(Collections.singletonList(suite));
+
+        List<String> casePoints = linesOf(generate(), "testcase_point,");
+
+        assertThat(casePoints, hasSize(1));
+        assertThat(casePoints.get(0), containsString("rf_name=\"Login\",rf_passed=1i,rf_suite_name=\"Suite A\""));
+    }
+
+    @Test
+    public void casesDifferingInSuiteOrDurationAreKept() {
+        RobotSuiteResult suiteA = suite("Suite A");
+        cases(suiteA,
+                passedCase(suiteA, "Login", "Login", 10),
+                passedCase(suiteA, "Login", "Login_1", 20));
+        RobotSuiteResult suiteB = suite("Suite B");
+        cases(suiteB,
+                passedCase(suiteB, "Login", "Login_2", 10));
+        Mockito.when(result.getAllSuites()).thenReturn(Arrays.asList(suiteA, suiteB));
+
+        List<String> casePoints = linesOf(generate(), "testcase_point,");
+
+        assertThat(casePoints, hasSize(3));
+        assertThat(casePoints.get(0), containsString("rf_duration=10i"));
+        assertThat(casePoints.get(1), containsString("rf_duration=20i"));
+        assertThat(casePoints.get(2), containsString("rf_suite_name=\"Suite B\""));
+    }
+
+    @Test
+    public void tagResultsCountDuplicateCases() {
+        RobotSuiteResult suite = suite("Suite A");
+        cases(suite,
+                passedCase(suite, "Login", "Login", 10, "smoke"),
+                passedCase(suite, "Login", "Login_1", 10, "smoke"));
+        Mockito.when(result.getAllSuites()).thenReturn(Collections.singletonList(suite));
+
+        Point[] points = generate();
+
+        assertThat(linesOf(points, "testcase_point,"), hasSize(1));
+        List<String> tagPoints = linesOf(points, "tag_point,");
+        assertThat(tagPoints, hasSize(1));
+        assertThat(tagPoints.get(0), containsString("rf_duration=20i,rf_failed=0i,rf_passed=2i"));
+        assertThat(tagPoints.get(0), containsString("rf_tag_name=\"smoke\",rf_total=2i"));
+    }
+
+    @Test
+    public void generatesOverviewSuiteCaseAndTagPoints() {
+        RobotSuiteResult suite = suite("Suite A");
+        cases(suite, passedCase(suite, "Login", "Login", 10, "smoke"));
+        Mockito.when(result.getAllSuites()).thenReturn(Collections.singletonList(suite));
+
+        List<String> measurements = new ArrayList<>();
+        for (Point point : generate()) {
+            String line = point.lineProtocol();
+            measurements.add(line.substring(0, line.indexOf(',')));
+        }
+
+        assertThat(measurements, contains("rf_results", "suite_result", "testcase_point", "tag_point"));
+    }
+
+    private Point[] generate() {
+        RobotFrameworkPointGenerator generator = new RobotFrameworkPointGenerator(measurementRenderer, CUSTOM_PREFIX, build, currTime);
+        assertThat(generator.hasReport(), is(true));
+        return generator.generate();
+    }
+
+    private static List<String> linesOf(Point[] points, String prefix) {
+        List<String> lines = new ArrayList<>();
+        for (Point point : points) {
+            String line = point.lineProtocol();
+            if (line.startsWith(prefix)) {
+                lines.add(line);
+            }
+        }
+        return lines;
+    }
+
+    private static RobotSuiteResult suite(String name) {
+        RobotSuiteResult suite = Mockito.mock(RobotSuiteResult.class);
+        Mockito.when(suite.getName()).thenReturn(name);
+        return suite;
+    }
+
+    private static void cases(RobotSuiteResult suite, RobotCaseResult... cases) {
+        Mockito.when(suite.getAllCases()).thenReturn(Arrays.asList(cases));
+    }
+
+    private static RobotCaseResult passedCase(RobotSuiteResult suite, String name, String duplicateSafeName, long duration, String... tags) {
+        RobotCaseResult caseResult = Mockito.mock(RobotCaseResult.class);
+        Mockito.when(caseResult.getName()).thenReturn(name);
+        Mockito.when(caseResult.getDuplicateSafeName()).thenReturn(duplicateSafeName);
+        Mockito.when(caseResult.getParent()).thenReturn(suite);
+        Mockito.when(caseResult.getPassed()).thenReturn(1L);
+        Mockito.when(caseResult.getDuration()).thenReturn(duration);
+        Mockito.when(caseResult.getTags()).thenReturn(Arrays.asList(tags));
+        return caseResult;
+    }
+}
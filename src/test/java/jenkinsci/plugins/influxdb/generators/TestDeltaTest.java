@@ -0,0 +1,116 @@
+package jenkinsci.plugins.influxdb.generators;
+
+import hudson.model.Job;
+import hudson.model.Run;
+import org.junit.After;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.not;
+import static org.junit.Assert.assertThat;
+
+public class TestDeltaTest {
+
+    private final Job job = Mockito.mock(Job.class);
+
+    @After
+    public void after() {
+        TestDelta.clear();
+    }
+
+    private Run<?, ?> build(int number) {
+        Run build = Mockito.mock(Run.class);
+        Mockito.when(job.getFullName()).thenReturn("folder/job");
+        Mockito.when(build.getParent()).thenReturn(job);
+        Mockito.when(build.getNumber()).thenReturn(number);
+        return build;
+    }
+
+    @Test
+    public void writesChangedTestsOnly() {
+        TestDelta first = TestDelta.start(build(1), "robot");
+        assertThat(first.isKeyframe(), is(true));
+        assertThat(first.includes("stable", false, 1100), is(true));
+        assertThat(first.includes("flaky", false, 1000), is(true));
+        assertThat(first.includes("slow", false, 1000), is(true));
+        first.finish();
+
+        TestDelta second = TestDelta.start(build(2), "robot");
+        assertThat(second.isKeyframe(), is(false));
+        assertThat(second.includes("stable", false, 1200), is(false));
+        assertThat(second.includes("flaky", true, 1000), is(true));
+        assertThat(second.includes("slow", false, 3000), is(true));
+        assertThat(second.includes("new", false, 10), is(true));
+        second.finish();
+
+        TestDelta other = TestDelta.start(build(3), "perfpublisher");
+        assertThat(other.isKeyframe(), is(true));
+    }
+
+    @Test
+    public void writesKeyframePeriodically() {
+        for (int i = 1; i <= TestDelta.KEYFRAME_INTERVAL; i++) {
+            TestDelta delta = TestDelta.start(build(i), "robot");
+            assertThat(delta.includes("stable", false, 1000), is(i == 1));
+            delta.finish();
+        }
+        TestDelta keyframe = TestDelta.start(build(TestDelta.KEYFRAME_INTERVAL + 1), "robot");
+        assertThat(keyframe.isKeyframe(), is(true));
+        assertThat(keyframe.includes("stable", false, 1000), is(true));
+    }
+
+    @Test
+    public void ignoresOlderBuild() {
+        TestDelta newer = TestDelta.start(build(5), "robot");
+        newer.includes("a", false, 1);
+        TestDelta older = TestDelta.start(build(4), "robot");
+        older.includes("a", true, 1);
+        newer.finish();
+        older.finish();
+
+        assertThat(TestDelta.start(build(6), "robot").includes("a", false, 1), is(false));
+    }
+
+    @Test
+    public void republishedBuildIsComparedWithBuildBefore() {
+        TestDelta first = TestDelta.start(build(1), "robot");
+        first.includes("a", false, 1000);
+        first.finish();
+        TestDelta second = TestDelta.start(build(2), "robot");
+        assertThat(second.includes("a", true, 1000), is(true));
+        second.finish();
+
+        for (int i = 0; i < 2; i++) {
+            TestDelta republished = TestDelta.start(build(2), "robot");
+            assertThat(republished.isKeyframe(), is(false));
+            assertThat(republished.includes("a", true, 1000), is(true));
+            republished.finish();
+        }
+
+        assertThat(TestDelta.start(build(3), "robot").includes("a", true, 1000), is(false));
+    }
+
+    @Test
+    public void countsRemovedTests() {
+        TestDelta first = TestDelta.start(build(1), "robot");
+        first.includes("kept", false, 1000);
+        first.includes("removed", false, 1000);
+        first.includes("also removed", true, 1000);
+        assertThat(first.finish(), is(0));
+
+        TestDelta second = TestDelta.start(build(2), "robot");
+        assertThat(second.includes("kept", false, 1000), is(false));
+        second.includes("new", false, 1000);
+        assertThat(second.finish(), is(2));
+    }
+
+    @Test
+    public void bucketsDurations() {
+        assertThat(TestDelta.bucket(0), is(0));
+        assertThat(TestDelta.bucket(1100), is(TestDelta.bucket(1200)));
+        assertThat(TestDelta.bucket(1100), not(TestDelta.bucket(1500)));
+        assertThat(TestDelta.bucket(Long.MAX_VALUE), lessThan(256));
+    }
+}
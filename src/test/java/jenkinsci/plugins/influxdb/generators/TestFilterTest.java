@@ -0,0 +1,52 @@
+package jenkinsci.plugins.influxdb.generators;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.hamcrest.Matchers.allOf;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertThat;
+
+public class TestFilterTest {
+
+    @Test
+    public void fullAndSummary() {
+        assertThat(TestFilter.ALL.includes("a", false, () -> null), is(true));
+        TestFilter summary = new TestFilter(TestDetailLevel.SUMMARY, 100);
+        assertThat(summary.includes("a", true, () -> null), is(false));
+    }
+
+    @Test
+    public void failuresAndChanges() {
+        TestFilter filter = new TestFilter(TestDetailLevel.FAILURES_AND_CHANGES, 0);
+        Map<String, Boolean> previous = new HashMap<>();
+        previous.put("stable", false);
+        previous.put("fixed", true);
+
+        assertThat(filter.includes("stable", false, () -> previous), is(false));
+        assertThat(filter.includes("stable", true, () -> previous), is(true));
+        assertThat(filter.includes("fixed", false, () -> previous), is(true));
+        assertThat(filter.includes("new", false, () -> previous), is(true));
+        assertThat(filter.includes("stable", false, () -> null), is(true));
+    }
+
+    @Test
+    public void samplesStableShare() {
+        TestFilter filter = new TestFilter(TestDetailLevel.SAMPLED, 10);
+        int sampled = 0;
+        for (int i = 0; i < 10000; i++) {
+            String name = "Suite.Test " + i;
+            boolean included = filter.includes(name, false, () -> null);
+            assertThat(filter.includes(name, false, () -> null), is(included));
+            if (included) {
+                sampled++;
+            }
+        }
+        assertThat(sampled, allOf(greaterThan(800), lessThan(1200)));
+        assertThat(filter.includes("Suite.Test 1", true, () -> null), is(true));
+    }
+}
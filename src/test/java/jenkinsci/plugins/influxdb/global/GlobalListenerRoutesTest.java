@@ -0,0 +1,55 @@
+package jenkinsci.plugins.influxdb.global;
+
+import jenkinsci.plugins.influxdb.models.Target;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class GlobalListenerRoutesTest {
+
+    private static Target target(String description, boolean globalListener, String filter) {
+        Target target = new Target();
+        target.setDescription(description);
+        target.setGlobalListener(globalListener);
+        target.setGlobalListenerFilter(filter);
+        return target;
+    }
+
+    @Test
+    public void selectsMatchingGlobalListeners() {
+        Target all = target("all", true, "");
+        Target team = target("team", true, "team/.*");
+        Target manual = target("manual", false, null);
+        GlobalListenerRoutes routes = new GlobalListenerRoutes(Arrays.asList(all, team, manual));
+
+        assertThat(routes.targetsFor("team/build"), contains(all, team));
+        assertThat(routes.targetsFor("other/build"), contains(all));
+    }
+
+    @Test
+    public void remembersTargetsPerJob() {
+        GlobalListenerRoutes routes = new GlobalListenerRoutes(Collections.singletonList(target("team", true, "team/.*")));
+
+        assertThat(routes.targetsFor("team/build"), sameInstance(routes.targetsFor("team/build")));
+        routes.targetsFor("team/deploy");
+        routes.targetsFor("other");
+        assertThat(routes.size(), is(3));
+
+        routes.forget("team");
+        assertThat(routes.size(), is(1));
+    }
+
+    @Test
+    public void ignoresInvalidFilter() {
+        GlobalListenerRoutes routes = new GlobalListenerRoutes(Collections.singletonList(target("broken", true, "team/(")));
+
+        assertThat(routes.targetsFor("team/build"), is(empty()));
+    }
+}
@@ -0,0 +1,224 @@
+package jenkinsci.plugins.influxdb.reports;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.Assert.assertThat;
+
+public class WorkspaceReportsTest {
+
+    private static final String SERIES = ",project_name=master,project_path=folder/master build_number=42i,";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final ReportSeries series = new ReportSeries(null, "master", "folder/master", 42, 1000);
+
+    private void write(String path, String content) throws IOException {
+        File file = new File(folder.getRoot(), path);
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private WorkspaceReports.Result parse(ReportType type, String includes) throws Exception {
+        Map<ReportType, String> patterns = Collections.singletonMap(type, includes);
+        return new WorkspaceReports(patterns, series).invoke(folder.getRoot(), null);
+    }
+
+    @Test
+    public void countsJUnitTestCases() throws Exception {
+        write("target/surefire-reports/TEST-FooTest.xml", "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<testsuite name=\"com.example.FooTest\" tests=\"4\">\n"
+                + "  <testcase name=\"passes\" time=\"0.5\"/>\n"
+                + "  <testcase name=\"fails\" time=\"0.25\"><failure message=\"expected\"/></testcase>\n"
+                + "  <testcase name=\"breaks\" time=\"0.25\"><error message=\"NPE\"/></testcase>\n"
+                + "  <testcase name=\"ignored\" time=\"0\"><skipped/></testcase>\n"
+                + "</testsuite>\n");
+        write("target/surefire-reports/TEST-BarTest.xml", "<testsuites><testsuite name=\"com.example.BarTest\">"
+                + "<testcase name=\"passes\" time=\"0.5\"><system-out>ok</system-out></testcase>"
+                + "</testsuite></testsuites>");
+
+        WorkspaceReports.Result result = parse(ReportType.JUNIT, "**/TEST-*.xml");
+
+        assertThat(result.getFiles(), is(2));
+        assertThat(result.getProblems(), is(empty()));
+        List<String> records = result.getRecords();
+        assertThat(records, hasSize(3));
+        assertThat(records.get(0), is("junit_report_data" + SERIES
+                + "duration=1.5,errors=1i,failures=1i,passed=2i,project_name=\"master\",project_path=\"folder/master\",skipped=1i,tests=5i 1000"));
+        assertThat(records, hasItem(startsWith("junit_suite_data,project_name=master,project_path=folder/master,suite_name=com.example.FooTest "
+                + "build_number=42i,duration=1.0,errors=1i,failures=1i,passed=1i,")));
+        assertThat(records, hasItem(startsWith("junit_suite_data,project_name=master,project_path=folder/master,suite_name=com.example.BarTest "
+                + "build_number=42i,duration=0.5,errors=0i,failures=0i,passed=1i,")));
+    }
+
+    @Test
+    public void countsRobotTestsByTheirOwnStatus() throws Exception {
+        write("results/output.xml", "<robot generator=\"Robot 3.2\">\n"
+                + "<suite name=\"Suite\">\n"
+                + "<test name=\"Passes\">\n"
+                + "  <kw name=\"Step\"><status status=\"FAIL\" starttime=\"20240101 10:00:00.000\" endtime=\"20240101 10:00:00.100\"/></kw>\n"
+                + "  <status status=\"PASS\" starttime=\"20240101 10:00:00.000\" endtime=\"20240101 10:00:01.500\"/>\n"
+                + "</test>\n"
+                + "<test name=\"Fails\"><status status=\"FAIL\" starttime=\"20240101 10:00:01.500\" endtime=\"20240101 10:00:02.000\"/></test>\n"
+                + "<status status=\"FAIL\" starttime=\"20240101 10:00:00.000\" endtime=\"20240101 10:00:02.000\"/>\n"
+                + "</suite>\n"
+                + "</robot>\n");
+        write("results/rf7/output.xml", "<robot generator=\"Robot 7.0\"><suite name=\"Suite\">"
+                + "<test name=\"Skipped\"><status status=\"SKIP\" start=\"2024-01-01T10:00:00.000\" elapsed=\"0.250\"/></test>"
+                + "</suite></robot>");
+
+        WorkspaceReports.Result result = parse(ReportType.ROBOT, "results/**/output.xml");
+
+        assertThat(result.getFiles(), is(2));
+        assertThat(result.getRecords(), hasSize(1));
+        assertThat(result.getRecords().get(0), is("robot_report_data" + SERIES
+                + "project_name=\"master\",project_path=\"folder/master\",rf_duration=2250i,rf_failed=1i,"
+                + "rf_pass_percentage=33.333333333333336,rf_passed=1i,rf_skipped=1i,rf_total=3i 1000"));
+    }
+
+    @Test
+    public void summarizesJMeterCsvByLabel() throws Exception {
+        write("jmeter/results.jtl", "timeStamp,elapsed,label,responseCode,success\n"
+                + "1700000000000,100,\"Home, page\",200,true\n"
+                + "1700000000100,300,\"Home, page\",500,false\n"
+                + "1700000000200,200,Login,200,true\n"
+                + "1700000000300,400,Login,200,true\n");
+
+        WorkspaceReports.Result result = parse(ReportType.JMETER, "jmeter/*.jtl");
+
+        List<String> records = result.getRecords();
+        assertThat(records, hasSize(3));
+        assertThat(records.get(0), is("jmeter_report_data,project_name=master,project_path=folder/master "
+                + "90Percentile=400i,average=250i,build_number=42i,error_count=1i,error_percent=25.0,max=400i,median=200i,min=100i,"
+                + "project_name=\"master\",project_path=\"folder/master\",size=4i 1000"));
+        assertThat(records.get(1), startsWith("jmeter_label_data,label=Home\\,\\ page,project_name=master,project_path=folder/master "
+                + "90Percentile=300i,average=200i,build_number=42i,error_count=1i,error_percent=50.0,"));
+        assertThat(records.get(2), startsWith("jmeter_label_data,label=Login,"));
+    }
+
+    @Test
+    public void readsJMeterCsvValuesSpanningLines() throws Exception {
+        write("jmeter/results.jtl", "timeStamp,elapsed,label,responseMessage,success\r\n"
+                + "1700000000000,100,Home,OK,true\r\n"
+                + "1700000000100,300,Home,\"Internal\r\nServer \"\"Error\"\"\",false\r\n"
+                + "\r\n"
+                + "1700000000200,200,Login,OK,true\r\n");
+
+        WorkspaceReports.Result result = parse(ReportType.JMETER, "jmeter/*.jtl");
+
+        List<String> records = result.getRecords();
+        assertThat(records, hasSize(3));
+        assertThat(records.get(0), containsString("error_count=1i,error_percent=33.33"));
+        assertThat(records.get(0), containsString("max=300i,median=200i,min=100i,"));
+    }
+
+    @Test
+    public void summarizesJMeterXml() throws Exception {
+        write("jmeter/results.xml", "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<testResults version=\"1.2\">\n"
+                + "<httpSample t=\"120\" lb=\"Home\" s=\"true\"/>\n"
+                + "<sample t=\"480\" lb=\"Checkout\" s=\"false\">\n"
+                + "  <httpSample t=\"400\" lb=\"Payment\" s=\"false\"/>\n"
+                + "</sample>\n"
+                + "</testResults>\n");
+
+        WorkspaceReports.Result result = parse(ReportType.JMETER, "jmeter/*.xml");
+
+        List<String> records = result.getRecords();
+        assertThat(records, hasSize(3));
+        assertThat(records.get(0), containsString("average=300i,build_number=42i,error_count=1i,error_percent=50.0,max=480i"));
+        assertThat(records, hasItem(startsWith("jmeter_label_data,label=Checkout,")));
+    }
+
+    @Test
+    public void sumsCoberturaCoverage() throws Exception {
+        write("target/site/cobertura/coverage.xml", "<?xml version=\"1.0\"?>\n"
+                + "<!DOCTYPE coverage SYSTEM \"http://cobertura.sourceforge.net/xml/coverage-04.dtd\">\n"
+                + "<coverage lines-covered=\"75\" lines-valid=\"100\" branches-covered=\"1\" branches-valid=\"4\">\n"
+                + "<packages><package name=\"com.example\"><classes>\n"
+                + "  <class name=\"com.example.Foo\" filename=\"com/example/Foo.java\"/>\n"
+                + "  <class name=\"com.example.Foo$1\" filename=\"com/example/Foo.java\"/>\n"
+                + "  <class name=\"com.example.Bar\" filename=\"com/example/Bar.java\"/>\n"
+                + "</classes></package></packages>\n"
+                + "</coverage>\n");
+
+        WorkspaceReports.Result result = parse(ReportType.COBERTURA, "**/coverage.xml");
+
+        assertThat(result.getProblems(), is(empty()));
+        assertThat(result.getRecords(), hasSize(1));
+        assertThat(result.getRecords().get(0), is("cobertura_report_data" + SERIES
+                + "cobertura_branch_coverage_rate=25.0,cobertura_line_coverage_rate=75.0,cobertura_lines_covered=75i,"
+                + "cobertura_lines_valid=100i,cobertura_number_of_classes=3i,cobertura_number_of_packages=1i,"
+                + "cobertura_number_of_sourcefiles=2i,project_name=\"master\",project_path=\"folder/master\" 1000"));
+    }
+
+    @Test
+    public void sumsJacocoReportCounters() throws Exception {
+        write("target/site/jacoco/jacoco.xml", "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n"
+                + "<report name=\"example\">\n"
+                + "<package name=\"com/example\">\n"
+                + "  <counter type=\"LINE\" missed=\"99\" covered=\"1\"/>\n"
+                + "</package>\n"
+                + "<counter type=\"LINE\" missed=\"20\" covered=\"80\"/>\n"
+                + "<counter type=\"BRANCH\" missed=\"5\" covered=\"5\"/>\n"
+                + "</report>\n");
+
+        WorkspaceReports.Result result = parse(ReportType.JACOCO, "**/jacoco.xml");
+
+        assertThat(result.getRecords(), hasSize(1));
+        assertThat(result.getRecords().get(0), is("jacoco_report_data" + SERIES
+                + "jacoco_branch_coverage_rate=50.0,jacoco_branch_covered=5i,jacoco_branch_missed=5i,"
+                + "jacoco_line_coverage_rate=80.0,jacoco_line_covered=80i,jacoco_line_missed=20i,"
+                + "project_name=\"master\",project_path=\"folder/master\" 1000"));
+    }
+
+    @Test
+    public void reportsMalformedFilesAndKeepsTheOthers() throws Exception {
+        write("reports/TEST-good.xml", "<testsuite name=\"Good\"><testcase name=\"passes\"/></testsuite>");
+        write("reports/TEST-truncated.xml", "<testsuite name=\"Truncated\"><testcase name=");
+
+        WorkspaceReports.Result result = parse(ReportType.JUNIT, "reports/*.xml");
+
+        assertThat(result.getFiles(), is(1));
+        assertThat(result.getProblems(), hasSize(1));
+        assertThat(result.getProblems().get(0), containsString("TEST-truncated.xml"));
+        assertThat(result.getRecords().get(0), containsString("tests=1i"));
+    }
+
+    @Test
+    public void addsNothingOfFilesBrokenHalfway() throws Exception {
+        write("reports/TEST-good.xml", "<testsuite name=\"Good\"><testcase name=\"passes\"/></testsuite>");
+        write("reports/TEST-truncated.xml", "<testsuite name=\"Truncated\"><testcase name=\"passes\"/><testcase name=");
+
+        WorkspaceReports.Result result = parse(ReportType.JUNIT, "reports/*.xml");
+
+        assertThat(result.getProblems(), hasSize(1));
+        assertThat(result.getRecords(), hasSize(2));
+        assertThat(result.getRecords().get(0), containsString("tests=1i"));
+        assertThat(result.getRecords().get(1), containsString("suite_name=Good"));
+    }
+
+    @Test
+    public void writesNothingWithoutFiles() throws Exception {
+        WorkspaceReports.Result result = parse(ReportType.JUNIT, "**/TEST-*.xml");
+
+        assertThat(result.getFiles(), is(0));
+        assertThat(result.getRecords(), is(empty()));
+    }
+}
@@ -0,0 +1,144 @@
+package jenkinsci.plugins.influxdb.sonar;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class SonarQubeCacheTest {
+
+    private static final String SERVER = "http://sonar.dashboard.com";
+
+    private final AtomicInteger fetches = new AtomicInteger();
+
+    private SonarQubeMeasures fetch() {
+        fetches.incrementAndGet();
+        return new SonarQubeMeasures(Collections.singletonMap("MAJOR", fetches.get()), 100);
+    }
+
+    @Test
+    public void fetchesAnalysisOnce() throws Exception {
+        SonarQubeCache cache = new SonarQubeCache(10, TimeUnit.HOURS.toNanos(1));
+
+        SonarQubeMeasures first = cache.get(SERVER, "project", "AX1", this::fetch);
+        SonarQubeMeasures second = cache.get(SERVER, "project", "AX1", this::fetch);
+
+        assertThat(second, sameInstance(first));
+        assertThat(fetches.get(), is(1));
+        assertThat(cache.getHits(), is(1L));
+        assertThat(cache.getMisses(), is(1L));
+    }
+
+    @Test
+    public void tellsAnalysesApart() throws Exception {
+        SonarQubeCache cache = new SonarQubeCache(10, TimeUnit.HOURS.toNanos(1));
+
+        cache.get(SERVER, "project", "AX1", this::fetch);
+        cache.get(SERVER, "project", "AX2", this::fetch);
+        cache.get(SERVER, "other", "AX1", this::fetch);
+        cache.get("http://other.sonar.com", "project", "AX1", this::fetch);
+
+        assertThat(fetches.get(), is(4));
+        assertThat(cache.getMisses(), is(4L));
+    }
+
+    @Test
+    public void expiresEntries() throws Exception {
+        SonarQubeCache cache = new SonarQubeCache(10, 0);
+
+        cache.get(SERVER, "project", "AX1", this::fetch);
+        cache.get(SERVER, "project", "AX1", this::fetch);
+
+        assertThat(fetches.get(), is(2));
+        assertThat(cache.size(), is(1));
+    }
+
+    @Test
+    public void dropsLeastRecentlyUsed() throws Exception {
+        SonarQubeCache cache = new SonarQubeCache(2, TimeUnit.HOURS.toNanos(1));
+
+        cache.get(SERVER, "project", "AX1", this::fetch);
+        cache.get(SERVER, "project", "AX2", this::fetch);
+        cache.get(SERVER, "project", "AX1", this::fetch);
+        cache.get(SERVER, "project", "AX3", this::fetch);
+        assertThat(cache.size(), is(2));
+
+        cache.get(SERVER, "project", "AX1", this::fetch);
+        assertThat(fetches.get(), is(3));
+        cache.get(SERVER, "project", "AX2", this::fetch);
+        assertThat(fetches.get(), is(4));
+    }
+
+    @Test
+    public void doesNotKeepFailures() throws Exception {
+        SonarQubeCache cache = new SonarQubeCache(10, TimeUnit.HOURS.toNanos(1));
+
+        try {
+            cache.get(SERVER, "project", "AX1", () -> {
+                throw new IOException("Failed : HTTP error code : 503");
+            });
+            fail("Expected an IOException");
+        } catch (IOException e) {
+            assertThat(e.getMessage(), is("Failed : HTTP error code : 503"));
+        }
+        cache.get(SERVER, "project", "AX1", this::fetch);
+
+        assertThat(fetches.get(), is(1));
+        assertThat(cache.getMisses(), is(2L));
+    }
+
+    @Test
+    public void keepsTaskStatusWithMeasures() throws Exception {
+        SonarQubeCache cache = new SonarQubeCache(10, TimeUnit.HOURS.toNanos(1));
+        assertThat(cache.getStatus(SERVER, "project", "AX1"), is(nullValue()));
+
+        cache.putStatus(SERVER, "project", "AX1", "SUCCESS");
+        SonarQubeMeasures first = cache.get(SERVER, "project", "AX1", this::fetch);
+
+        assertThat(cache.getStatus(SERVER, "project", "AX1"), is("SUCCESS"));
+        assertThat(cache.getStatus(SERVER, "project", "AX2"), is(nullValue()));
+        assertThat(cache.get(SERVER, "project", "AX1", this::fetch), sameInstance(first));
+        assertThat(fetches.get(), is(1));
+        assertThat(cache.size(), is(1));
+    }
+
+    @Test
+    public void concurrentPublicationsShareQuery() throws Exception {
+        SonarQubeCache cache = new SonarQubeCache(10, TimeUnit.HOURS.toNanos(1));
+        CountDownLatch fetching = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<SonarQubeMeasures> first = executor.submit(() -> cache.get(SERVER, "project", "AX1", () -> {
+                fetching.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new InterruptedIOException();
+                }
+                return fetch();
+            }));
+            fetching.await();
+            Future<SonarQubeMeasures> second = executor.submit(() -> cache.get(SERVER, "project", "AX1", this::fetch));
+            release.countDown();
+
+            assertThat(second.get(10, TimeUnit.SECONDS), sameInstance(first.get(10, TimeUnit.SECONDS)));
+            assertThat(fetches.get(), is(1));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package jenkinsci.plugins.influxdb.sonar;
+
+import com.squareup.moshi.JsonReader;
+import okio.Buffer;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Map;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class SonarQubeClientTest {
+
+    @Test
+    public void parsesSeverityFacet() throws Exception {
+        String json = "{\"total\":57,\"p\":1,\"ps\":1,\"paging\":{\"pageIndex\":1,\"pageSize\":1,\"total\":57},"
+                + "\"issues\":[{\"key\":\"AX\",\"severity\":\"MAJOR\",\"flows\":[]}],\"components\":[],"
+                + "\"facets\":[{\"property\":\"types\",\"values\":[{\"val\":\"BUG\",\"count\":3}]},"
+                + "{\"property\":\"severities\",\"values\":[{\"val\":\"MAJOR\",\"count\":40},{\"val\":\"MINOR\",\"count\":12},"
+                + "{\"count\":3,\"val\":\"CRITICAL\"},{\"val\":\"INFO\",\"count\":2},{\"val\":\"BLOCKER\",\"count\":0}]}]}";
+
+        Map<String, Integer> counts = SonarQubeClient.parseSeverities(reader(json));
+
+        assertThat(counts.size(), is(5));
+        assertThat(counts.get("MAJOR"), is(40));
+        assertThat(counts.get("MINOR"), is(12));
+        assertThat(counts.get("CRITICAL"), is(3));
+        assertThat(counts.get("INFO"), is(2));
+        assertThat(counts.get("BLOCKER"), is(0));
+    }
+
+    @Test
+    public void parsesLinesOfCode() throws Exception {
+        String json = "{\"component\":{\"key\":\"org.namespace:project\",\"name\":\"project\",\"qualifier\":\"TRK\","
+                + "\"measures\":[{\"metric\":\"complexity\",\"value\":\"12\"},{\"value\":\"1234\",\"metric\":\"ncloc\","
+                + "\"bestValue\":false}]},\"metrics\":[]}";
+
+        assertThat(SonarQubeClient.parseLinesOfCode(reader(json)), is(1234));
+    }
+
+    @Test
+    public void missingMeasureIsZero() throws Exception {
+        String json = "{\"component\":{\"key\":\"org.namespace:project\",\"measures\":[]}}";
+
+        assertThat(SonarQubeClient.parseLinesOfCode(reader(json)), is(0));
+    }
+
+    @Test
+    public void parsesTaskStatus() throws Exception {
+        String json = "{\"task\":{\"organization\":\"default\",\"id\":\"AVmZPkXyJfRB1oTh-N3q\",\"type\":\"REPORT\","
+                + "\"componentKey\":\"project\",\"status\":\"IN_PROGRESS\",\"logs\":false,\"warnings\":[]}}";
+
+        assertThat(SonarQubeClient.parseTaskStatus(reader(json)), is("IN_PROGRESS"));
+    }
+
+    @Test
+    public void missingSeverityIsZero() {
+        SonarQubeMeasures measures = new SonarQubeMeasures(Collections.singletonMap("MAJOR", 4), 10);
+
+        assertThat(measures.getIssues("MAJOR"), is(4));
+        assertThat(measures.getIssues("BLOCKER"), is(0));
+    }
+
+    private static JsonReader reader(String json) {
+        return JsonReader.of(new Buffer().writeUtf8(json));
+    }
+}
@@ -0,0 +1,38 @@
+package jenkinsci.plugins.influxdb.sonar;
+
+import org.jenkinsci.plugins.workflow.cps.CpsFlowDefinition;
+import org.jenkinsci.plugins.workflow.job.WorkflowJob;
+import org.jenkinsci.plugins.workflow.job.WorkflowRun;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class SonarQubeLogScannerPipelineTest {
+
+    private static final String URL = "http://sonar.dashboard.com/dashboard?id=org.namespace:project";
+
+    private static final String TASK_ID = "AVmZPkXyJfRB1oTh-N3q";
+
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    @Test
+    public void findsAnalysisLoggedByPipelineStep() throws Exception {
+        WorkflowJob job = j.jenkins.createProject(WorkflowJob.class, "pipeline");
+        job.setDefinition(new CpsFlowDefinition(
+                "echo '[INFO] ANALYSIS SUCCESSFUL, you can browse " + URL + "'\n"
+                        + "echo '[INFO] More about the report processing at http://sonar.dashboard.com/api/ce/task?id=" + TASK_ID + "'\n"
+                        + "echo '[INFO] EXECUTION SUCCESS'\n", true));
+        WorkflowRun run = j.assertBuildStatusSuccess(job.scheduleBuild2(0));
+
+        // The output of Pipeline steps is not watched, the log is searched instead
+        assertThat(run.getAction(SonarQubeAnalysisAction.class), is(nullValue()));
+        SonarQubeAnalysisAction analysis = SonarQubeLogScanner.findAnalysis(run);
+        assertThat(analysis.getUrl(), is(URL));
+        assertThat(analysis.getCeTaskId(), is(TASK_ID));
+    }
+}
@@ -0,0 +1,121 @@
+package jenkinsci.plugins.influxdb.sonar;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class SonarQubeLogScannerTest {
+
+    private static final String URL = "http://sonar.dashboard.com/dashboard?id=org.namespace:project";
+
+    private static final String TASK_ID = "AVmZPkXyJfRB1oTh-N3q";
+
+    private static final String TASK_URL = "http://sonar.dashboard.com/api/ce/task?id=" + TASK_ID;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void capturesUrlWhileStreaming() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        List<SonarQubeAnalysisAction> analyses = new ArrayList<>();
+        try (OutputStream capture = new SonarQubeLogScanner.CaptureStream(out, StandardCharsets.UTF_8, analyses::add)) {
+            PrintStream logger = new PrintStream(capture, true, "UTF-8");
+            logger.println("[INFO] Analysis report uploaded");
+            logger.print("[INFO] ANALYSIS SUCCESSFUL, you can browse " + URL + "\r\n");
+            logger.println("[INFO] ANALYSIS SUCCESSFUL");
+            logger.println("[INFO] More about the report processing at " + TASK_URL);
+            logger.print("no newline at the end");
+        }
+
+        assertThat(analyses.size(), is(2));
+        assertThat(analyses.get(0).getUrl(), is(URL));
+        assertThat(analyses.get(0).getCeTaskId(), is(nullValue()));
+        assertThat(analyses.get(1).getUrl(), is(URL));
+        assertThat(analyses.get(1).getCeTaskId(), is(TASK_ID));
+        assertThat(out.toString("UTF-8"), is("[INFO] Analysis report uploaded" + System.lineSeparator()
+                + "[INFO] ANALYSIS SUCCESSFUL, you can browse " + URL + "\r\n"
+                + "[INFO] ANALYSIS SUCCESSFUL" + System.lineSeparator()
+                + "[INFO] More about the report processing at " + TASK_URL + System.lineSeparator()
+                + "no newline at the end"));
+    }
+
+    @Test
+    public void scansTailForLastUrl() throws Exception {
+        File log = folder.newFile("log");
+        StringBuilder sb = new StringBuilder();
+        sb.append("ANALYSIS SUCCESSFUL, you can browse http://old\n");
+        for (int i = 0; i < 20000; i++) {
+            sb.append("[INFO] line ").append(i).append('\n');
+        }
+        sb.append("[INFO] ANALYSIS SUCCESSFUL, you can browse ").append(URL).append("\r\n");
+        sb.append("[INFO] Note that you will be able to access the updated dashboard once the server has processed the submitted analysis report\r\n");
+        sb.append("[INFO] More about the report processing at ").append(TASK_URL).append("\r\n");
+        for (int i = 0; i < 20000; i++) {
+            sb.append("[INFO] line ").append(i).append('\n');
+        }
+        write(log, sb.toString());
+
+        SonarQubeAnalysisAction analysis = SonarQubeLogScanner.scanTail(log, Long.MAX_VALUE, StandardCharsets.UTF_8);
+        assertThat(analysis.getUrl(), is(URL));
+        assertThat(analysis.getCeTaskId(), is(TASK_ID));
+    }
+
+    @Test
+    public void scanTailStopsAtLimit() throws Exception {
+        File log = folder.newFile("log");
+        StringBuilder sb = new StringBuilder();
+        sb.append("ANALYSIS SUCCESSFUL, you can browse ").append(URL).append('\n');
+        for (int i = 0; i < 20000; i++) {
+            sb.append("[INFO] line ").append(i).append('\n');
+        }
+        write(log, sb.toString());
+
+        assertThat(SonarQubeLogScanner.scanTail(log, 1024, StandardCharsets.UTF_8), is(nullValue()));
+        assertThat(SonarQubeLogScanner.scanTail(log, log.length(), StandardCharsets.UTF_8).getUrl(), is(URL));
+    }
+
+    @Test
+    public void scansUrlAcrossBlocks() throws Exception {
+        File log = folder.newFile("log");
+        String line = "ANALYSIS SUCCESSFUL, you can browse " + URL + "\n";
+        StringBuilder sb = new StringBuilder();
+        // Let the marker straddle the start of the last 64 KiB block
+        int blockSize = 64 * 1024;
+        for (int i = 0; i < blockSize - 11; i++) {
+            sb.append('x');
+        }
+        sb.append('\n').append(line);
+        for (int i = sb.length(); i < 2 * blockSize; i++) {
+            sb.append('y');
+        }
+        write(log, sb.toString());
+
+        assertThat(SonarQubeLogScanner.scanTail(log, Long.MAX_VALUE, StandardCharsets.UTF_8).getUrl(), is(URL));
+    }
+
+    @Test
+    public void parsesLines() {
+        assertThat(SonarQubeLogScanner.parse("[INFO] ANALYSIS SUCCESSFUL, you can browse " + URL), is(URL));
+        assertThat(SonarQubeLogScanner.parse("[INFO] ANALYSIS SUCCESSFUL"), is(nullValue()));
+        assertThat(SonarQubeLogScanner.parseTask("INFO: More about the report processing at " + TASK_URL), is(TASK_ID));
+        assertThat(SonarQubeLogScanner.parseTask("INFO: More about the report processing at http://sonar/api/ce/task?foo=bar&id=AX"), is("AX"));
+    }
+
+    private static void write(File file, String content) throws Exception {
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,110 @@
+package jenkinsci.plugins.influxdb.sonar;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class SonarQubeTaskPollerTest {
+
+    private static final String SERVER = "http://sonar.dashboard.com";
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+
+    private final AtomicInteger polls = new AtomicInteger();
+
+    @After
+    public void after() {
+        scheduler.shutdownNow();
+    }
+
+    private SonarQubeTaskPoller.StatusSource statuses(String... statuses) {
+        Deque<String> queue = new ArrayDeque<>(Arrays.asList(statuses));
+        return (server, ceTaskId, token) -> {
+            polls.incrementAndGet();
+            String status = queue.size() > 1 ? queue.poll() : queue.peek();
+            if ("ERROR".equals(status)) {
+                throw new IOException("Failed : HTTP error code : 503");
+            }
+            return status;
+        };
+    }
+
+    @Test
+    public void pollsUntilProcessed() throws Exception {
+        SonarQubeTaskPoller poller = new SonarQubeTaskPoller(scheduler, statuses("PENDING", "IN_PROGRESS", "SUCCESS"), 1, 4, 60000);
+
+        String status = poller.awaitCompletion(SERVER, "AX1", null).get(10, TimeUnit.SECONDS);
+
+        assertThat(status, is("SUCCESS"));
+        assertThat(polls.get(), is(3));
+        assertThat(poller.pendingCount(), is(0));
+    }
+
+    @Test
+    public void reportsFailedTask() throws Exception {
+        SonarQubeTaskPoller poller = new SonarQubeTaskPoller(scheduler, statuses("IN_PROGRESS", "FAILED"), 1, 4, 60000);
+
+        assertThat(poller.awaitCompletion(SERVER, "AX1", null).get(10, TimeUnit.SECONDS), is("FAILED"));
+    }
+
+    @Test
+    public void retriesAfterErrors() throws Exception {
+        SonarQubeTaskPoller poller = new SonarQubeTaskPoller(scheduler, statuses("ERROR", "ERROR", "SUCCESS"), 1, 4, 60000);
+
+        assertThat(poller.awaitCompletion(SERVER, "AX1", null).get(10, TimeUnit.SECONDS), is("SUCCESS"));
+        assertThat(polls.get(), is(3));
+    }
+
+    @Test
+    public void sharesPollsOfSameTask() throws Exception {
+        SonarQubeTaskPoller poller = new SonarQubeTaskPoller(scheduler, statuses("IN_PROGRESS", "SUCCESS"), 1000, 1000, 60000);
+
+        CompletableFuture<String> first = poller.awaitCompletion(SERVER, "AX1", null);
+        CompletableFuture<String> second = poller.awaitCompletion(SERVER, "AX1", "token");
+        CompletableFuture<String> other = poller.awaitCompletion(SERVER, "AX2", null);
+
+        assertThat(second, sameInstance(first));
+        assertThat(poller.pendingCount(), is(2));
+        other.cancel(true);
+    }
+
+    @Test
+    public void givesUpEventually() throws Exception {
+        SonarQubeTaskPoller poller = new SonarQubeTaskPoller(scheduler, statuses("IN_PROGRESS"), 1, 4, 20);
+
+        try {
+            poller.awaitCompletion(SERVER, "AX1", null).get(10, TimeUnit.SECONDS);
+            fail("Expected the wait to time out");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause(), instanceOf(TimeoutException.class));
+        }
+        assertThat(poller.pendingCount(), is(0));
+    }
+
+    @Test
+    public void knowsFinalStatuses() {
+        assertThat(SonarQubeTaskPoller.isDone("SUCCESS"), is(true));
+        assertThat(SonarQubeTaskPoller.isDone("FAILED"), is(true));
+        assertThat(SonarQubeTaskPoller.isDone("CANCELED"), is(true));
+        assertThat(SonarQubeTaskPoller.isDone("PENDING"), is(false));
+        assertThat(SonarQubeTaskPoller.isDone("IN_PROGRESS"), is(false));
+        assertThat(SonarQubeTaskPoller.isDone(null), is(false));
+    }
+}
@@ -0,0 +1,86 @@
+package jenkinsci.plugins.influxdb.write;
+
+import jenkinsci.plugins.influxdb.client.LineProtocolWriter;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.assertThat;
+
+public class BatchBisectorTest {
+
+    private final List<String> written = new ArrayList<>();
+    private int requests;
+
+    @Test
+    public void isolatesRejectedRecords() throws Exception {
+        BatchBisector.Outcome outcome = new BatchBisector("test", this::write)
+                .write(Arrays.asList("a", "b", "bad 1", "c", "d", "e", "bad 2"));
+
+        assertThat(written, containsInAnyOrder("a", "b", "c", "d", "e"));
+        assertThat(outcome.getQuarantined(), hasSize(2));
+        assertThat(outcome.getQuarantined().get(0).getRecord(), is("bad 1"));
+        assertThat(outcome.getQuarantined().get(0).getReason(), is("InfluxDB responded with HTTP 400: field type conflict"));
+        assertThat(outcome.getQuarantined().get(1).getRecord(), is("bad 2"));
+        assertThat(outcome.getBytes(), is(5L));
+    }
+
+    @Test(expected = LineProtocolWriter.WriteException.class)
+    public void otherErrorsAreNotBisected() throws Exception {
+        new BatchBisector("test", records -> {
+            throw new LineProtocolWriter.WriteException(404, "database not found");
+        }).write(Arrays.asList("a", "b"));
+    }
+
+    @Test
+    public void bisectionIsBounded() throws Exception {
+        List<String> records = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            records.add("bad " + i);
+        }
+
+        BatchBisector.Outcome outcome = new BatchBisector("test", this::write).write(records);
+
+        assertThat(outcome.getQuarantined(), hasSize(1000));
+        assertThat(requests, lessThanOrEqualTo(BatchBisector.MAX_REQUESTS + 10));
+    }
+
+    @Test
+    public void remainingHalvesAreWrittenOnceRequestsAreUsedUp() throws Exception {
+        List<String> records = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            records.add("bad " + i);
+        }
+        for (int i = 0; i < 500; i++) {
+            records.add("ok " + i);
+        }
+
+        BatchBisector.Outcome outcome = new BatchBisector("test", this::write).write(records);
+
+        // The valid half gets its final attempt although the bad half used up the requests
+        assertThat(written, hasSize(500));
+        assertThat(written.get(0), is("ok 0"));
+        assertThat(outcome.getQuarantined(), hasSize(500));
+        assertThat(outcome.getQuarantined().get(0).getReason(), is("InfluxDB responded with HTTP 400: field type conflict"));
+        assertThat(outcome.getQuarantined().get(499).getReason(), containsString("not isolated as the batch took 64 requests"));
+        assertThat(requests, lessThanOrEqualTo(BatchBisector.MAX_REQUESTS + 10));
+    }
+
+    private LineProtocolWriter.WriteStats write(List<String> records) throws LineProtocolWriter.WriteException {
+        requests++;
+        for (String record : records) {
+            if (record.startsWith("bad")) {
+                throw new LineProtocolWriter.WriteException(400, "field type conflict");
+            }
+        }
+        written.addAll(records);
+        return new LineProtocolWriter.WriteStats(records.size(), -1);
+    }
+}
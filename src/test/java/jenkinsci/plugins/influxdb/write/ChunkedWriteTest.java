@@ -0,0 +1,108 @@
+package jenkinsci.plugins.influxdb.write;
+
+import jenkinsci.plugins.influxdb.client.LineProtocolWriter;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class ChunkedWriteTest {
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+    private final List<List<String>> spooled = new CopyOnWriteArrayList<>();
+
+    @After
+    public void after() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void splitsByPointsAndBytes() {
+        List<String> records = Arrays.asList("aaaa", "bbbb", "cccc", "dddddddddddd", "e");
+
+        assertThat(ChunkedWrite.split(records, 2, 1024), contains(
+                Arrays.asList("aaaa", "bbbb"), Arrays.asList("cccc", "dddddddddddd"), Arrays.asList("e")));
+        assertThat(ChunkedWrite.split(records, 10, 10), contains(
+                Arrays.asList("aaaa", "bbbb"), Arrays.asList("cccc"), Arrays.asList("dddddddddddd"), Arrays.asList("e")));
+    }
+
+    @Test
+    public void onlyFailedChunksAreSpooled() throws Exception {
+        List<List<String>> written = new CopyOnWriteArrayList<>();
+        ChunkedWrite write = new ChunkedWrite("test", chunk -> {
+            if (chunk.contains("c")) {
+                throw new IOException("Connection reset");
+            }
+            written.add(new ArrayList<>(chunk));
+            return new LineProtocolWriter.WriteStats(chunk.size() * 2L - 1, -1);
+        }, spooled::add, executor, 2, 2, 1024);
+
+        ChunkedWrite.Result result = write.write(Arrays.asList("a", "b", "c", "d", "e"));
+
+        assertThat(result.getChunks(), is(3));
+        assertThat(result.getFailedChunks(), is(1));
+        assertThat(result.getWrittenPoints(), is(3));
+        assertThat(result.getFailedPoints(), is(2));
+        assertThat(result.getBytes(), is(4L));
+        assertThat(result.getFailure().getMessage(), is("Connection reset"));
+        assertThat(spooled, contains(Arrays.asList("c", "d")));
+    }
+
+    @Test
+    public void resultsOfSuccessiveWritesAddUp() throws Exception {
+        ChunkedWrite write = new ChunkedWrite("test", chunk -> {
+            if (chunk.contains("c")) {
+                throw new IOException("Connection reset");
+            }
+            return new LineProtocolWriter.WriteStats(chunk.size() * 2L - 1, -1);
+        }, spooled::add, executor, 2, 2, 1024);
+
+        ChunkedWrite.Result result = new ChunkedWrite.Result();
+        result.add(write.write(Arrays.asList("a", "b")));
+        result.add(write.write(Arrays.asList("c")));
+        result.add(write.write(Arrays.asList("d", "e", "f")));
+
+        assertThat(result.getChunks(), is(4));
+        assertThat(result.getFailedChunks(), is(1));
+        assertThat(result.getWrittenPoints(), is(5));
+        assertThat(result.getFailedPoints(), is(1));
+        assertThat(result.getBytes(), is(7L));
+        assertThat(result.getFailure().getMessage(), is("Connection reset"));
+    }
+
+    @Test
+    public void parallelismIsLimited() throws Exception {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        ChunkedWrite write = new ChunkedWrite("test", chunk -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            } finally {
+                running.decrementAndGet();
+            }
+            return new LineProtocolWriter.WriteStats(1, -1);
+        }, spooled::add, executor, 2, 1, 1024);
+
+        ChunkedWrite.Result result = write.write(Arrays.asList("a", "b", "c", "d", "e", "f"));
+
+        assertThat(result.getWrittenPoints(), is(6));
+        assertThat(result.getFailure(), nullValue());
+        assertThat(maxRunning.get(), lessThanOrEqualTo(2));
+    }
+}
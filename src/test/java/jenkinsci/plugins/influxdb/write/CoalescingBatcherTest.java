@@ -0,0 +1,109 @@
+package jenkinsci.plugins.influxdb.write;
+
+import jenkinsci.plugins.influxdb.models.Target;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class CoalescingBatcherTest {
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    private final List<List<String>> written = new CopyOnWriteArrayList<>();
+    private final List<List<String>> spooled = new CopyOnWriteArrayList<>();
+
+    @After
+    public void after() {
+        scheduler.shutdownNow();
+        CoalescingBatcher.flushAll();
+    }
+
+    @Test
+    public void recordsOfManyBuildsShareOneWrite() {
+        CoalescingBatcher batcher = new CoalescingBatcher("test", 3, 1024, 60_000, scheduler,
+                records -> written.add(new ArrayList<>(records)), spooled::add);
+
+        batcher.add(Arrays.asList("a"));
+        batcher.add(Arrays.asList("b"));
+        assertThat(written, empty());
+
+        batcher.add(Arrays.asList("c", "d"));
+        assertThat(written, contains(Arrays.asList("a", "b", "c"), Arrays.asList("d")));
+        assertThat(batcher.getFlushCount(), is(2L));
+        assertThat(batcher.getFlushedPoints(), is(4L));
+        assertThat(batcher.getLastFlushPoints(), is(1));
+    }
+
+    @Test
+    public void byteLimitFlushes() {
+        CoalescingBatcher batcher = new CoalescingBatcher("test", 100, 10, 60_000, scheduler,
+                records -> written.add(new ArrayList<>(records)), spooled::add);
+
+        batcher.add(Arrays.asList("0123"));
+        assertThat(written, empty());
+        batcher.add(Arrays.asList("4567"));
+        assertThat(written, contains(Arrays.asList("0123", "4567")));
+    }
+
+    @Test
+    public void lingerFlushesPendingRecords() throws Exception {
+        CoalescingBatcher batcher = new CoalescingBatcher("test", 100, 1024, 10, scheduler,
+                records -> written.add(new ArrayList<>(records)), spooled::add);
+
+        batcher.add(Arrays.asList("a"));
+        for (int i = 0; i < 500 && written.isEmpty(); i++) {
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+        assertThat(written, contains(Arrays.asList("a")));
+    }
+
+    @Test
+    public void failedFlushIsSpooled() {
+        CoalescingBatcher batcher = new CoalescingBatcher("test", 100, 1024, 60_000, scheduler,
+                records -> {
+                    throw new IOException("InfluxDB unreachable");
+                },
+                records -> spooled.add(new ArrayList<>(records)));
+
+        batcher.add(Arrays.asList("a", "b"));
+        batcher.flush();
+        assertThat(spooled, contains(Arrays.asList("a", "b")));
+    }
+
+    @Test
+    public void targetsWritingDifferentlyHaveTheirOwnBatcher() {
+        Target first = createTarget("first", "alice");
+        Target second = createTarget("second", "alice");
+        Target other = createTarget("other", "bob");
+
+        assertThat(CoalescingBatcher.forTarget(second), sameInstance(CoalescingBatcher.forTarget(first)));
+        assertThat(CoalescingBatcher.forTarget(other), not(sameInstance(CoalescingBatcher.forTarget(first))));
+
+        second.setMaxPointsPerRequest(10);
+        assertThat(CoalescingBatcher.forTarget(second), not(sameInstance(CoalescingBatcher.forTarget(first))));
+    }
+
+    private Target createTarget(String description, String username) {
+        Target target = new Target();
+        target.setDescription(description);
+        target.setUrl("http://localhost:8086");
+        target.setUsername(username);
+        target.setDatabase("jenkins");
+        target.setRetentionPolicy("autogen");
+        return target;
+    }
+}
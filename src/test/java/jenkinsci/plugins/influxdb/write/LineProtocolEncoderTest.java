@@ -0,0 +1,99 @@
+package jenkinsci.plugins.influxdb.write;
+
+import org.influxdb.dto.Point;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class LineProtocolEncoderTest {
+
+    private final LineProtocolEncoder encoder = new LineProtocolEncoder();
+
+    @Test
+    public void matchesPointWithSortedTagsAndFields() {
+        Point point = Point.measurement("jenkins_data")
+                .tag("project_path", "folder/job")
+                .tag("project_name", "job")
+                .addField("build_number", 42)
+                .addField("build_time", 1234L)
+                .addField("build_successful", true)
+                .addField("project_name", "job")
+                .addField("coverage", 50.0)
+                .addField("ratio", 0.1 + 0.2)
+                .time(1586000000123456789L, TimeUnit.NANOSECONDS)
+                .build();
+
+        encoder.measurement("jenkins_data")
+                .tag("project_path", "folder/job")
+                .tag("project_name", "job")
+                .field("build_number", 42)
+                .field("build_time", 1234L)
+                .field("build_successful", true)
+                .field("project_name", "job")
+                .field("coverage", 50.0)
+                .field("ratio", 0.1 + 0.2)
+                .time(1586000000123456789L);
+
+        assertThat(encoder.encode(), is(point.lineProtocol()));
+    }
+
+    @Test
+    public void matchesPointEscaping() {
+        Point point = Point.measurement("my measurement,1")
+                .tag("tag key", "a=b,c d")
+                .tag("empty", "")
+                .addField("field=key", "say \"hi\"\\ there,\nnext line")
+                .time(1L, TimeUnit.NANOSECONDS)
+                .build();
+
+        encoder.measurement("my measurement,1")
+                .tag("tag key", "a=b,c d")
+                .tag("empty", "")
+                .field("field=key", "say \"hi\"\\ there,\nnext line")
+                .time(1L);
+
+        assertThat(encoder.encode(), is(point.lineProtocol()));
+    }
+
+    @Test
+    public void matchesPointWithReplacedAndNonFiniteFields() {
+        Point point = Point.measurement("m")
+                .addField("a", 1L)
+                .addField("nan", Double.NaN)
+                .addField("a", "replaced")
+                .addField("z", Double.POSITIVE_INFINITY)
+                .build();
+
+        encoder.measurement("m")
+                .field("a", 1L)
+                .field("nan", Double.NaN)
+                .field("a", "replaced")
+                .field("z", Double.POSITIVE_INFINITY);
+
+        assertThat(encoder.encode(), is(point.lineProtocol()));
+    }
+
+    @Test
+    public void encoderIsReusable() {
+        encoder.measurement("first").tag("t", "1").field("f", 1L).time(1L).encode();
+        encoder.measurement("second").field("g", false);
+
+        assertThat(encoder.encode(), is("second g=false"));
+    }
+
+    @Test
+    public void convertsToEqualPoint() {
+        encoder.measurement("jenkins_data")
+                .tag("project_name", "job")
+                .field("build_number", 42)
+                .field("build_successful", true)
+                .field("coverage", 50.0)
+                .field("project_name", "job")
+                .time(1586000000123456789L);
+
+        assertThat(encoder.toPoint().lineProtocol(), is(encoder.encode()));
+    }
+}
@@ -0,0 +1,46 @@
+package jenkinsci.plugins.influxdb.write;
+
+import org.influxdb.dto.Point;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class LineProtocolSinkTest {
+
+    @Test
+    public void recordsAreHandedOverInChunks() {
+        List<List<String>> chunks = new ArrayList<>();
+        LineProtocolSink sink = new LineProtocolSink(2, chunks::add);
+
+        sink.add(point(1));
+        sink.add(point(2));
+        sink.add(point(3));
+        assertThat(chunks, contains(Arrays.asList("m f=1i 1", "m f=2i 2")));
+
+        sink.flush();
+        assertThat(chunks, contains(Arrays.asList("m f=1i 1", "m f=2i 2"), Arrays.asList("m f=3i 3")));
+        assertThat(sink.getCount(), is(3));
+    }
+
+    @Test
+    public void encodedPointsBecomeRecords() {
+        List<List<String>> chunks = new ArrayList<>();
+        LineProtocolSink sink = new LineProtocolSink(2, chunks::add);
+        LineProtocolEncoder encoder = new LineProtocolEncoder();
+
+        sink.add(encoder.measurement("m").field("f", 1L).time(1L));
+        sink.add(point(2));
+        assertThat(chunks, contains(Arrays.asList("m f=1i 1", "m f=2i 2")));
+    }
+
+    private static Point point(long value) {
+        return Point.measurement("m").addField("f", value).time(value, TimeUnit.NANOSECONDS).build();
+    }
+}
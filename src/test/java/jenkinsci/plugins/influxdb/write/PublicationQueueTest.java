@@ -0,0 +1,93 @@
+package jenkinsci.plugins.influxdb.write;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class PublicationQueueTest {
+
+    private final CountDownLatch workerBusy = new CountDownLatch(1);
+    private final CountDownLatch releaseWorker = new CountDownLatch(1);
+    private final List<String> published = new CopyOnWriteArrayList<>();
+
+    private PublicationQueue queue;
+
+    @After
+    public void after() throws Exception {
+        releaseWorker.countDown();
+        queue.shutdown(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void dropNewestRejectsWhenFull() throws Exception {
+        queue = new PublicationQueue(1, 1, PublicationQueue.FullPolicy.DROP_NEWEST);
+        occupyWorker();
+
+        assertThat(queue.submit(publication("first")), is(true));
+        assertThat(queue.submit(publication("second")), is(false));
+        assertThat(queue.getDroppedCount(), is(1L));
+
+        releaseWorker.countDown();
+        queue.shutdown(5, TimeUnit.SECONDS);
+        assertThat(published, contains("first"));
+    }
+
+    @Test
+    public void dropOldestMakesRoomForNewest() throws Exception {
+        queue = new PublicationQueue(1, 1, PublicationQueue.FullPolicy.DROP_OLDEST);
+        occupyWorker();
+
+        assertThat(queue.submit(publication("first")), is(true));
+        assertThat(queue.submit(publication("second")), is(true));
+        assertThat(queue.getDroppedCount(), is(1L));
+
+        releaseWorker.countDown();
+        queue.shutdown(5, TimeUnit.SECONDS);
+        assertThat(published, contains("second"));
+    }
+
+    @Test
+    public void failingPublicationDoesNotStopWorker() throws Exception {
+        queue = new PublicationQueue(10, 1, PublicationQueue.FullPolicy.BLOCK);
+
+        queue.submit(() -> {
+            throw new IllegalStateException("InfluxDB unreachable");
+        });
+        queue.submit(publication("after failure"));
+
+        queue.shutdown(5, TimeUnit.SECONDS);
+        assertThat(published, contains("after failure"));
+    }
+
+    @Test
+    public void defaultPolicyNeverBlocks() {
+        queue = new PublicationQueue(1, 1, PublicationQueue.FullPolicy.BLOCK);
+        assertThat(PublicationQueue.FullPolicy.fromString("block"), is(PublicationQueue.FullPolicy.BLOCK));
+        assertThat(PublicationQueue.FullPolicy.fromString("whatever"), is(PublicationQueue.FullPolicy.DROP_OLDEST));
+        assertThat(PublicationQueue.FullPolicy.fromString(null), is(PublicationQueue.FullPolicy.DROP_OLDEST));
+    }
+
+    private void occupyWorker() throws InterruptedException {
+        queue.submit(() -> {
+            workerBusy.countDown();
+            try {
+                releaseWorker.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        workerBusy.await();
+    }
+
+    private Runnable publication(String name) {
+        return () -> published.add(name);
+    }
+}
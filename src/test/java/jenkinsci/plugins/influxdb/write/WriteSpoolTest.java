@@ -0,0 +1,163 @@
+package jenkinsci.plugins.influxdb.write;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class WriteSpoolTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File directory;
+
+    @Before
+    public void before() throws IOException {
+        directory = new File(folder.getRoot(), "spool");
+    }
+
+    @Test
+    public void replaysRecordsInOrder() throws Exception {
+        WriteSpool spool = new WriteSpool(directory, 1024 * 1024, 1024);
+        spool.append(Arrays.asList("m,t=a f=1i 1", "m,t=b f=\"multi\nline\" 2"));
+        spool.append(Arrays.asList("m,t=c f=3i 3"));
+
+        List<String> written = new ArrayList<>();
+        int replayed = spool.replay(written::addAll, 2);
+
+        assertThat(replayed, is(3));
+        assertThat(written, contains("m,t=a f=1i 1", "m,t=b f=\"multi\nline\" 2", "m,t=c f=3i 3"));
+        assertThat(spool.isEmpty(), is(true));
+    }
+
+    @Test
+    public void failedReplayKeepsUndeliveredRecords() throws Exception {
+        WriteSpool spool = new WriteSpool(directory, 1024 * 1024, 1024);
+        spool.append(Arrays.asList("a", "b", "c"));
+
+        List<String> written = new ArrayList<>();
+        int replayed = spool.replay(records -> {
+            if (!written.isEmpty()) {
+                throw new IOException("InfluxDB unreachable");
+            }
+            written.addAll(records);
+        }, 1);
+
+        assertThat(replayed, is(1));
+        written.clear();
+        spool.replay(written::addAll, 10);
+        assertThat(written, contains("b", "c"));
+    }
+
+    @Test
+    public void recordsAppendedAfterReplayGoToNewSegment() throws Exception {
+        WriteSpool spool = new WriteSpool(directory, 1024 * 1024, 1024);
+        spool.append(Arrays.asList("a"));
+
+        List<String> written = new ArrayList<>();
+        spool.replay(records -> {
+            spool.append(Arrays.asList("b"));
+            written.addAll(records);
+        }, 10);
+        assertThat(written, contains("a"));
+
+        written.clear();
+        spool.replay(written::addAll, 10);
+        assertThat(written, contains("b"));
+    }
+
+    @Test
+    public void sizeCapDropsOldestSegments() throws Exception {
+        WriteSpool spool = new WriteSpool(directory, 40, 10);
+        spool.append(Arrays.asList("0123456789"));
+        spool.append(Arrays.asList("abcdefghij"));
+        spool.append(Arrays.asList("ABCDEFGHIJ"));
+        spool.append(Arrays.asList("klmnopqrst"));
+
+        List<String> written = new ArrayList<>();
+        spool.replay(written::addAll, 10);
+        assertThat(written, contains("ABCDEFGHIJ", "klmnopqrst"));
+    }
+
+    @Test
+    public void sizeCapNeverDropsSegmentBeingReplayed() throws Exception {
+        WriteSpool spool = new WriteSpool(directory, 40, 10);
+        spool.append(Arrays.asList("0123456789"));
+
+        List<String> written = new ArrayList<>();
+        spool.replay(records -> {
+            if (written.isEmpty()) {
+                // Exceeds the cap while the first segment is being replayed
+                spool.append(Arrays.asList("abcdefghij"));
+                spool.append(Arrays.asList("ABCDEFGHIJ"));
+                spool.append(Arrays.asList("klmnopqrst"));
+            }
+            written.addAll(records);
+        }, 10);
+        assertThat(written, contains("0123456789"));
+
+        written.clear();
+        spool.replay(written::addAll, 10);
+        assertThat(written, contains("klmnopqrst"));
+        assertThat(spool.isEmpty(), is(true));
+    }
+
+    @Test
+    public void failedReplayReturnsSegmentToSpool() throws Exception {
+        WriteSpool spool = new WriteSpool(directory, 1024 * 1024, 1024);
+        spool.append(Arrays.asList("a", "b"));
+
+        spool.replay(records -> {
+            throw new IOException("InfluxDB unreachable");
+        }, 10);
+        spool.append(Arrays.asList("c"));
+
+        List<String> written = new ArrayList<>();
+        spool.replay(written::addAll, 10);
+        assertThat(written, contains("a", "b", "c"));
+    }
+
+    @Test
+    public void interruptedReplayKeepsUndeliveredRecordsAndTheInterrupt() throws Exception {
+        WriteSpool spool = new WriteSpool(directory, 1024 * 1024, 1024);
+        spool.append(Arrays.asList("a", "b", "c"));
+
+        List<String> written = new ArrayList<>();
+        int replayed = spool.replay(records -> {
+            if (!written.isEmpty()) {
+                throw new InterruptedIOException("Shutting down");
+            }
+            written.addAll(records);
+        }, 1);
+        assertThat(replayed, is(1));
+        assertThat(Thread.interrupted(), is(true));
+
+        written.clear();
+        spool.replay(written::addAll, 10);
+        assertThat(written, contains("b", "c"));
+    }
+
+    @Test
+    public void disabledSpoolKeepsNothing() throws Exception {
+        WriteSpool spool = new WriteSpool(directory, 0, 1024);
+
+        assertThat(spool.append(Arrays.asList("a")), is(false));
+
+        List<String> written = new ArrayList<>();
+        spool.replay(written::addAll, 10);
+        assertThat(written, empty());
+    }
+}